@@ -0,0 +1,277 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Счетчик вхождений строк с открытой адресацией.
+ *
+ * <p>
+ * Ключ передается как участок {@link CharSequence} и сравнивается посимвольно, поэтому повторная встреча уже известного
+ * значения ничего не выделяет в памяти; строка создается только для нового ключа.
+ */
+final class CharSequenceCounter {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int HASH_MULTIPLIER = 31;
+    private static final int HASH_SPREAD_SHIFT = 16;
+
+    private String[] keys;
+    private int[] hashes;
+    private long[] counts;
+    private int size;
+
+    CharSequenceCounter() {
+        this(INITIAL_CAPACITY / 2);
+    }
+
+    /**
+     * Создает счетчик, вмещающий {@code expectedSize} ключей без перестройки таблицы.
+     */
+    private CharSequenceCounter(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2L) {
+            capacity *= 2;
+        }
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * Увеличивает счетчик ключа {@code source[from, to)} на единицу.
+     */
+    void increment(CharSequence source, int from, int to) {
+        add(source, from, to, 1);
+    }
+
+    void increment(CharSequence key) {
+        add(key, 0, key.length(), 1);
+    }
+
+    /**
+     * Добавляет к счетчикам значения другого счетчика.
+     */
+    void merge(CharSequenceCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                add(other.keys[i], other.hashes[i], other.counts[i]);
+            }
+        }
+    }
+
+    private void add(CharSequence source, int from, int to, long delta) {
+        int hash = hash(source, from, to);
+        int slot = slotOf(source, from, to, hash);
+        if (keys[slot] != null) {
+            counts[slot] += delta;
+        } else {
+            insert(slot, new StringBuilder(to - from).append(source, from, to).toString(), hash, delta);
+        }
+    }
+
+    // Готовая строка с известным хешем (из другого счетчика или снимка) хранится без копирования
+    private void add(String key, int hash, long delta) {
+        int slot = slotOf(key, 0, key.length(), hash);
+        if (keys[slot] != null) {
+            counts[slot] += delta;
+        } else {
+            insert(slot, key, hash, delta);
+        }
+    }
+
+    // Ячейка с ключом source[from, to) или свободная ячейка, в которую его нужно вставить
+    private int slotOf(CharSequence source, int from, int to, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null && (hashes[slot] != hash || !matches(keys[slot], source, from, to))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, String key, int hash, long delta) {
+        keys[slot] = key;
+        hashes[slot] = hash;
+        counts[slot] = delta;
+        size++;
+        // Таблица заполняется не больше чем наполовину, чтобы цепочки проб оставались короткими
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Копия счетчиков в виде обычной карты.
+     */
+    Map<String, Long> toMap() {
+        Map<String, Long> result = new HashMap<>(size * 2);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                result.put(keys[i], counts[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ключи с наибольшими счетчиками по убыванию, при равных счетчиках — по возрастанию ключа.
+     *
+     * <p>
+     * Выбор идет через кучу из {@code limit} ячеек таблицы, в корне которой худший из отобранных ключей, поэтому
+     * таблица не копируется и не сортируется целиком: O(size · log limit).
+     *
+     * @param limit
+     *            наибольшее число ключей в результате
+     */
+    Map<String, Long> top(int limit) {
+        int[] heap = new int[Math.min(Math.max(limit, 0), size)];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length && heap.length > 0; slot++) {
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (ranksBefore(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+        // Из кучи ключи извлекаются от худшего к лучшему
+        String[] ranked = new String[heapSize];
+        long[] rankedCounts = new long[heapSize];
+        while (heapSize > 0) {
+            int worst = heap[0];
+            ranked[heapSize - 1] = keys[worst];
+            rankedCounts[heapSize - 1] = counts[worst];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        Map<String, Long> result = new LinkedHashMap<>(ranked.length * 2);
+        for (int i = 0; i < ranked.length; i++) {
+            result.put(ranked[i], rankedCounts[i]);
+        }
+        return result;
+    }
+
+    private boolean ranksBefore(int slot, int other) {
+        return counts[slot] != counts[other] ? counts[slot] > counts[other] : keys[slot].compareTo(keys[other]) < 0;
+    }
+
+    private void siftUp(int[] heap, int position) {
+        int pos = position;
+        while (pos > 0 && ranksBefore(heap[(pos - 1) >>> 1], heap[pos])) {
+            int parent = (pos - 1) >>> 1;
+            swap(heap, pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int pos = 0;
+        while (2 * pos + 1 < heapSize) {
+            int child = 2 * pos + 1;
+            if (child + 1 < heapSize && ranksBefore(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (!ranksBefore(heap[pos], heap[child])) {
+                break;
+            }
+            swap(heap, pos, child);
+            pos = child;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    /**
+     * Записывает пары «ключ — счетчик» в снимок; ключи кодируются номерами в таблице строк снимка.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                out.writeString(keys[i]);
+                out.writeVarLong(counts[i]);
+            }
+        }
+    }
+
+    static CharSequenceCounter readFrom(SnapshotReader in) throws IOException {
+        int distinct = in.readInt();
+        CharSequenceCounter counter = new CharSequenceCounter(distinct);
+        for (int i = 0; i < distinct; i++) {
+            String key = requireKey(in.readString());
+            counter.add(key, hash(key), in.readVarLong());
+        }
+        return counter;
+    }
+
+    static String requireKey(String key) throws IOException {
+        if (key == null) {
+            throw new IOException("Пустой ключ счетчика в снимке статистики");
+        }
+        return key;
+    }
+
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        long[] oldCounts = counts;
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[keys.length];
+        counts = new long[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                hashes[slot] = oldHashes[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    static int hash(CharSequence source, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = HASH_MULTIPLIER * hash + source.charAt(i);
+        }
+        return hash ^ (hash >>> HASH_SPREAD_SHIFT);
+    }
+
+    /**
+     * То же, что {@code hash(key, 0, key.length())}: формула совпадает с {@link String#hashCode()}, который кэшируется
+     * в строке.
+     */
+    static int hash(String key) {
+        int hash = key.hashCode();
+        return hash ^ (hash >>> HASH_SPREAD_SHIFT);
+    }
+
+    static boolean matches(String key, CharSequence source, int from, int to) {
+        if (key.length() != to - from) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != source.charAt(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
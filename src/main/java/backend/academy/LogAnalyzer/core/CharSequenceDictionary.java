@@ -0,0 +1,70 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Словарь строк с последовательными номерами: первое встреченное значение получает 0, следующее новое — 1 и т.д.
+ *
+ * <p>
+ * Как и {@link CharSequenceCounter}, ищет ключ в таблице с открытой адресацией и сравнивает посимвольно, поэтому номер
+ * уже известного значения находится без выделения памяти.
+ */
+final class CharSequenceDictionary {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Номер значения плюс один; ноль означает свободную ячейку
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * Номер значения {@code source[from, to)}; новое значение получает следующий номер, если он меньше {@code limit}.
+     *
+     * @return номер значения или {@code limit}, если словарь заполнен
+     */
+    int idOf(CharSequence source, int from, int to, int limit) {
+        int hash = CharSequenceCounter.hash(source, from, to);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[slot] == hash && CharSequenceCounter.matches(values.get(id), source, from, to)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (values.size() >= limit) {
+            return limit;
+        }
+        values.add(new StringBuilder(to - from).append(source, from, to).toString());
+        slots[slot] = values.size();
+        hashes[slot] = hash;
+        if (values.size() * 2 > slots.length) {
+            resize();
+        }
+        return values.size() - 1;
+    }
+
+    String valueOf(int id) {
+        return values.get(id);
+    }
+
+    private void resize() {
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new int[oldSlots.length * 2];
+        hashes = new int[slots.length];
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+}
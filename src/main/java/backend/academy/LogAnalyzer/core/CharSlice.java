@@ -0,0 +1,40 @@
+package backend.academy.LogAnalyzer.core;
+
+/**
+ * Изменяемое представление участка массива символов. Позволяет передавать поле строки лога как {@link CharSequence} без
+ * копирования; строка создается только в {@link #toString()}.
+ */
+final class CharSlice implements CharSequence {
+    private char[] chars = new char[0];
+    private int offset;
+    private int length;
+
+    void set(char[] source, int from, int to) {
+        this.chars = source;
+        this.offset = from;
+        this.length = to - from;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return chars[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, offset, length);
+    }
+}
@@ -0,0 +1,255 @@
+package backend.academy.LogAnalyzer.core;
+
+/**
+ * Однопроходный сканер строки в формате combined (NGINX/Apache).
+ *
+ * <p>
+ * Поля находятся по разделителям (пробел, {@code [ ]}, кавычки) за один проход по строке, статус и размер ответа
+ * разбираются на месте без создания подстрок и без {@code Integer.parseInt}. Сканер принимает только строки, которые
+ * регулярное выражение из {@link LogParser} разобрало бы точно так же; во всех сомнительных случаях (кавычки внутри
+ * запроса, слишком длинный размер, управляющие символы) он отказывается от строки, и она уходит в медленный путь.
+ */
+final class CombinedLogScanner {
+
+    static final int NO_MATCH = -1;
+
+    // Индексы в массиве границ, который заполняет scan()
+    static final int REMOTE_ADDR_END = 0;
+    static final int REMOTE_USER_START = 1;
+    static final int REMOTE_USER_END = 2;
+    static final int TIME_LOCAL_START = 3;
+    static final int TIME_LOCAL_END = 4;
+    static final int REQUEST_START = 5;
+    static final int REQUEST_END = 6;
+    static final int STATUS = 7;
+    static final int BODY_BYTES_SENT_START = 8;
+    static final int BODY_BYTES_SENT_END = 9;
+    static final int HTTP_REFERER_START = 10;
+    static final int HTTP_REFERER_END = 11;
+    static final int HTTP_USER_AGENT_START = 12;
+    static final int HTTP_USER_AGENT_END = 13;
+    static final int BOUNDS_SIZE = 14;
+
+    private static final int STATUS_DIGITS = 3;
+    private static final int DECIMAL_RADIX = 10;
+    // 18 десятичных цифр гарантированно помещаются в long, более длинные числа разбирает медленный путь
+    private static final int MAX_SIZE_DIGITS = 18;
+    // Длина разделителей вида ' "' и '" "'
+    private static final int QUOTE_GAP = 2;
+    private static final int QUOTED_SEPARATOR = 3;
+
+    // Символы, которые regex не считает ни \S, ни '.'
+    private static final char VERTICAL_TAB = '\u000B';
+    private static final char NEXT_LINE = '\u0085';
+    private static final char LINE_SEPARATOR = '\u2028';
+    private static final char PARAGRAPH_SEPARATOR = '\u2029';
+
+    private CombinedLogScanner() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Разбирает строку лога без регулярных выражений.
+     *
+     * @param line
+     *            строка лога
+     * @param timestamps
+     *            декодер временных меток источника
+     *
+     * @return LogEntry или {@code null}, если строку должен разобрать медленный путь
+     */
+    static LogEntry scan(String line, TimestampDecoder timestamps) {
+        int[] bounds = new int[BOUNDS_SIZE];
+        if (!scan(line, bounds) || !timestamps.decode(line, bounds[TIME_LOCAL_START], bounds[TIME_LOCAL_END])) {
+            return null;
+        }
+        // Текстовые поля не копируются сразу: подстрока создается, только если поле действительно прочитают
+        LogEntry entry = new LogEntry();
+        entry.defer(LogField.REMOTE_ADDR, line, 0, bounds[REMOTE_ADDR_END]);
+        entry.defer(LogField.REMOTE_USER, line, bounds[REMOTE_USER_START], bounds[REMOTE_USER_END]);
+        entry.defer(LogField.REQUEST, line, bounds[REQUEST_START], bounds[REQUEST_END]);
+        entry.defer(LogField.HTTP_REFERER, line, bounds[HTTP_REFERER_START], bounds[HTTP_REFERER_END]);
+        entry.defer(LogField.HTTP_USER_AGENT, line, bounds[HTTP_USER_AGENT_START], bounds[HTTP_USER_AGENT_END]);
+        entry.setStatus(bounds[STATUS]);
+        entry.setBodyBytesSent(parseDigits(line, bounds[BODY_BYTES_SENT_START], bounds[BODY_BYTES_SENT_END]));
+        timestamps.applyTo(entry);
+        return entry;
+    }
+
+    /**
+     * Находит границы полей строки и разбирает статус.
+     *
+     * @param line
+     *            строка лога
+     * @param bounds
+     *            массив размера {@link #BOUNDS_SIZE} для границ полей и статуса
+     *
+     * @return {@code true}, если строка разобрана быстрым путем
+     */
+    static boolean scan(CharSequence line, int[] bounds) {
+        int pos = scanClient(line, bounds);
+        if (pos != NO_MATCH) {
+            pos = scanTimeAndRequest(line, pos, bounds);
+        }
+        if (pos != NO_MATCH) {
+            pos = scanStatusAndSize(line, pos, bounds);
+        }
+        return pos != NO_MATCH && scanRefererAndAgent(line, pos, bounds);
+    }
+
+    /**
+     * Разбирает десятичное число, границы которого уже проверены {@link #scan(CharSequence, int[])}.
+     */
+    static long parseDigits(CharSequence line, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * DECIMAL_RADIX + (line.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    // IP-адрес и имя пользователя: "addr - user ["
+    static int scanClient(CharSequence line, int[] bounds) {
+        int length = line.length();
+        int addrEnd = scanToken(line, 0, length);
+        if (addrEnd <= 0 || !regionMatches(line, addrEnd, " - ")) {
+            return NO_MATCH;
+        }
+        int userStart = addrEnd + QUOTED_SEPARATOR;
+        int userEnd = scanToken(line, userStart, length);
+        if (userEnd <= userStart || !regionMatches(line, userEnd, " [")) {
+            return NO_MATCH;
+        }
+        bounds[REMOTE_ADDR_END] = addrEnd;
+        bounds[REMOTE_USER_START] = userStart;
+        bounds[REMOTE_USER_END] = userEnd;
+        return userEnd + QUOTE_GAP;
+    }
+
+    // Временная метка до первой ']' и запрос в кавычках до первой '"'
+    static int scanTimeAndRequest(CharSequence line, int timeStart, int[] bounds) {
+        int length = line.length();
+        int timeEnd = indexOf(line, ']', timeStart, length);
+        if (timeEnd <= timeStart || !regionMatches(line, timeEnd, "] \"")) {
+            return NO_MATCH;
+        }
+        int requestStart = timeEnd + QUOTED_SEPARATOR;
+        int requestEnd = indexOf(line, '"', requestStart, length);
+        if (requestEnd <= requestStart || !regionMatches(line, requestEnd, "\" ")) {
+            return NO_MATCH;
+        }
+        bounds[TIME_LOCAL_START] = timeStart;
+        bounds[TIME_LOCAL_END] = timeEnd;
+        bounds[REQUEST_START] = requestStart;
+        bounds[REQUEST_END] = requestEnd;
+        return requestEnd + QUOTE_GAP;
+    }
+
+    // Статус из трех цифр и размер ответа: "200 1234 \""
+    static int scanStatusAndSize(CharSequence line, int statusStart, int[] bounds) {
+        int statusEnd = statusStart + STATUS_DIGITS;
+        if (scanDigits(line, statusStart) != statusEnd || !regionMatches(line, statusEnd, " ")) {
+            return NO_MATCH;
+        }
+        int sizeStart = statusEnd + 1;
+        int sizeEnd = scanDigits(line, sizeStart);
+        if (sizeEnd == sizeStart || sizeEnd - sizeStart > MAX_SIZE_DIGITS || !regionMatches(line, sizeEnd, " \"")) {
+            return NO_MATCH;
+        }
+        bounds[STATUS] = (int) parseDigits(line, statusStart, statusEnd);
+        bounds[BODY_BYTES_SENT_START] = sizeStart;
+        bounds[BODY_BYTES_SENT_END] = sizeEnd;
+        return sizeEnd + QUOTE_GAP;
+    }
+
+    // Referer до первой последовательности '" "', User-Agent до закрывающей кавычки в конце строки
+    private static boolean scanRefererAndAgent(CharSequence line, int refererStart, int[] bounds) {
+        int agentEnd = line.length() - 1;
+        if (agentEnd < refererStart || line.charAt(agentEnd) != '"') {
+            return false;
+        }
+        int refererEnd = indexOf(line, '"', refererStart, agentEnd);
+        while (refererEnd >= 0 && !regionMatches(line, refererEnd, "\" \"")) {
+            refererEnd = indexOf(line, '"', refererEnd + 1, agentEnd);
+        }
+        int agentStart = refererEnd + QUOTED_SEPARATOR;
+        if (refererEnd < 0 || agentStart > agentEnd || containsLineTerminator(line, agentStart, agentEnd)) {
+            return false;
+        }
+        bounds[HTTP_REFERER_START] = refererStart;
+        bounds[HTTP_REFERER_END] = refererEnd;
+        bounds[HTTP_USER_AGENT_START] = agentStart;
+        bounds[HTTP_USER_AGENT_END] = agentEnd;
+        return true;
+    }
+
+    /**
+     * Ищет конец токена из непробельных символов.
+     *
+     * @return индекс первого пробела или {@link #NO_MATCH}, если встретился другой пробельный символ или конец строки
+     */
+    private static int scanToken(CharSequence line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                return i;
+            }
+            if (c == '\t' || c == '\f' || c == VERTICAL_TAB || isLineTerminator(c)) {
+                return NO_MATCH;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static int scanDigits(CharSequence line, int from) {
+        int pos = from;
+        while (pos < line.length() && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Ищет символ в диапазоне. Символы конца строки не совпадают с '.' в регулярном выражении, поэтому на них поиск
+     * прерывается.
+     *
+     * @return индекс символа или отрицательное число, если символ не найден или встретился конец строки
+     */
+    private static int indexOf(CharSequence line, char target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == target) {
+                return i;
+            }
+            if (isLineTerminator(c)) {
+                return NO_MATCH;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean containsLineTerminator(CharSequence line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isLineTerminator(line.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence line, int offset, String expected) {
+        if (offset + expected.length() > line.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (line.charAt(offset + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == NEXT_LINE || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR;
+    }
+}
@@ -0,0 +1,882 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Скомпилированное выражение фильтра записей, например
+ * {@code status >= 500 and method in (GET, HEAD) and not agent ~ 'bot'}.
+ *
+ * <p>
+ * Выражение разбирается один раз в дерево условий: имена полей при компиляции заменяются способом чтения значения из
+ * записи, числа разбираются заранее, регулярные выражения компилируются, а шаблон без метасимволов заменяется поиском
+ * подстроки. Внутри {@code and} и {@code or} условия упорядочены по стоимости: сначала сравнения чисел, затем строк,
+ * поиск подстроки и регулярные выражения — последними. Проверка записи не создает строк: текстовые поля сравниваются
+ * посимвольно, метод и ресурс — как участки строки запроса, поэтому выражение можно применять к
+ * {@link LogRecordCursor}.
+ *
+ * <p>
+ * Грамматика:
+ *
+ * <pre>
+ * выражение := конъюнкция ("or" конъюнкция)*
+ * конъюнкция := отрицание ("and" отрицание)*
+ * отрицание := ("not" | "!") отрицание | "(" выражение ")" | сравнение
+ * сравнение := поле оператор значение | поле ("in" | "within" | "contains") список
+ * список := "(" значение ("," значение)* ")" | "@" путь
+ * оператор := "=" | "==" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "~" | "!~"
+ * </pre>
+ *
+ * Числовые поля: {@code status}, {@code bytes}, {@code hour}, {@code request_time} и {@code upstream_time} (два
+ * последних — в секундах, например {@code 0.25}). Текстовые поля: {@code method}, {@code resource}, {@code request},
+ * {@code ip}, {@code user}, {@code agent}, {@code referer}, {@code host} и {@code request_id}; для них доступны
+ * {@code =}, {@code !=}, {@code in} и поиск регулярного выражения {@code ~} / {@code !~}. Метод и хост сравниваются без
+ * учета регистра. Значение пишется без кавычек или в одинарных или двойных кавычках. Запись, в которой нет значения
+ * поля, не удовлетворяет ни одному сравнению с этим полем.
+ *
+ * <p>
+ * Операторы над наборами рассчитаны на тысячи значений: {@code ip within (10.0.0.0/8, 2001:db8::/32)} проверяет
+ * принадлежность адреса сетям CIDR по двоичному префиксному дереву ({@link IpPrefixTrie}), а
+ * {@code agent contains (bot, crawler, spider)} ищет любую из подстрок автоматом Ахо — Корасик
+ * ({@link SubstringAutomaton}); стоимость проверки записи не растет с числом значений. Список можно загрузить из файла:
+ * {@code @путь} — по значению в строке, пустые строки и строки, начинающиеся с {@code #}, пропускаются.
+ *
+ * <p>
+ * Экземпляр неизменяемый и может проверять записи из нескольких потоков.
+ */
+public final class FilterExpression implements Predicate<LogRecord> {
+    // Относительная стоимость проверок для упорядочивания условий
+    private static final int NUMBER_COST = 1;
+    private static final int TEXT_COST = 2;
+    private static final int SUBSTRING_COST = 4;
+    private static final int REGEX_COST = 8;
+    private static final double MILLIS_PER_SECOND = 1000.0;
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final Node root;
+    private final Set<LogField> requiredFields;
+    private final String source;
+
+    private FilterExpression(Node root, Set<LogField> requiredFields, String source) {
+        this.root = root;
+        this.requiredFields = requiredFields;
+        this.source = source;
+    }
+
+    /**
+     * Компилирует выражение фильтра.
+     *
+     * @param expression
+     *            текст выражения
+     *
+     * @return скомпилированное выражение
+     *
+     * @throws IllegalArgumentException
+     *             если выражение синтаксически неверно, поле неизвестно, значение не подходит полю или регулярное
+     *             выражение не компилируется
+     */
+    public static FilterExpression compile(String expression) {
+        Parser parser = new Parser(expression);
+        Node root = parser.parse();
+        return new FilterExpression(root, parser.fields, expression);
+    }
+
+    /**
+     * Выражение, равносильное паре {@code --filter-field} / {@code --filter-value}: для {@code agent} — поиск
+     * подстроки, для {@code ip} с длиной префикса ({@code 10.0.0.0/8}) — принадлежность сети, для остальных полей —
+     * равенство. Пустое значение и неизвестное поле пропускают все записи, как
+     * {@link LogFilter#filterByField(LogRecord, String, String)}.
+     *
+     * @param field
+     *            имя поля или {@code null}
+     * @param value
+     *            значение или {@code null}
+     *
+     * @return скомпилированное выражение
+     */
+    public static FilterExpression forField(String field, String value) {
+        Field resolved = field == null || value == null || value.isEmpty() ? null
+                : Field.forName(field.toLowerCase(Locale.ROOT));
+        if (resolved == null) {
+            return new FilterExpression(new Constant(true), EnumSet.noneOf(LogField.class), "");
+        }
+        Node node;
+        if (resolved == Field.AGENT) {
+            node = new Contains(resolved, value, false);
+        } else if (resolved == Field.IP && value.indexOf('/') >= 0) {
+            node = new IpWithin(resolved, IpPrefixTrie.of(List.of(value)));
+        } else if (resolved.isNumeric()) {
+            node = numberEquals(resolved, value);
+        } else {
+            node = new TextIn(resolved, List.of(value), false);
+        }
+        return new FilterExpression(node, EnumSet.of(resolved.logField), field + " = " + value);
+    }
+
+    /**
+     * Выражение, которое пропускает все записи.
+     */
+    public static FilterExpression all() {
+        return forField(null, null);
+    }
+
+    @Override
+    public boolean test(LogRecord entry) {
+        return root.test(entry);
+    }
+
+    /**
+     * Поля записи, которые читает выражение; остальные поля разбирать не нужно.
+     */
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    /**
+     * Часть выражения, которую можно проверить, прочитав только указанные поля: условия верхнего уровня конъюнкции,
+     * которые не читают других полей. Если часть отклоняет запись, все выражение тоже ее отклоняет, поэтому часть
+     * годится для предварительной проверки сырой строки до полного разбора.
+     *
+     * @param fields
+     *            поля, значения которых известны до полного разбора
+     *
+     * @return выражение-часть; если подходящих условий нет, выражение пропускает все записи
+     */
+    public FilterExpression restrictTo(Set<LogField> fields) {
+        if (fields.containsAll(requiredFields)) {
+            return this;
+        }
+        List<Node> operands = new ArrayList<>();
+        if (root instanceof Junction junction && junction.conjunction) {
+            for (Node operand : junction.operands) {
+                if (fields.containsAll(fieldsOf(operand))) {
+                    operands.add(operand);
+                }
+            }
+        }
+        if (operands.isEmpty()) {
+            return all();
+        }
+        Node restricted = operands.size() == 1 ? operands.get(0) : new Junction(operands, true);
+        return new FilterExpression(restricted, fieldsOf(restricted), source);
+    }
+
+    /**
+     * Пропускает ли выражение все записи, не читая их.
+     */
+    public boolean isAll() {
+        return root instanceof Constant constant && constant.value;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static Set<LogField> fieldsOf(Node node) {
+        Set<LogField> fields = EnumSet.noneOf(LogField.class);
+        node.collectFields(fields);
+        return fields;
+    }
+
+    // Нечисловое значение числового поля, как и в LogFilter, не совпадает ни с одной записью
+    private static Node numberEquals(Field field, String value) {
+        try {
+            return new NumberCompare(field, Operator.EQ, field.parse(value));
+        } catch (IllegalArgumentException e) {
+            return new Constant(false);
+        }
+    }
+
+    private static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (REGEX_METACHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Поля, доступные в выражениях, и способ чтения их значений, выбранный при компиляции.
+     */
+    private enum Field {
+        STATUS("status", LogField.STATUS, LogRecord::getStatus, false),
+        BYTES("bytes", LogField.BODY_BYTES_SENT, LogRecord::getBodyBytesSent, false),
+        HOUR("hour", LogField.TIME_LOCAL, LogStatistics::hourOf, false),
+        REQUEST_TIME("request_time", LogField.REQUEST_TIME, LogRecord::getRequestTimeMillis, true),
+        UPSTREAM_TIME("upstream_time", LogField.UPSTREAM_RESPONSE_TIME, LogRecord::getUpstreamResponseTimeMillis, true),
+        METHOD("method", LogField.REQUEST, LogRecord::getRequest, RequestPart.METHOD, true),
+        RESOURCE("resource", LogField.REQUEST, LogRecord::getRequest, RequestPart.RESOURCE, false),
+        REQUEST("request", LogField.REQUEST, LogRecord::getRequest, RequestPart.WHOLE, false),
+        IP("ip", LogField.REMOTE_ADDR, LogRecord::getRemoteAddr, RequestPart.WHOLE, false),
+        USER("user", LogField.REMOTE_USER, LogRecord::getRemoteUser, RequestPart.WHOLE, false),
+        AGENT("agent", LogField.HTTP_USER_AGENT, LogRecord::getHttpUserAgent, RequestPart.WHOLE, false),
+        REFERER("referer", LogField.HTTP_REFERER, LogRecord::getHttpReferer, RequestPart.WHOLE, false),
+        HOST("host", LogField.HOST, LogRecord::getHost, RequestPart.WHOLE, true),
+        REQUEST_ID("request_id", LogField.REQUEST_ID, LogRecord::getRequestId, RequestPart.WHOLE, false);
+
+        private final String name;
+        private final LogField logField;
+        private final ToLongFunction<LogRecord> number;
+        // Время хранится в миллисекундах, а в выражении пишется в секундах; -1 означает, что значения нет
+        private final boolean seconds;
+        private final Function<LogRecord, CharSequence> text;
+        private final RequestPart part;
+        private final boolean ignoreCase;
+
+        Field(String name, LogField logField, ToLongFunction<LogRecord> number, boolean seconds) {
+            this.name = name;
+            this.logField = logField;
+            this.number = number;
+            this.seconds = seconds;
+            this.text = null;
+            this.part = RequestPart.WHOLE;
+            this.ignoreCase = false;
+        }
+
+        Field(String name, LogField logField, Function<LogRecord, CharSequence> text, RequestPart part,
+                boolean ignoreCase) {
+            this.name = name;
+            this.logField = logField;
+            this.number = null;
+            this.seconds = false;
+            this.text = text;
+            this.part = part;
+            this.ignoreCase = ignoreCase;
+        }
+
+        static Field forName(String name) {
+            for (Field field : values()) {
+                if (field.name.equals(name)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+
+        boolean isNumeric() {
+            return number != null;
+        }
+
+        long parse(String value) {
+            try {
+                return seconds ? Math.round(Double.parseDouble(value) * MILLIS_PER_SECOND) : Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Поле " + name + " сравнивается с числом, а не с \"" + value + "\"",
+                        e);
+            }
+        }
+    }
+
+    /**
+     * Участок строки запроса {@code "GET /path HTTP/1.1"}, который читает поле.
+     */
+    private enum RequestPart {
+        WHOLE, METHOD, RESOURCE;
+
+        int from(CharSequence text) {
+            if (this != RESOURCE) {
+                return 0;
+            }
+            return Math.min(LogStatistics.indexOfSpace(text, 0, text.length()) + 1, text.length());
+        }
+
+        int to(CharSequence text, int from) {
+            return this == WHOLE ? text.length() : LogStatistics.indexOfSpace(text, from, text.length());
+        }
+    }
+
+    private enum Operator {
+        EQ, NE, LT, LE, GT, GE, MATCH, NOT_MATCH;
+
+        static Operator forSymbol(String symbol) {
+            return switch (symbol) {
+            case "=", "==" -> EQ;
+            case "!=" -> NE;
+            case "<" -> LT;
+            case "<=" -> LE;
+            case ">" -> GT;
+            case ">=" -> GE;
+            case "~" -> MATCH;
+            case "!~" -> NOT_MATCH;
+            default -> null;
+            };
+        }
+    }
+
+    /**
+     * Узел дерева условий.
+     */
+    private interface Node {
+        boolean test(LogRecord entry);
+
+        int cost();
+
+        /**
+         * Добавляет в набор поля записи, которые читает узел.
+         */
+        void collectFields(Set<LogField> fields);
+    }
+
+    private static final class Constant implements Node {
+        private final boolean value;
+
+        Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(LogRecord entry) {
+            return value;
+        }
+
+        @Override
+        public int cost() {
+            return 0;
+        }
+
+        @Override
+        public void collectFields(Set<LogField> fields) {
+            // Константа не читает запись
+        }
+    }
+
+    private static final class Not implements Node {
+        private final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean test(LogRecord entry) {
+            return !operand.test(entry);
+        }
+
+        @Override
+        public int cost() {
+            return operand.cost();
+        }
+
+        @Override
+        public void collectFields(Set<LogField> fields) {
+            operand.collectFields(fields);
+        }
+    }
+
+    /**
+     * Конъюнкция или дизъюнкция; условия проверяются от дешевых к дорогим до первого решающего.
+     */
+    private static final class Junction implements Node {
+        private final Node[] operands;
+        private final boolean conjunction;
+        private final int cost;
+
+        Junction(List<Node> operands, boolean conjunction) {
+            this.operands = operands.toArray(new Node[0]);
+            Arrays.sort(this.operands, Comparator.comparingInt(Node::cost));
+            this.conjunction = conjunction;
+            this.cost = operands.stream().mapToInt(Node::cost).sum();
+        }
+
+        @Override
+        public boolean test(LogRecord entry) {
+            for (Node operand : operands) {
+                if (operand.test(entry) != conjunction) {
+                    return !conjunction;
+                }
+            }
+            return conjunction;
+        }
+
+        @Override
+        public int cost() {
+            return cost;
+        }
+
+        @Override
+        public void collectFields(Set<LogField> fields) {
+            for (Node operand : operands) {
+                operand.collectFields(fields);
+            }
+        }
+    }
+
+    private static final class NumberCompare implements Node {
+        private final Field field;
+        private final Operator operator;
+        private final long value;
+
+        NumberCompare(Field field, Operator operator, long value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(LogRecord entry) {
+            long actual = field.number.applyAsLong(entry);
+            if (field.seconds && actual < 0) {
+                return false;
+            }
+            return switch (operator) {
+            case EQ -> actual == value;
+            case NE -> actual != value;
+            case LT -> actual < value;
+            case LE -> actual <= value;
+            case GT -> actual > value;
+            default -> actual >= value;
+            };
+        }
+
+        @Override
+        public int cost() {
+            return NUMBER_COST;
+        }
+
+        @Override
+        public void collectFields(Set<LogField> fields) {
+            fields.add(field.logField);
+        }
+    }
+
+    private static final class NumberIn implements Node {
+        private final Field field;
+        private final long[] values;
+
+        NumberIn(Field field, long[] values) {
+            this.field = field;
+            this.values = values.clone();
+            Arrays.sort(this.values);
+        }
+
+        @Override
+        public boolean test(LogRecord entry) {
+            long actual = field.number.applyAsLong(entry);
+            return !(field.seconds && actual < 0) && Arrays.binarySearch(values, actual) >= 0;
+        }
+
+        @Override
+        public int cost() {
+            return NUMBER_COST;
+        }
+
+        @Override
+        public void collectFields(Set<LogField> fields) {
+            fields.add(field.logField);
+        }
+    }
+
+    /**
+     * Проверка текстового поля: значение читается из записи, а для метода и ресурса выделяется участок запроса.
+     */
+    private abstract static class TextNode implements Node {
+        protected final Field field;
+        private final boolean negated;
+
+        TextNode(Field field, boolean negated) {
+            this.field = field;
+            this.negated = negated;
+        }
+
+        @Override
+        public final boolean test(LogRecord entry) {
+            CharSequence text = field.text.apply(entry);
+            if (text == null) {
+                return false;
+            }
+            int from = field.part.from(text);
+            return matches(text, from, field.part.to(text, from)) != negated;
+        }
+
+        @Override
+        public final void collectFields(Set<LogField> fields) {
+            fields.add(field.logField);
+        }
+
+        abstract boolean matches(CharSequence text, int from, int to);
+    }
+
+    private static final class TextIn extends TextNode {
+        private final String[] values;
+
+        TextIn(Field field, List<String> values, boolean negated) {
+            super(field, negated);
+            this.values = values.toArray(new String[0]);
+        }
+
+        @Override
+        boolean matches(CharSequence text, int from, int to) {
+            for (String value : values) {
+                if (field.ignoreCase ? LogFilter.regionEqualsIgnoreCase(text, from, to, value)
+                        : CharSequenceCounter.matches(value, text, from, to)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int cost() {
+            return TEXT_COST;
+        }
+    }
+
+    private static final class Contains extends TextNode {
+        private final String value;
+
+        Contains(Field field, String value, boolean negated) {
+            super(field, negated);
+            this.value = value;
+        }
+
+        @Override
+        boolean matches(CharSequence text, int from, int to) {
+            return LogFilter.contains(text, from, to, value);
+        }
+
+        @Override
+        public int cost() {
+            return SUBSTRING_COST;
+        }
+    }
+
+    private static final class RegexFind extends TextNode {
+        private final Pattern pattern;
+
+        RegexFind(Field field, Pattern pattern, boolean negated) {
+            super(field, negated);
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean matches(CharSequence text, int from, int to) {
+            return pattern.matcher(text).region(from, to).find();
+        }
+
+        @Override
+        public int cost() {
+            return REGEX_COST;
+        }
+    }
+
+    private static final class IpWithin extends TextNode {
+        private final IpPrefixTrie networks;
+
+        IpWithin(Field field, IpPrefixTrie networks) {
+            super(field, false);
+            this.networks = networks;
+        }
+
+        @Override
+        boolean matches(CharSequence text, int from, int to) {
+            return networks.contains(text, from, to);
+        }
+
+        @Override
+        public int cost() {
+            return TEXT_COST;
+        }
+    }
+
+    private static final class ContainsAny extends TextNode {
+        private final SubstringAutomaton automaton;
+
+        ContainsAny(Field field, SubstringAutomaton automaton) {
+            super(field, false);
+            this.automaton = automaton;
+        }
+
+        @Override
+        boolean matches(CharSequence text, int from, int to) {
+            return automaton.find(text, from, to);
+        }
+
+        @Override
+        public int cost() {
+            return SUBSTRING_COST;
+        }
+    }
+
+    /**
+     * Рекурсивный спуск по лексемам выражения.
+     */
+    private static final class Parser {
+        private static final String OPERATOR_CHARS = "=!<>~";
+        private static final String DELIMITERS = "(),'\"";
+
+        private final String text;
+        private final Set<LogField> fields = EnumSet.noneOf(LogField.class);
+        private int pos;
+        // Текущая лексема: тип и текст (для строк в кавычках — без кавычек)
+        private TokenType type;
+        private String token;
+        private int tokenStart;
+
+        Parser(String text) {
+            this.text = text;
+            advance();
+        }
+
+        Node parse() {
+            Node root = parseOr();
+            if (type != TokenType.END) {
+                throw error("лишний текст \"" + token + "\"");
+            }
+            return root;
+        }
+
+        private Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (acceptKeyword("or")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Junction(operands, false);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (acceptKeyword("and")) {
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Junction(operands, true);
+        }
+
+        private Node parseUnary() {
+            if (acceptKeyword("not") || accept(TokenType.OPERATOR, "!")) {
+                return new Not(parseUnary());
+            }
+            if (accept(TokenType.PUNCTUATION, "(")) {
+                Node inner = parseOr();
+                expect(TokenType.PUNCTUATION, ")");
+                return inner;
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            if (type != TokenType.WORD) {
+                throw error("ожидалось имя поля");
+            }
+            Field field = Field.forName(token.toLowerCase(Locale.ROOT));
+            if (field == null) {
+                throw error("неизвестное поле \"" + token + "\"");
+            }
+            fields.add(field.logField);
+            advance();
+            if (acceptKeyword("in")) {
+                return parseIn(field);
+            }
+            if (acceptKeyword("within")) {
+                return parseWithin(field);
+            }
+            if (acceptKeyword("contains")) {
+                return parseContains(field);
+            }
+            Operator operator = type == TokenType.OPERATOR ? Operator.forSymbol(token) : null;
+            if (operator == null) {
+                throw error("ожидался оператор сравнения");
+            }
+            advance();
+            return compare(field, operator, value());
+        }
+
+        private Node parseIn(Field field) {
+            List<String> values = values();
+            if (!field.isNumeric()) {
+                return new TextIn(field, values, false);
+            }
+            return new NumberIn(field, values.stream().mapToLong(field::parse).toArray());
+        }
+
+        private Node parseWithin(Field field) {
+            if (field != Field.IP) {
+                throw error("оператор within доступен только для поля ip");
+            }
+            int start = tokenStart;
+            List<String> networks = values();
+            try {
+                return new IpWithin(field, IpPrefixTrie.of(networks));
+            } catch (IllegalArgumentException e) {
+                tokenStart = start;
+                throw error(e.getMessage());
+            }
+        }
+
+        private Node parseContains(Field field) {
+            if (field.isNumeric()) {
+                throw error("поиск подстрок недоступен для числового поля " + field.name);
+            }
+            return new ContainsAny(field, SubstringAutomaton.of(values(), field.ignoreCase));
+        }
+
+        // Список значений в скобках или файл со значениями по одному в строке
+        private List<String> values() {
+            if (type == TokenType.WORD && token.startsWith("@")) {
+                int start = tokenStart;
+                String path = token.substring(1);
+                advance();
+                // Путь с пробелами пишется в кавычках: @'my list.txt'
+                return readValues(path.isEmpty() ? value() : path, start);
+            }
+            expect(TokenType.PUNCTUATION, "(");
+            List<String> values = new ArrayList<>();
+            values.add(value());
+            while (accept(TokenType.PUNCTUATION, ",")) {
+                values.add(value());
+            }
+            expect(TokenType.PUNCTUATION, ")");
+            return values;
+        }
+
+        private List<String> readValues(String path, int start) {
+            try {
+                List<String> values = new ArrayList<>();
+                for (String line : Files.readAllLines(Path.of(path))) {
+                    String value = line.strip();
+                    if (!value.isEmpty() && !value.startsWith("#")) {
+                        values.add(value);
+                    }
+                }
+                return values;
+            } catch (IOException | InvalidPathException e) {
+                tokenStart = start;
+                throw error("не удалось прочитать файл со значениями " + path);
+            }
+        }
+
+        private Node compare(Field field, Operator operator, String value) {
+            boolean negated = operator == Operator.NE || operator == Operator.NOT_MATCH;
+            if (operator == Operator.MATCH || operator == Operator.NOT_MATCH) {
+                return match(field, value, negated);
+            }
+            if (field.isNumeric()) {
+                return new NumberCompare(field, operator, field.parse(value));
+            }
+            if (operator != Operator.EQ && operator != Operator.NE) {
+                throw error("поле " + field.name + " можно сравнивать только через =, !=, in и ~");
+            }
+            return new TextIn(field, List.of(value), negated);
+        }
+
+        private Node match(Field field, String value, boolean negated) {
+            if (field.isNumeric()) {
+                throw error("поиск по шаблону недоступен для числового поля " + field.name);
+            }
+            if (!field.ignoreCase && isLiteral(value)) {
+                return new Contains(field, value, negated);
+            }
+            try {
+                return new RegexFind(field, Pattern.compile(value, field.ignoreCase ? Pattern.CASE_INSENSITIVE : 0),
+                        negated);
+            } catch (PatternSyntaxException e) {
+                throw error("неверное регулярное выражение \"" + value + "\": " + e.getDescription());
+            }
+        }
+
+        private String value() {
+            if (type != TokenType.WORD && type != TokenType.STRING) {
+                throw error("ожидалось значение");
+            }
+            String value = token;
+            advance();
+            return value;
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            return type == TokenType.WORD && token.equalsIgnoreCase(keyword) && advance();
+        }
+
+        private boolean accept(TokenType expectedType, String expected) {
+            return type == expectedType && token.equals(expected) && advance();
+        }
+
+        private void expect(TokenType expectedType, String expected) {
+            if (!accept(expectedType, expected)) {
+                throw error("ожидалось \"" + expected + "\"");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                    "Ошибка в выражении фильтра в позиции " + (tokenStart + 1) + ": " + message + " (" + text + ")");
+        }
+
+        // Переходит к следующей лексеме; всегда возвращает true, чтобы использоваться в условиях accept
+        private boolean advance() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            tokenStart = pos;
+            if (pos == text.length()) {
+                type = TokenType.END;
+                token = "";
+            } else if (text.charAt(pos) == '\'' || text.charAt(pos) == '"') {
+                readQuoted();
+            } else if (DELIMITERS.indexOf(text.charAt(pos)) >= 0) {
+                type = TokenType.PUNCTUATION;
+                token = text.substring(pos, ++pos);
+            } else if (OPERATOR_CHARS.indexOf(text.charAt(pos)) >= 0) {
+                readWhile(TokenType.OPERATOR, true);
+            } else {
+                readWhile(TokenType.WORD, false);
+            }
+            return true;
+        }
+
+        private void readWhile(TokenType tokenType, boolean operatorChars) {
+            int end = pos;
+            while (end < text.length() && isOperatorChar(text.charAt(end)) == operatorChars && (operatorChars
+                    || !Character.isWhitespace(text.charAt(end)) && DELIMITERS.indexOf(text.charAt(end)) < 0)) {
+                end++;
+            }
+            type = tokenType;
+            token = text.substring(pos, end);
+            pos = end;
+        }
+
+        private static boolean isOperatorChar(char c) {
+            return OPERATOR_CHARS.indexOf(c) >= 0;
+        }
+
+        // Строка в кавычках; обратная косая черта экранирует только кавычку и саму себя, чтобы не мешать шаблонам
+        private void readQuoted() {
+            char quote = text.charAt(pos++);
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length() && text.charAt(pos) != quote) {
+                char c = text.charAt(pos++);
+                if (c == '\\' && pos < text.length() && (text.charAt(pos) == quote || text.charAt(pos) == '\\')) {
+                    c = text.charAt(pos++);
+                }
+                value.append(c);
+            }
+            if (pos == text.length()) {
+                throw error("незакрытая кавычка");
+            }
+            pos++;
+            type = TokenType.STRING;
+            token = value.toString();
+        }
+    }
+
+    private enum TokenType {
+        WORD, STRING, OPERATOR, PUNCTUATION, END
+    }
+}
@@ -0,0 +1,418 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Агрегация записей по сочетаниям нескольких измерений за один проход.
+ *
+ * <p>
+ * Значение каждого измерения кодируется целым числом: код ответа и час — самим значением, строковые измерения — номером
+ * в собственном словаре ({@link CharSequenceDictionary}). Коды упаковываются в составной ключ {@code long} (10 бит на
+ * код ответа, 5 бит на час, остальные биты поровну между строковыми измерениями, не больше 24 бит на каждое). Ключ
+ * ищется в таблице с открытой адресацией, а число запросов и байты группы хранятся в столбцовых массивах. Если
+ * строковое измерение исчерпало свои номера, новые значения попадают в общую группу {@value #OTHER}.
+ *
+ * <p>
+ * Перцентили размера ответа группы считаются по корзинам {@link LogHistogram} (погрешность меньше 1/128): пары «группа
+ * — корзина» считаются в одном {@link LongCounter}, поэтому память растет только с числом непустых пар.
+ */
+public final class GroupBy {
+    /**
+     * Значение строкового измерения для групп, не поместившихся в словарь.
+     */
+    public static final String OTHER = "(other)";
+
+    private static final int STATUS_BITS = 10;
+    private static final int HOUR_BITS = 5;
+    private static final int MAX_DICTIONARY_BITS = 24;
+    private static final int SIZE_BUCKET_BITS = Integer.SIZE - Integer.numberOfLeadingZeros(LogHistogram.BUCKET_COUNT);
+    private static final int INITIAL_CAPACITY = 64;
+    // Мультипликативное хеширование Фибоначчи для составных ключей
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final double MEDIAN = 0.5;
+    private static final double PERCENTILE_95 = 0.95;
+    private static final double PERCENTILE_99 = 0.99;
+
+    private final List<GroupDimension> dimensions;
+    private final GroupDimension[] dimensionArray;
+    private final int[] shifts;
+    // Наибольший код измерения; для строковых измерений он означает OTHER
+    private final int[] limits;
+    private final CharSequenceDictionary[] dictionaries;
+
+    // Таблица составных ключей: номер строки плюс один, ноль — свободная ячейка
+    private long[] tableKeys = new long[INITIAL_CAPACITY];
+    private int[] tableRows = new int[INITIAL_CAPACITY];
+    // Столбцы групп
+    private long[] rowKeys = new long[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private long[] bytes = new long[INITIAL_CAPACITY];
+    private int rows;
+    private final LongCounter sizes = new LongCounter();
+
+    /**
+     * Создает пустую группировку.
+     *
+     * @param dimensions
+     *            измерения группировки без повторов
+     *
+     * @throws IllegalArgumentException
+     *             если измерений нет, они повторяются или не помещаются в 64-битный ключ
+     */
+    GroupBy(List<GroupDimension> dimensions) {
+        if (dimensions.isEmpty() || EnumSet.copyOf(dimensions).size() != dimensions.size()) {
+            throw new IllegalArgumentException("Измерения группировки должны быть непустыми и не повторяться");
+        }
+        this.dimensions = List.copyOf(dimensions);
+        this.dimensionArray = dimensions.toArray(new GroupDimension[0]);
+        int fixedBits = 0;
+        int textDimensions = 0;
+        for (GroupDimension dimension : dimensionArray) {
+            int bits = fixedBits(dimension);
+            fixedBits += bits;
+            textDimensions += bits == 0 ? 1 : 0;
+        }
+        int textBits = textDimensions == 0 ? 0
+                : Math.min(MAX_DICTIONARY_BITS, (Long.SIZE - fixedBits) / textDimensions);
+        if (textDimensions > 0 && textBits < 2) {
+            throw new IllegalArgumentException("Слишком много измерений группировки: " + dimensions);
+        }
+        shifts = new int[dimensionArray.length];
+        limits = new int[dimensionArray.length];
+        dictionaries = new CharSequenceDictionary[dimensionArray.length];
+        int shift = 0;
+        for (int d = 0; d < dimensionArray.length; d++) {
+            int bits = fixedBits(dimensionArray[d]);
+            if (bits == 0) {
+                bits = textBits;
+                dictionaries[d] = new CharSequenceDictionary();
+            }
+            shifts[d] = shift;
+            limits[d] = (1 << bits) - 1;
+            shift += bits;
+        }
+    }
+
+    private static int fixedBits(GroupDimension dimension) {
+        return switch (dimension) {
+        case STATUS -> STATUS_BITS;
+        case HOUR -> HOUR_BITS;
+        default -> 0;
+        };
+    }
+
+    public List<GroupDimension> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Число различных групп.
+     */
+    public int size() {
+        return rows;
+    }
+
+    void add(LogRecord entry) {
+        long key = 0;
+        for (int d = 0; d < dimensionArray.length; d++) {
+            key |= (long) code(d, entry) << shifts[d];
+        }
+        int row = rowOf(key);
+        counts[row]++;
+        long size = Math.max(entry.getBodyBytesSent(), 0);
+        bytes[row] += size;
+        sizes.increment(((long) row << SIZE_BUCKET_BITS) | LogHistogram.bucketOf(size));
+    }
+
+    /**
+     * Добавляет группы другой агрегации с теми же измерениями; строковые значения перекодируются в словари этой.
+     */
+    void merge(GroupBy other) {
+        if (!other.dimensions.equals(dimensions)) {
+            throw new IllegalArgumentException("Нельзя объединить группировки по разным измерениям");
+        }
+        int[] rowMapping = new int[other.rows];
+        for (int otherRow = 0; otherRow < other.rows; otherRow++) {
+            long key = 0;
+            for (int d = 0; d < dimensionArray.length; d++) {
+                int code = other.decode(other.rowKeys[otherRow], d);
+                if (dictionaries[d] != null) {
+                    code = encode(d, other.textValue(d, code));
+                }
+                key |= (long) code << shifts[d];
+            }
+            int row = rowOf(key);
+            counts[row] += other.counts[otherRow];
+            bytes[row] += other.bytes[otherRow];
+            rowMapping[otherRow] = row;
+        }
+        long bucketMask = (1L << SIZE_BUCKET_BITS) - 1;
+        other.sizes.forEach((pair, count) -> sizes.increment(
+                ((long) rowMapping[(int) (pair >>> SIZE_BUCKET_BITS)] << SIZE_BUCKET_BITS) | (pair & bucketMask),
+                count));
+    }
+
+    /**
+     * Записывает измерения и группы в снимок: строковые значения — через таблицу строк снимка (значение {@value #OTHER}
+     * — как {@code null}), перцентили — непустыми корзинами размеров каждой группы.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(dimensionArray.length);
+        for (GroupDimension dimension : dimensionArray) {
+            out.writeString(dimension.getName());
+        }
+        out.writeVarLong(rows);
+        long[] pairs = sizes.sortedValues();
+        long bucketMask = (1L << SIZE_BUCKET_BITS) - 1;
+        int next = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int d = 0; d < dimensionArray.length; d++) {
+                int code = decode(rowKeys[row], d);
+                if (dictionaries[d] != null) {
+                    out.writeString(textValue(d, code));
+                } else {
+                    out.writeVarLong(code);
+                }
+            }
+            out.writeVarLong(counts[row]);
+            out.writeVarLong(bytes[row]);
+            int first = next;
+            while (next < pairs.length && pairs[next] >>> SIZE_BUCKET_BITS == row) {
+                next++;
+            }
+            out.writeVarLong(next - first);
+            long previous = 0;
+            for (int i = first; i < next; i++) {
+                out.writeVarLong((pairs[i] & bucketMask) - previous);
+                out.writeVarLong(sizes.count(pairs[i]));
+                previous = pairs[i] & bucketMask;
+            }
+        }
+    }
+
+    static GroupBy readFrom(SnapshotReader in) throws IOException {
+        int dimensionCount = in.readInt();
+        List<GroupDimension> dimensions = new ArrayList<>();
+        for (int i = 0; i < dimensionCount; i++) {
+            dimensions.add(GroupDimension.forName(CharSequenceCounter.requireKey(in.readString())));
+        }
+        GroupBy groupBy = new GroupBy(dimensions);
+        int rowCount = in.readInt();
+        for (int r = 0; r < rowCount; r++) {
+            long key = 0;
+            for (int d = 0; d < groupBy.dimensionArray.length; d++) {
+                int code = groupBy.dictionaries[d] != null ? groupBy.encode(d, in.readString()) : in.readInt();
+                if (code > groupBy.limits[d]) {
+                    throw new IOException("Неверное значение измерения в снимке статистики: " + code);
+                }
+                key |= (long) code << groupBy.shifts[d];
+            }
+            int row = groupBy.rowOf(key);
+            groupBy.counts[row] += in.readVarLong();
+            groupBy.bytes[row] += in.readVarLong();
+            int buckets = in.readInt();
+            long bucket = 0;
+            for (int i = 0; i < buckets; i++) {
+                bucket += in.readVarLong();
+                if (bucket >= LogHistogram.BUCKET_COUNT) {
+                    throw new IOException("Неизвестная корзина размеров в снимке статистики: " + bucket);
+                }
+                groupBy.sizes.increment(((long) row << SIZE_BUCKET_BITS) | bucket, in.readCount());
+            }
+        }
+        return groupBy;
+    }
+
+    // Строковое значение по коду; null для группы OTHER
+    private String textValue(int dimension, int code) {
+        return code == limits[dimension] ? null : dictionaries[dimension].valueOf(code);
+    }
+
+    private int encode(int dimension, String value) {
+        return value == null ? limits[dimension]
+                : dictionaries[dimension].idOf(value, 0, value.length(), limits[dimension]);
+    }
+
+    /**
+     * Группы по убыванию числа запросов, при равенстве — по значениям измерений.
+     */
+    public List<Row> getRows() {
+        long[] pairs = sizes.sortedValues();
+        List<Row> result = new ArrayList<>(rows);
+        int next = 0;
+        for (int row = 0; row < rows; row++) {
+            // Пары отсортированы по номеру группы, а внутри группы — по корзине размера
+            int first = next;
+            while (next < pairs.length && pairs[next] >>> SIZE_BUCKET_BITS == row) {
+                next++;
+            }
+            result.add(new Row(values(rowKeys[row]), counts[row], bytes[row],
+                    sizeAtQuantile(pairs, first, next, counts[row], MEDIAN),
+                    sizeAtQuantile(pairs, first, next, counts[row], PERCENTILE_95),
+                    sizeAtQuantile(pairs, first, next, counts[row], PERCENTILE_99)));
+        }
+        result.sort(Comparator.comparingLong(Row::getCount).reversed()
+                .thenComparing(row -> String.join("\u0000", row.getValues())));
+        return result;
+    }
+
+    private long sizeAtQuantile(long[] pairs, int from, int to, long total, double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        long bucketMask = (1L << SIZE_BUCKET_BITS) - 1;
+        for (int i = from; i < to; i++) {
+            seen += sizes.count(pairs[i]);
+            if (seen >= rank) {
+                return LogHistogram.lowerBound((int) (pairs[i] & bucketMask));
+            }
+        }
+        return 0;
+    }
+
+    private List<String> values(long key) {
+        List<String> values = new ArrayList<>(dimensionArray.length);
+        for (int d = 0; d < dimensionArray.length; d++) {
+            int code = decode(key, d);
+            if (dimensionArray[d] == GroupDimension.HOUR) {
+                values.add(String.format("%02d:00", code));
+            } else if (dictionaries[d] == null) {
+                values.add(String.valueOf(code));
+            } else {
+                String value = textValue(d, code);
+                values.add(value == null ? OTHER : value);
+            }
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    private int decode(long key, int dimension) {
+        return (int) (key >>> shifts[dimension]) & limits[dimension];
+    }
+
+    private int code(int d, LogRecord entry) {
+        return switch (dimensionArray[d]) {
+        case STATUS -> Math.min(Math.max(entry.getStatus(), 0), limits[d]);
+        case HOUR -> LogStatistics.hourOf(entry);
+        case METHOD, RESOURCE -> requestPartCode(d, entry.getRequest());
+        case IP -> textCode(d, entry.getRemoteAddr());
+        case HOST -> textCode(d, entry.getHost());
+        case AGENT -> textCode(d, entry.getHttpUserAgent());
+        };
+    }
+
+    // Метод и ресурс — первые два слова запроса "GET /path HTTP/1.1"
+    private int requestPartCode(int d, CharSequence request) {
+        if (request == null) {
+            return dictionaries[d].idOf("", 0, 0, limits[d]);
+        }
+        int length = request.length();
+        int methodEnd = LogStatistics.indexOfSpace(request, 0, length);
+        if (dimensionArray[d] == GroupDimension.METHOD) {
+            return dictionaries[d].idOf(request, 0, methodEnd, limits[d]);
+        }
+        int from = Math.min(methodEnd + 1, length);
+        return dictionaries[d].idOf(request, from, LogStatistics.indexOfSpace(request, from, length), limits[d]);
+    }
+
+    private int textCode(int d, CharSequence value) {
+        return value == null ? dictionaries[d].idOf("", 0, 0, limits[d])
+                : dictionaries[d].idOf(value, 0, value.length(), limits[d]);
+    }
+
+    private int rowOf(long key) {
+        int mask = tableKeys.length - 1;
+        int slot = slot(key, mask);
+        while (tableRows[slot] != 0) {
+            if (tableKeys[slot] == key) {
+                return tableRows[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (rows == rowKeys.length) {
+            rowKeys = Arrays.copyOf(rowKeys, rows * 2);
+            counts = Arrays.copyOf(counts, rows * 2);
+            bytes = Arrays.copyOf(bytes, rows * 2);
+        }
+        rowKeys[rows] = key;
+        tableKeys[slot] = key;
+        tableRows[slot] = ++rows;
+        if (rows * 2 > tableKeys.length) {
+            resizeTable();
+        }
+        return rows - 1;
+    }
+
+    private void resizeTable() {
+        tableKeys = new long[tableKeys.length * 2];
+        tableRows = new int[tableKeys.length];
+        int mask = tableKeys.length - 1;
+        for (int row = 0; row < rows; row++) {
+            int slot = slot(rowKeys[row], mask);
+            while (tableRows[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            tableKeys[slot] = rowKeys[row];
+            tableRows[slot] = row + 1;
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> Integer.SIZE) & mask;
+    }
+
+    /**
+     * Группа: значения измерений и агрегаты записей.
+     */
+    public static final class Row {
+        private final List<String> values;
+        private final long count;
+        private final long bytes;
+        private final long medianSize;
+        private final long percentile95Size;
+        private final long percentile99Size;
+
+        @SuppressWarnings("checkstyle:ParameterNumber")
+        Row(List<String> values, long count, long bytes, long medianSize, long percentile95Size,
+                long percentile99Size) {
+            this.values = values;
+            this.count = count;
+            this.bytes = bytes;
+            this.medianSize = medianSize;
+            this.percentile95Size = percentile95Size;
+            this.percentile99Size = percentile99Size;
+        }
+
+        /**
+         * Значения измерений в порядке {@link GroupBy#getDimensions()}.
+         */
+        public List<String> getValues() {
+            return values;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMedianSize() {
+            return medianSize;
+        }
+
+        public long getPercentile95Size() {
+            return percentile95Size;
+        }
+
+        public long getPercentile99Size() {
+            return percentile99Size;
+        }
+    }
+}
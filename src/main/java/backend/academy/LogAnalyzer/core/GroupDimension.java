@@ -0,0 +1,70 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Измерения, по которым {@link GroupBy} группирует записи лога.
+ */
+public enum GroupDimension {
+    STATUS("status", LogField.STATUS), METHOD("method", LogField.REQUEST), RESOURCE("resource", LogField.REQUEST),
+    HOUR("hour", LogField.TIME_LOCAL), IP("ip", LogField.REMOTE_ADDR), HOST("host", LogField.HOST),
+    AGENT("agent", LogField.HTTP_USER_AGENT);
+
+    private final String name;
+    private final LogField field;
+
+    GroupDimension(String name, LogField field) {
+        this.name = name;
+        this.field = field;
+    }
+
+    /**
+     * Имя измерения в параметре {@code --group-by}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Поле записи, из которого берется значение измерения.
+     */
+    public LogField getField() {
+        return field;
+    }
+
+    /**
+     * Разбирает список измерений через запятую, например {@code status,method,hour}.
+     *
+     * @param names
+     *            имена измерений
+     *
+     * @return измерения в указанном порядке
+     *
+     * @throws IllegalArgumentException
+     *             если имя неизвестно или список пуст
+     */
+    public static List<GroupDimension> parseList(String names) {
+        List<GroupDimension> dimensions = new ArrayList<>();
+        for (String name : names.split(",")) {
+            String trimmed = name.strip().toLowerCase(Locale.ROOT);
+            if (!trimmed.isEmpty()) {
+                dimensions.add(forName(trimmed));
+            }
+        }
+        if (dimensions.isEmpty()) {
+            throw new IllegalArgumentException("Не указано ни одного измерения группировки");
+        }
+        return dimensions;
+    }
+
+    static GroupDimension forName(String name) {
+        for (GroupDimension dimension : values()) {
+            if (dimension.name.equals(name)) {
+                return dimension;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное измерение группировки: " + name);
+    }
+}
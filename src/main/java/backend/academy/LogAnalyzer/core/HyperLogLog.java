@@ -0,0 +1,115 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+
+/**
+ * Оценка числа различных значений алгоритмом HyperLogLog (Flajolet и др., 2007).
+ *
+ * <p>
+ * Хранит {@code 2^precision} однобайтовых регистров независимо от числа значений: при точности 12 это 4 КБ и
+ * стандартная ошибка {@code 1.04 / sqrt(2^12)} ≈ 1,6%, при точности 10 — 1 КБ и 3,3%. Для малых мощностей оценка
+ * переключается на линейный подсчет по пустым регистрам. Две оценки с одинаковой точностью объединяются поэлементным
+ * максимумом регистров, и результат совпадает с оценкой по объединению потоков.
+ */
+final class HyperLogLog {
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long MIX_MULTIPLIER_1 = 0xFF51AFD7ED558CCDL;
+    private static final long MIX_MULTIPLIER_2 = 0xC4CEB53E4CA87EC3L;
+    private static final int MIX_SHIFT = 33;
+    private static final double ALPHA = 0.7213;
+    private static final double ALPHA_CORRECTION = 1.079;
+    private static final double LINEAR_COUNTING_LIMIT = 2.5;
+
+    private final int precision;
+    private final byte[] registers;
+
+    HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException(
+                    "Точность HyperLogLog должна быть от " + MIN_PRECISION + " до " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * 64-битный хеш участка {@code source[from, to)}: FNV-1a по символам и перемешивание из MurmurHash3.
+     */
+    static long hash(CharSequence source, int from, int to) {
+        long hash = FNV_OFFSET;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ source.charAt(i)) * FNV_PRIME;
+        }
+        hash ^= hash >>> MIX_SHIFT;
+        hash *= MIX_MULTIPLIER_1;
+        hash ^= hash >>> MIX_SHIFT;
+        hash *= MIX_MULTIPLIER_2;
+        return hash ^ (hash >>> MIX_SHIFT);
+    }
+
+    /**
+     * Учитывает значение по его хешу {@link #hash(CharSequence, int, int)}.
+     */
+    void offer(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // Ограничитель не дает рангу превысить 64 - precision + 1, когда оставшиеся биты нулевые
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Нельзя объединить HyperLogLog разной точности");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+
+    /**
+     * Записывает точность и регистры в снимок как есть.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(precision);
+        out.writeBytes(registers);
+    }
+
+    static HyperLogLog readFrom(SnapshotReader in) throws IOException {
+        int precision = in.readInt();
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IOException("Неверная точность HyperLogLog в снимке статистики: " + precision);
+        }
+        HyperLogLog estimator = new HyperLogLog(precision);
+        byte[] registers = in.readBytes();
+        if (registers.length != estimator.registers.length) {
+            throw new IOException("Неверное число регистров HyperLogLog в снимке статистики: " + registers.length);
+        }
+        System.arraycopy(registers, 0, estimator.registers, 0, registers.length);
+        return estimator;
+    }
+
+    /**
+     * Оценка числа различных учтенных значений.
+     */
+    long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double raw = ALPHA / (1 + ALPHA_CORRECTION / m) * m * m / sum;
+        if (raw <= LINEAR_COUNTING_LIMIT * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros));
+        }
+        return Math.round(raw);
+    }
+}
@@ -0,0 +1,278 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Набор сетей CIDR (IPv4 и IPv6) в виде двоичного префиксного дерева.
+ *
+ * <p>
+ * Адреса хранятся как 128-битные: IPv4 отображается в {@code ::ffff:a.b.c.d}, поэтому одно дерево обслуживает обе
+ * версии протокола. Узлы лежат в массиве пар дочерних индексов; проверка адреса спускается по его битам от старшего и
+ * останавливается на первом узле, которым заканчивается сеть из набора. Время проверки зависит только от длины адреса,
+ * а не от числа сетей. Адрес строки разбирается прямо из символов, без {@code InetAddress} и без создания строк; для
+ * IPv4 спуск начинается сразу с узла префикса {@code ::ffff:0:0/96}.
+ *
+ * <p>
+ * Экземпляр неизменяемый после создания и может использоваться из нескольких потоков.
+ */
+final class IpPrefixTrie {
+    private static final int ADDRESS_BITS = 128;
+    private static final int GROUPS = 8;
+    private static final int GROUP_BITS = 16;
+    private static final int IPV4_BITS = 32;
+    private static final int IPV4_OCTETS = 4;
+    private static final int OCTET_BITS = 8;
+    private static final int MAX_OCTET = 255;
+    private static final int HEX_RADIX = 16;
+    private static final int DECIMAL_RADIX = 10;
+    private static final int MAX_GROUP_DIGITS = 4;
+    private static final int MAX_OCTET_DIGITS = 3;
+    private static final long NOT_IPV4 = -1;
+    // Группы 5 и 6 адреса ::ffff:a.b.c.d
+    private static final int MAPPED_GROUP = 5;
+    private static final int MAPPED_MARKER = 0xFFFF;
+    private static final int IPV4_MAPPED_PREFIX = ADDRESS_BITS - IPV4_BITS;
+    private static final int NO_NODE = -1;
+    private static final int INITIAL_NODES = 64;
+
+    // children[2 * node + bit]; узел 0 — корень
+    private int[] children;
+    private boolean[] terminal;
+    private int nodeCount;
+    // Узел префикса ::ffff:0:0/96 и то, покрывает ли все IPv4 сеть короче этого префикса
+    private final int ipv4Root;
+    private final boolean ipv4Covered;
+
+    private IpPrefixTrie(List<String> networks) {
+        children = new int[INITIAL_NODES * 2];
+        terminal = new boolean[INITIAL_NODES];
+        newNode();
+        for (String network : networks) {
+            insert(network);
+        }
+        int[] mapped = new int[GROUPS];
+        mapped[MAPPED_GROUP] = MAPPED_MARKER;
+        int node = 0;
+        boolean covered = terminal[0];
+        for (int bit = 0; bit < IPV4_MAPPED_PREFIX && node != NO_NODE && !covered; bit++) {
+            node = children[2 * node + bitOf(mapped, bit)];
+            covered = node != NO_NODE && terminal[node];
+        }
+        this.ipv4Root = node;
+        this.ipv4Covered = covered;
+    }
+
+    /**
+     * Строит дерево по списку сетей.
+     *
+     * @param networks
+     *            сети вида {@code 10.0.0.0/8}, {@code 2001:db8::/32} или отдельные адреса
+     *
+     * @return дерево
+     *
+     * @throws IllegalArgumentException
+     *             если сеть записана неверно
+     */
+    static IpPrefixTrie of(List<String> networks) {
+        return new IpPrefixTrie(networks);
+    }
+
+    /**
+     * Принадлежит ли адрес из участка {@code text[from, to)} одной из сетей; неразобранный адрес не принадлежит.
+     */
+    boolean contains(CharSequence text, int from, int to) {
+        long ipv4 = parseIpv4(text, from, to);
+        if (ipv4 != NOT_IPV4) {
+            return containsIpv4((int) ipv4);
+        }
+        int[] groups = new int[GROUPS];
+        return parseIpv6(text, from, to, groups) && containsIpv6(groups);
+    }
+
+    private boolean containsIpv4(int address) {
+        if (ipv4Covered) {
+            return true;
+        }
+        int node = ipv4Root;
+        for (int bit = IPV4_BITS - 1; bit >= 0 && node != NO_NODE; bit--) {
+            node = children[2 * node + (address >>> bit & 1)];
+            if (node != NO_NODE && terminal[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean containsIpv6(int[] groups) {
+        int node = 0;
+        if (terminal[node]) {
+            return true;
+        }
+        for (int bit = 0; bit < ADDRESS_BITS; bit++) {
+            node = children[2 * node + bitOf(groups, bit)];
+            if (node == NO_NODE) {
+                return false;
+            }
+            if (terminal[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(String network) {
+        String trimmed = network.strip();
+        int slash = trimmed.indexOf('/');
+        int end = slash >= 0 ? slash : trimmed.length();
+        int[] groups = new int[GROUPS];
+        long ipv4 = parseIpv4(trimmed, 0, end);
+        int addressBits;
+        if (ipv4 != NOT_IPV4) {
+            groups[MAPPED_GROUP] = MAPPED_MARKER;
+            groups[MAPPED_GROUP + 1] = (int) (ipv4 >>> GROUP_BITS);
+            groups[MAPPED_GROUP + 2] = (int) (ipv4 & MAPPED_MARKER);
+            addressBits = IPV4_BITS;
+        } else if (parseIpv6(trimmed, 0, end, groups)) {
+            addressBits = ADDRESS_BITS;
+        } else {
+            throw new IllegalArgumentException("Неверный адрес сети: \"" + network + "\"");
+        }
+        int prefix = slash >= 0 ? parsePrefix(trimmed.substring(slash + 1), addressBits, network) : addressBits;
+        int length = prefix + ADDRESS_BITS - addressBits;
+        int node = 0;
+        for (int bit = 0; bit < length; bit++) {
+            int slot = 2 * node + bitOf(groups, bit);
+            if (children[slot] == NO_NODE) {
+                int child = newNode();
+                children[slot] = child;
+            }
+            node = children[slot];
+        }
+        terminal[node] = true;
+    }
+
+    private int newNode() {
+        if (nodeCount == terminal.length) {
+            terminal = Arrays.copyOf(terminal, nodeCount * 2);
+            children = Arrays.copyOf(children, terminal.length * 2);
+        }
+        children[2 * nodeCount] = NO_NODE;
+        children[2 * nodeCount + 1] = NO_NODE;
+        return nodeCount++;
+    }
+
+    private static int parsePrefix(String text, int addressBits, String network) {
+        try {
+            int prefix = Integer.parseInt(text);
+            if (prefix >= 0 && prefix <= addressBits) {
+                return prefix;
+            }
+        } catch (NumberFormatException e) {
+            // Сообщение ниже
+        }
+        throw new IllegalArgumentException("Неверная длина префикса сети: \"" + network + "\"");
+    }
+
+    private static int bitOf(int[] groups, int bit) {
+        return groups[bit / GROUP_BITS] >>> (GROUP_BITS - 1 - bit % GROUP_BITS) & 1;
+    }
+
+    /**
+     * Разбирает адрес IPv4 {@code a.b.c.d}.
+     *
+     * @return адрес как беззнаковое 32-битное число или {@link #NOT_IPV4}, если участок не адрес IPv4
+     */
+    private static long parseIpv4(CharSequence text, int from, int to) {
+        long address = 0;
+        int pos = from;
+        for (int octet = 0; octet < IPV4_OCTETS; octet++) {
+            if (octet > 0 && (pos >= to || text.charAt(pos++) != '.')) {
+                return NOT_IPV4;
+            }
+            int value = 0;
+            int start = pos;
+            while (pos < to && pos - start < MAX_OCTET_DIGITS && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                value = value * DECIMAL_RADIX + (text.charAt(pos++) - '0');
+            }
+            if (pos == start || value > MAX_OCTET) {
+                return NOT_IPV4;
+            }
+            address = address << OCTET_BITS | value;
+        }
+        return pos == to ? address : NOT_IPV4;
+    }
+
+    /**
+     * Разбирает адрес IPv6 с сокращением {@code ::} и, возможно, IPv4 в последних 32 битах.
+     */
+    private static boolean parseIpv6(CharSequence text, int from, int to, int[] groups) {
+        int gap = indexOfGap(text, from, to);
+        if (gap < 0) {
+            return parseGroups(text, from, to, groups, 0, true) == GROUPS;
+        }
+        int head = gap == from ? 0 : parseGroups(text, from, gap, groups, 0, false);
+        int count = head < 0 || gap + 2 == to ? head : parseGroups(text, gap + 2, to, groups, head, true);
+        // "::" заменяет хотя бы одну нулевую группу
+        if (count < 0 || count >= GROUPS) {
+            return false;
+        }
+        int tail = count - head;
+        System.arraycopy(groups, head, groups, GROUPS - tail, tail);
+        Arrays.fill(groups, head, GROUPS - tail, 0);
+        return true;
+    }
+
+    /**
+     * Разбирает группы, разделенные двоеточием, начиная с позиции {@code offset} массива.
+     *
+     * @return число заполненных групп массива или {@code -1}, если группы записаны неверно
+     */
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static int parseGroups(CharSequence text, int from, int to, int[] groups, int offset, boolean ipv4Tail) {
+        int count = offset;
+        int pos = from;
+        while (count >= 0 && pos <= to) {
+            int end = pos;
+            while (end < to && text.charAt(end) != ':') {
+                end++;
+            }
+            long ipv4 = ipv4Tail && end == to && count <= GROUPS - 2 ? parseIpv4(text, pos, to) : NOT_IPV4;
+            int value = ipv4 == NOT_IPV4 ? parseHexGroup(text, pos, end) : -1;
+            if (ipv4 != NOT_IPV4) {
+                groups[count++] = (int) (ipv4 >>> GROUP_BITS);
+                groups[count++] = (int) (ipv4 & MAPPED_MARKER);
+            } else if (value >= 0 && count < GROUPS) {
+                groups[count++] = value;
+            } else {
+                count = -1;
+            }
+            pos = end + 1;
+        }
+        return count;
+    }
+
+    private static int parseHexGroup(CharSequence text, int from, int to) {
+        if (to <= from || to - from > MAX_GROUP_DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(text.charAt(i), HEX_RADIX);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * HEX_RADIX + digit;
+        }
+        return value;
+    }
+
+    private static int indexOfGap(CharSequence text, int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (text.charAt(i) == ':' && text.charAt(i + 1) == ':') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
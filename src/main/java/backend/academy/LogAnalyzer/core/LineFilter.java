@@ -0,0 +1,147 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Условие отбора записей запуска: интервал времени и выражения фильтров.
+ *
+ * <p>
+ * Границы интервала при создании переводятся в секунды эпохи и наносекунды, поэтому проверка времени записи — это
+ * сравнение чисел без {@link ZonedDateTime}. Кроме проверки разобранной записи фильтр умеет отклонять сырые строки
+ * формата combined до полного разбора ({@link #testLine}): по началу строки находятся только адрес клиента, время,
+ * запрос и статус, и проверяются интервал и те условия фильтров, которые читают только эти поля. Когда запуск берет
+ * один час из месячного лога, почти все строки отбрасываются, не дойдя до Referer и User-Agent.
+ *
+ * <p>
+ * Экземпляр неизменяемый и может проверять записи из нескольких потоков; состояние проверки строки хранится в курсоре,
+ * который передает вызывающая сторона.
+ */
+public final class LineFilter implements Predicate<LogRecord> {
+    // Поля, которые LogRecordCursor находит в начале строки combined
+    private static final Set<LogField> LINE_FIELDS = EnumSet.of(LogField.REMOTE_ADDR, LogField.TIME_LOCAL,
+            LogField.REQUEST, LogField.STATUS);
+
+    private final long fromSecond;
+    private final int fromNano;
+    private final long toSecond;
+    private final int toNano;
+    private final boolean timeBounded;
+    private final FilterExpression[] filters;
+    private final FilterExpression[] lineFilters;
+    private final Set<LogField> lineFields;
+    private final Set<LogField> requiredFields;
+
+    private LineFilter(ZonedDateTime from, ZonedDateTime to, List<FilterExpression> filters) {
+        this.fromSecond = from == null ? Long.MIN_VALUE : from.toEpochSecond();
+        this.fromNano = from == null ? 0 : from.getNano();
+        this.toSecond = to == null ? Long.MAX_VALUE : to.toEpochSecond();
+        this.toNano = to == null ? Integer.MAX_VALUE : to.getNano();
+        this.timeBounded = from != null || to != null;
+        this.filters = filters.toArray(new FilterExpression[0]);
+        List<FilterExpression> restricted = new ArrayList<>();
+        this.lineFields = EnumSet.noneOf(LogField.class);
+        this.requiredFields = EnumSet.noneOf(LogField.class);
+        if (timeBounded) {
+            lineFields.add(LogField.TIME_LOCAL);
+            requiredFields.add(LogField.TIME_LOCAL);
+        }
+        for (FilterExpression filter : filters) {
+            requiredFields.addAll(filter.getRequiredFields());
+            FilterExpression part = filter.restrictTo(LINE_FIELDS);
+            if (!part.isAll()) {
+                restricted.add(part);
+                lineFields.addAll(part.getRequiredFields());
+            }
+        }
+        this.lineFilters = restricted.toArray(new FilterExpression[0]);
+    }
+
+    /**
+     * Создает фильтр.
+     *
+     * @param from
+     *            начало интервала (включительно) или {@code null}
+     * @param to
+     *            конец интервала (включительно) или {@code null}
+     * @param filters
+     *            выражения, которым должна удовлетворять запись
+     *
+     * @return фильтр
+     */
+    public static LineFilter of(ZonedDateTime from, ZonedDateTime to, FilterExpression... filters) {
+        List<FilterExpression> active = new ArrayList<>();
+        for (FilterExpression filter : filters) {
+            if (!filter.isAll()) {
+                active.add(filter);
+            }
+        }
+        return new LineFilter(from, to, active);
+    }
+
+    @Override
+    public boolean test(LogRecord entry) {
+        if (!testTime(entry)) {
+            return false;
+        }
+        for (FilterExpression filter : filters) {
+            if (!filter.test(entry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет сырую строку формата combined до полного разбора.
+     *
+     * <p>
+     * Ответ {@code false} окончательный: разобранная запись этой строки не прошла бы {@link #test(LogRecord)}. Ответ
+     * {@code true} означает только, что строку нужно разобрать и проверить целиком.
+     *
+     * @param buffer
+     *            буфер прочитанных символов
+     * @param from
+     *            начало строки в буфере
+     * @param to
+     *            конец строки в буфере
+     * @param cursor
+     *            курсор источника; после вызова его нужно заново заполнить разбором строки
+     *
+     * @return {@code false}, если строку можно отбросить без разбора
+     */
+    public boolean testLine(char[] buffer, int from, int to, LogRecordCursor cursor) {
+        if (lineFields.isEmpty() || !cursor.locate(buffer, from, to, lineFields)) {
+            return true;
+        }
+        if (!testTime(cursor)) {
+            return false;
+        }
+        for (FilterExpression filter : lineFilters) {
+            if (!filter.test(cursor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Поля записи, которые читает фильтр.
+     */
+    public Set<LogField> getRequiredFields() {
+        return requiredFields;
+    }
+
+    private boolean testTime(LogRecord entry) {
+        if (!timeBounded) {
+            return true;
+        }
+        long second = entry.getEpochSecond();
+        return (second > fromSecond || second == fromSecond && entry.getNano() >= fromNano)
+                && (second < toSecond || second == toSecond && entry.getNano() <= toNano);
+    }
+}
@@ -1,39 +1,104 @@
 package backend.academy.LogAnalyzer.core;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.Setter;
 
-@Getter
-@Setter
-@NoArgsConstructor
-@AllArgsConstructor
-
-public class LogEntry {
+public class LogEntry implements LogRecord {
     private String remoteAddr;
     private String remoteUser;
-    private ZonedDateTime timeLocal;
+    // Время хранится как секунды эпохи и смещение, ZonedDateTime создается только по запросу
+    private long epochSecond;
+    private int nano;
+    private int offsetSeconds;
+    private ZoneId zone;
     private String request;
     private int status;
     private long bodyBytesSent;
     private String httpReferer;
     private String httpUserAgent;
+    // Поля расширенных форматов log_format; -1 означает, что значения в строке нет
+    private String host;
+    private String requestId;
+    private long requestTimeMillis = -1;
+    private long upstreamResponseTimeMillis = -1;
+
+    // Отложенные текстовые поля: строка лога и границы полей, подстроки создаются при первом обращении
+    private static final int FIELD_COUNT = LogField.values().length;
+    private String source;
+    private int[] sourceBounds;
+    private int pendingFields;
+
+    public LogEntry() {
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    public LogEntry(String remoteAddr, String remoteUser, ZonedDateTime timeLocal, String request, int status,
+            long bodyBytesSent, String httpReferer, String httpUserAgent) {
+        this.remoteAddr = remoteAddr;
+        this.remoteUser = remoteUser;
+        assignTimeLocal(timeLocal);
+        this.request = request;
+        this.status = status;
+        this.bodyBytesSent = bodyBytesSent;
+        this.httpReferer = httpReferer;
+        this.httpUserAgent = httpUserAgent;
+    }
 
     public String getRemoteAddr() {
+        if (isPending(LogField.REMOTE_ADDR)) {
+            remoteAddr = materialize(LogField.REMOTE_ADDR);
+        }
         return remoteAddr;
     }
 
     public String getRemoteUser() {
+        if (isPending(LogField.REMOTE_USER)) {
+            remoteUser = materialize(LogField.REMOTE_USER);
+        }
         return remoteUser;
     }
 
     public ZonedDateTime getTimeLocal() {
-        return timeLocal;
+        if (zone == null) {
+            return null;
+        }
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), zone);
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public int getNano() {
+        return nano;
+    }
+
+    public int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Сравнивает время записи с указанным моментом без создания ZonedDateTime.
+     *
+     * @param other
+     *            момент времени
+     *
+     * @return отрицательное число, ноль или положительное число, если запись раньше, одновременно или позже
+     */
+    public int compareTimeTo(ZonedDateTime other) {
+        int result = Long.compare(epochSecond, other.toEpochSecond());
+        return result != 0 ? result : Integer.compare(nano, other.getNano());
     }
 
     public String getRequest() {
+        if (isPending(LogField.REQUEST)) {
+            request = materialize(LogField.REQUEST);
+        }
         return request;
     }
 
@@ -46,27 +111,92 @@ public class LogEntry {
     }
 
     public String getHttpReferer() {
+        if (isPending(LogField.HTTP_REFERER)) {
+            httpReferer = materialize(LogField.HTTP_REFERER);
+        }
         return httpReferer;
     }
 
     public String getHttpUserAgent() {
+        if (isPending(LogField.HTTP_USER_AGENT)) {
+            httpUserAgent = materialize(LogField.HTTP_USER_AGENT);
+        }
         return httpUserAgent;
     }
 
+    public String getHost() {
+        if (isPending(LogField.HOST)) {
+            host = materialize(LogField.HOST);
+        }
+        return host;
+    }
+
+    public String getRequestId() {
+        if (isPending(LogField.REQUEST_ID)) {
+            requestId = materialize(LogField.REQUEST_ID);
+        }
+        return requestId;
+    }
+
+    public long getRequestTimeMillis() {
+        return requestTimeMillis;
+    }
+
+    public long getUpstreamResponseTimeMillis() {
+        return upstreamResponseTimeMillis;
+    }
+
     // Сеттеры
     public void setRemoteAddr(String remoteAddr) {
+        clearPending(LogField.REMOTE_ADDR);
         this.remoteAddr = remoteAddr;
     }
 
     public void setRemoteUser(String remoteUser) {
+        clearPending(LogField.REMOTE_USER);
         this.remoteUser = remoteUser;
     }
 
     public void setTimeLocal(ZonedDateTime timeLocal) {
-        this.timeLocal = timeLocal;
+        assignTimeLocal(timeLocal);
+    }
+
+    // Конструктор не вызывает переопределяемые сеттеры: поля времени заполняются здесь
+    private void assignTimeLocal(ZonedDateTime timeLocal) {
+        if (timeLocal == null) {
+            this.epochSecond = 0;
+            this.nano = 0;
+            this.offsetSeconds = 0;
+            this.zone = null;
+        } else {
+            this.epochSecond = timeLocal.toEpochSecond();
+            this.nano = timeLocal.getNano();
+            this.offsetSeconds = timeLocal.getOffset().getTotalSeconds();
+            this.zone = timeLocal.getZone();
+        }
+    }
+
+    /**
+     * Устанавливает время записи.
+     *
+     * @param epochSecond
+     *            секунды от начала эпохи (UTC)
+     * @param nano
+     *            наносекунды внутри секунды
+     * @param offsetSeconds
+     *            смещение локального времени от UTC в секундах
+     * @param zone
+     *            часовой пояс или смещение, в котором было записано время
+     */
+    public void setTimestamp(long epochSecond, int nano, int offsetSeconds, ZoneId zone) {
+        this.epochSecond = epochSecond;
+        this.nano = nano;
+        this.offsetSeconds = offsetSeconds;
+        this.zone = zone;
     }
 
     public void setRequest(String request) {
+        clearPending(LogField.REQUEST);
         this.request = request;
     }
 
@@ -79,10 +209,70 @@ public class LogEntry {
     }
 
     public void setHttpReferer(String httpReferer) {
+        clearPending(LogField.HTTP_REFERER);
         this.httpReferer = httpReferer;
     }
 
     public void setHttpUserAgent(String httpUserAgent) {
+        clearPending(LogField.HTTP_USER_AGENT);
         this.httpUserAgent = httpUserAgent;
     }
+
+    public void setHost(String host) {
+        clearPending(LogField.HOST);
+        this.host = host;
+    }
+
+    public void setRequestId(String requestId) {
+        clearPending(LogField.REQUEST_ID);
+        this.requestId = requestId;
+    }
+
+    public void setRequestTimeMillis(long requestTimeMillis) {
+        this.requestTimeMillis = requestTimeMillis;
+    }
+
+    public void setUpstreamResponseTimeMillis(long upstreamResponseTimeMillis) {
+        this.upstreamResponseTimeMillis = upstreamResponseTimeMillis;
+    }
+
+    /**
+     * Откладывает создание текстового поля: значение будет вырезано из строки лога при первом обращении к геттеру. Все
+     * отложенные поля одной записи должны ссылаться на одну и ту же строку.
+     *
+     * @param field
+     *            текстовое поле записи
+     * @param line
+     *            строка лога
+     * @param from
+     *            начало значения в строке
+     * @param to
+     *            конец значения в строке
+     */
+    void defer(LogField field, String line, int from, int to) {
+        if (sourceBounds == null) {
+            sourceBounds = new int[FIELD_COUNT * 2];
+        }
+        source = line;
+        sourceBounds[field.ordinal() * 2] = from;
+        sourceBounds[field.ordinal() * 2 + 1] = to;
+        pendingFields |= 1 << field.ordinal();
+    }
+
+    private boolean isPending(LogField field) {
+        return (pendingFields & (1 << field.ordinal())) != 0;
+    }
+
+    private void clearPending(LogField field) {
+        pendingFields &= ~(1 << field.ordinal());
+        if (pendingFields == 0) {
+            source = null;
+        }
+    }
+
+    private String materialize(LogField field) {
+        String value = source.substring(sourceBounds[field.ordinal() * 2], sourceBounds[field.ordinal() * 2 + 1]);
+        clearPending(field);
+        return value;
+    }
 }
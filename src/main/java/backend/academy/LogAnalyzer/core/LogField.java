@@ -0,0 +1,45 @@
+package backend.academy.LogAnalyzer.core;
+
+/**
+ * Поля записи лога, которые умеет извлекать анализатор, и соответствующие им переменные NGINX.
+ */
+public enum LogField {
+    REMOTE_ADDR("remote_addr"), REMOTE_USER("remote_user"), TIME_LOCAL("time_local"), REQUEST("request"),
+    STATUS("status"), BODY_BYTES_SENT("body_bytes_sent"), HTTP_REFERER("http_referer"),
+    HTTP_USER_AGENT("http_user_agent"), REQUEST_TIME("request_time"), UPSTREAM_RESPONSE_TIME("upstream_response_time"),
+    HOST("host"), REQUEST_ID("request_id");
+
+    private final String variable;
+
+    LogField(String variable) {
+        this.variable = variable;
+    }
+
+    /**
+     * Имя переменной NGINX без знака {@code $}.
+     */
+    public String getVariable() {
+        return variable;
+    }
+
+    /**
+     * Находит поле по имени переменной NGINX.
+     *
+     * @param variable
+     *            имя переменной без знака {@code $}
+     *
+     * @return поле или {@code null}, если анализатор не использует эту переменную
+     */
+    public static LogField forVariable(String variable) {
+        // $time_iso8601 несет то же время, что и $time_local, только в другом формате
+        if ("time_iso8601".equals(variable)) {
+            return TIME_LOCAL;
+        }
+        for (LogField field : values()) {
+            if (field.variable.equals(variable)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -1,27 +1,135 @@
 package backend.academy.LogAnalyzer.core;
 
 import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.Set;
 
 public final class LogFilter {
+    private static final int DECIMAL_RADIX = 10;
+
+    // Имена полей для filterByField
+    private static final String FIELD_AGENT = "agent";
+    private static final String FIELD_METHOD = "method";
+    private static final String FIELD_IP = "ip";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_HOST = "host";
+    private static final String FIELD_REQUEST_ID = "request_id";
+
     private LogFilter() {
         throw new UnsupportedOperationException("Utility class");
     }
 
-    public static boolean filterByTime(LogEntry entry, ZonedDateTime from, ZonedDateTime to) {
-        ZonedDateTime time = entry.getTimeLocal();
-        return (from == null || !time.isBefore(from)) && (to == null || !time.isAfter(to));
+    /**
+     * Проверяет, попадает ли время записи в интервал; границы {@code null} не ограничивают интервал.
+     */
+    public static boolean filterByTime(LogRecord entry, ZonedDateTime from, ZonedDateTime to) {
+        return (from == null || compareTime(entry, from) >= 0) && (to == null || compareTime(entry, to) <= 0);
     }
 
-    public static boolean filterByField(LogEntry entry, String field, String value) {
+    /**
+     * Проверяет значение поля записи. Сравнение идет по символам поля, без создания подстрок, поэтому фильтр можно
+     * применять к {@link LogRecordCursor}.
+     */
+    public static boolean filterByField(LogRecord entry, String field, String value) {
         if (field == null || value == null || value.isEmpty()) {
             return true;
         }
         return switch (field.toLowerCase()) {
-        case "agent" -> entry.getHttpUserAgent() != null && entry.getHttpUserAgent().contains(value);
-        case "method" -> entry.getRequest() != null && entry.getRequest().split(" ")[0].equalsIgnoreCase(value);
-        case "ip" -> entry.getRemoteAddr() != null && entry.getRemoteAddr().equals(value);
-        case "status" -> String.valueOf(entry.getStatus()).equals(value);
+        case FIELD_AGENT -> entry.getHttpUserAgent() != null
+                && contains(entry.getHttpUserAgent(), 0, entry.getHttpUserAgent().length(), value);
+        case FIELD_METHOD -> entry.getRequest() != null && firstWordEqualsIgnoreCase(entry.getRequest(), value);
+        case FIELD_IP -> entry.getRemoteAddr() != null && value.contentEquals(entry.getRemoteAddr());
+        case FIELD_STATUS -> numberEquals(entry.getStatus(), value);
+        case FIELD_HOST -> entry.getHost() != null
+                && regionEqualsIgnoreCase(entry.getHost(), 0, entry.getHost().length(), value);
+        case FIELD_REQUEST_ID -> entry.getRequestId() != null && value.contentEquals(entry.getRequestId());
         default -> true;
         };
     }
+
+    /**
+     * Поля записи, которые читает {@link #filterByField(LogRecord, String, String)} для указанного поля фильтра.
+     *
+     * @param field
+     *            поле фильтра или {@code null}, если фильтра нет
+     *
+     * @return набор полей записи (возможно, пустой)
+     */
+    public static Set<LogField> requiredFields(String field) {
+        if (field == null) {
+            return EnumSet.noneOf(LogField.class);
+        }
+        return switch (field.toLowerCase()) {
+        case FIELD_AGENT -> EnumSet.of(LogField.HTTP_USER_AGENT);
+        case FIELD_METHOD -> EnumSet.of(LogField.REQUEST);
+        case FIELD_IP -> EnumSet.of(LogField.REMOTE_ADDR);
+        case FIELD_STATUS -> EnumSet.of(LogField.STATUS);
+        case FIELD_HOST -> EnumSet.of(LogField.HOST);
+        case FIELD_REQUEST_ID -> EnumSet.of(LogField.REQUEST_ID);
+        default -> EnumSet.noneOf(LogField.class);
+        };
+    }
+
+    private static int compareTime(LogRecord entry, ZonedDateTime other) {
+        int result = Long.compare(entry.getEpochSecond(), other.toEpochSecond());
+        return result != 0 ? result : Integer.compare(entry.getNano(), other.getNano());
+    }
+
+    /**
+     * Есть ли {@code value} внутри участка {@code text[from, to)}.
+     */
+    static boolean contains(CharSequence text, int from, int to, String value) {
+        int last = to - value.length();
+        for (int start = from; start <= last; start++) {
+            int i = 0;
+            while (i < value.length() && text.charAt(start + i) == value.charAt(i)) {
+                i++;
+            }
+            if (i == value.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Первое слово запроса, как split(" ")[0]
+    private static boolean firstWordEqualsIgnoreCase(CharSequence request, String value) {
+        int end = 0;
+        while (end < request.length() && request.charAt(end) != ' ') {
+            end++;
+        }
+        return regionEqualsIgnoreCase(request, 0, end, value);
+    }
+
+    static boolean regionEqualsIgnoreCase(CharSequence text, int from, int to, String value) {
+        if (to - from != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char a = text.charAt(from + i);
+            char b = value.charAt(i);
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)
+                    && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // То же, что String.valueOf(number).equals(value), но без создания строки
+    private static boolean numberEquals(int number, String value) {
+        if (number < 0) {
+            return String.valueOf(number).equals(value);
+        }
+        int remaining = number;
+        int i = value.length() - 1;
+        do {
+            if (i < 0 || value.charAt(i) != '0' + remaining % DECIMAL_RADIX) {
+                return false;
+            }
+            remaining /= DECIMAL_RADIX;
+            i--;
+        } while (remaining > 0);
+        return i < 0;
+    }
 }
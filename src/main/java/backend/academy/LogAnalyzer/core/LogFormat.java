@@ -0,0 +1,352 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Скомпилированный формат NGINX {@code log_format}.
+ *
+ * <p>
+ * Строка формата разбирается один раз на чередование литералов и переменных. Для каждой строки лога план проходит по
+ * литералам слева направо: значение переменной заканчивается там, где начинается следующий литерал, а последняя
+ * переменная заканчивается перед литералом, которым завершается строка. Регулярные выражения не используются, а
+ * переменные, которые не нужны текущему запуску, только пропускаются и не превращаются в строки.
+ *
+ * <p>
+ * Экземпляр неизменяемый и может использоваться из нескольких потоков; состояние разбора дат хранится в
+ * {@link TimestampDecoder}, который передается вызывающей стороной.
+ */
+public final class LogFormat {
+
+    /**
+     * Стандартный формат {@code combined}.
+     */
+    public static final String COMBINED = "$remote_addr - $remote_user [$time_local] \"$request\" $status "
+            + "$body_bytes_sent \"$http_referer\" \"$http_user_agent\"";
+
+    private static final String DIRECTIVE = "log_format";
+    private static final int STATUS_DIGITS = 3;
+    private static final int DECIMAL_RADIX = 10;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int MILLIS_DIGITS = 3;
+    private static final int MILLIS_PER_SECOND = 1000;
+
+    private final String format;
+    // literals[i] стоит перед переменной i, последний литерал завершает строку
+    private final String[] literals;
+    // Поле для каждой переменной или null, если значение переменной не нужно
+    private final LogField[] fields;
+    private final Set<LogField> availableFields;
+    private final boolean combined;
+
+    private LogFormat(String format, List<String> literals, List<LogField> fields, Set<LogField> availableFields) {
+        this.format = format;
+        this.literals = literals.toArray(new String[0]);
+        this.fields = fields.toArray(new LogField[0]);
+        this.availableFields = Collections.unmodifiableSet(availableFields);
+        this.combined = COMBINED.equals(format);
+    }
+
+    /**
+     * Компилирует формат, извлекая все известные анализатору переменные.
+     *
+     * @param format
+     *            строка формата или целая директива {@code log_format name '...';}
+     *
+     * @return скомпилированный формат
+     */
+    public static LogFormat compile(String format) {
+        return compile(format, EnumSet.allOf(LogField.class));
+    }
+
+    /**
+     * Компилирует формат, извлекая только указанные поля.
+     *
+     * @param format
+     *            строка формата или целая директива {@code log_format name '...';}
+     * @param requiredFields
+     *            поля, которые нужны запуску; остальные переменные пропускаются
+     *
+     * @return скомпилированный формат
+     *
+     * @throws IllegalArgumentException
+     *             если в формате нет переменных или времени либо две переменные идут подряд без разделителя
+     */
+    public static LogFormat compile(String format, Set<LogField> requiredFields) {
+        String body = unwrapDirective(format);
+        List<String> literals = new ArrayList<>();
+        List<LogField> fields = new ArrayList<>();
+        Set<LogField> available = EnumSet.noneOf(LogField.class);
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < body.length()) {
+            int nameEnd = variableEnd(body, pos);
+            if (nameEnd == pos) {
+                literal.append(body.charAt(pos++));
+                continue;
+            }
+            boolean braced = body.charAt(pos + 1) == '{';
+            String name = body.substring(pos + (braced ? 2 : 1), braced ? nameEnd - 1 : nameEnd);
+            if (literal.isEmpty() && !literals.isEmpty()) {
+                throw new IllegalArgumentException(
+                        "Переменные формата должны разделяться текстом: $" + name + " в \"" + body + "\"");
+            }
+            LogField field = LogField.forVariable(name);
+            literals.add(literal.toString());
+            fields.add(field != null && requiredFields.contains(field) ? field : null);
+            if (field != null) {
+                available.add(field);
+            }
+            literal.setLength(0);
+            pos = nameEnd;
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("В формате лога нет ни одной переменной: \"" + body + "\"");
+        }
+        // Без времени у записей нет ни часа, ни периода отчета, ни интервала --from/--to
+        if (!available.contains(LogField.TIME_LOCAL)) {
+            throw new IllegalArgumentException(
+                    "В формате лога нет времени ($time_local или $time_iso8601): \"" + body + "\"");
+        }
+        literals.add(literal.toString());
+        return new LogFormat(body, literals, fields, available);
+    }
+
+    /**
+     * Строка формата без обрамления директивы.
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Поля, значения которых есть в строках этого формата.
+     */
+    public Set<LogField> getAvailableFields() {
+        return availableFields;
+    }
+
+    /**
+     * Совпадает ли формат со стандартным {@code combined}, для которого есть специализированный сканер.
+     */
+    public boolean isCombined() {
+        return combined;
+    }
+
+    /**
+     * Разбирает строку лога по плану формата.
+     *
+     * @param line
+     *            строка лога
+     * @param timestamps
+     *            декодер временных меток источника
+     *
+     * @return LogEntry или {@code null}, если строка не соответствует формату
+     */
+    public LogEntry parse(String line, TimestampDecoder timestamps) {
+        if (!line.startsWith(literals[0])) {
+            return null;
+        }
+        LogEntry entry = new LogEntry();
+        int pos = literals[0].length();
+        int last = fields.length - 1;
+        for (int i = 0; i <= last; i++) {
+            String next = literals[i + 1];
+            int end;
+            if (i == last) {
+                end = line.length() - next.length();
+                if (end < pos || !line.endsWith(next)) {
+                    return null;
+                }
+            } else {
+                end = line.indexOf(next, pos);
+            }
+            if (end < 0 || fields[i] != null && !applyField(fields[i], line, pos, end, timestamps, entry)) {
+                return null;
+            }
+            pos = end + next.length();
+        }
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return format;
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static boolean applyField(LogField field, String line, int from, int to, TimestampDecoder timestamps,
+            LogEntry entry) {
+        switch (field) {
+        case REMOTE_ADDR, REMOTE_USER, REQUEST, HTTP_REFERER, HTTP_USER_AGENT, HOST, REQUEST_ID -> entry.defer(field,
+                line, from, to);
+        case TIME_LOCAL -> {
+            if (!timestamps.decode(line, from, to)) {
+                return false;
+            }
+            timestamps.applyTo(entry);
+        }
+        default -> {
+            return applyNumericField(field, line, from, to, entry);
+        }
+        }
+        return true;
+    }
+
+    private static boolean applyNumericField(LogField field, String line, int from, int to, LogEntry entry) {
+        switch (field) {
+        case STATUS -> {
+            long status = to - from == STATUS_DIGITS ? parseDigits(line, from, to) : -1;
+            if (status < 0) {
+                return false;
+            }
+            entry.setStatus((int) status);
+        }
+        case BODY_BYTES_SENT -> {
+            long size = parseDigits(line, from, to);
+            if (size < 0) {
+                return false;
+            }
+            entry.setBodyBytesSent(size);
+        }
+        case REQUEST_TIME -> entry.setRequestTimeMillis(parseMillis(line, from, to));
+        case UPSTREAM_RESPONSE_TIME -> entry.setUpstreamResponseTimeMillis(parseUpstreamMillis(line, from, to));
+        default -> {
+            // Остальные поля форматом не извлекаются
+        }
+        }
+        return true;
+    }
+
+    /**
+     * Разбирает неотрицательное целое число.
+     *
+     * @return число или {@code -1}, если в диапазоне не только цифры
+     */
+    private static long parseDigits(String line, int from, int to) {
+        if (to <= from || to - from > MAX_LONG_DIGITS) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * DECIMAL_RADIX + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает время в секундах с миллисекундами ({@code 0.123}).
+     *
+     * @return миллисекунды или {@code -1}, если значения нет ({@code -}) или оно не разобрано
+     */
+    private static long parseMillis(String line, int from, int to) {
+        int integerEnd = from;
+        while (integerEnd < to && line.charAt(integerEnd) != '.') {
+            integerEnd++;
+        }
+        long seconds = parseDigits(line, from, integerEnd);
+        if (seconds < 0) {
+            return -1;
+        }
+        long millis = 0;
+        int fractionEnd = Math.min(to, integerEnd + 1 + MILLIS_DIGITS);
+        for (int i = integerEnd + 1; i < integerEnd + 1 + MILLIS_DIGITS; i++) {
+            char c = i < fractionEnd ? line.charAt(i) : '0';
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            millis = millis * DECIMAL_RADIX + (c - '0');
+        }
+        return seconds * MILLIS_PER_SECOND + millis;
+    }
+
+    /**
+     * Разбирает {@code $upstream_response_time}: при нескольких обращениях к upstream значения перечисляются через
+     * запятую или двоеточие, и итоговое время равно их сумме.
+     *
+     * @return миллисекунды или {@code -1}, если ни одного значения нет
+     */
+    private static long parseUpstreamMillis(String line, int from, int to) {
+        long total = -1;
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && line.charAt(end) != ',' && line.charAt(end) != ':') {
+                end++;
+            }
+            int valueStart = start;
+            int valueEnd = end;
+            while (valueStart < valueEnd && line.charAt(valueStart) == ' ') {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && line.charAt(valueEnd - 1) == ' ') {
+                valueEnd--;
+            }
+            long millis = parseMillis(line, valueStart, valueEnd);
+            if (millis >= 0) {
+                total = Math.max(total, 0) + millis;
+            }
+            start = end + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Возвращает конец имени переменной, начинающейся в позиции {@code pos}, или {@code pos}, если там не переменная.
+     */
+    private static int variableEnd(String body, int pos) {
+        if (body.charAt(pos) != '$' || pos + 1 >= body.length()) {
+            return pos;
+        }
+        if (body.charAt(pos + 1) == '{') {
+            int close = body.indexOf('}', pos + 2);
+            return close > pos + 2 ? close + 1 : pos;
+        }
+        int end = pos + 1;
+        while (end < body.length() && isVariableChar(body.charAt(end))) {
+            end++;
+        }
+        return end > pos + 1 ? end : pos;
+    }
+
+    private static boolean isVariableChar(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+    /**
+     * Принимает как саму строку формата, так и директиву из nginx.conf:
+     * {@code log_format main [escape=...] '...' '...';} — части в кавычках склеиваются.
+     */
+    private static String unwrapDirective(String format) {
+        String trimmed = format.strip();
+        if (!trimmed.startsWith(DIRECTIVE + " ")) {
+            return format;
+        }
+        StringBuilder body = new StringBuilder();
+        int pos = DIRECTIVE.length();
+        while (pos < trimmed.length()) {
+            char c = trimmed.charAt(pos);
+            if (c == '\'' || c == '"') {
+                int close = trimmed.indexOf(c, pos + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Незакрытая кавычка в директиве: " + format);
+                }
+                body.append(trimmed, pos + 1, close);
+                pos = close + 1;
+            } else {
+                pos++;
+            }
+        }
+        if (body.isEmpty()) {
+            throw new IllegalArgumentException("В директиве нет строки формата: " + format);
+        }
+        return body.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+
+/**
+ * Гистограмма неотрицательных значений с логарифмическими корзинами (по схеме HDR Histogram).
+ *
+ * <p>
+ * Значения меньше 256 хранятся точно. Каждый следующий интервал {@code [2^e, 2^(e+1))} делится на 128 равных корзин,
+ * поэтому значение, восстановленное по корзине, отличается от исходного меньше чем на 1/128 (0,79%) и никогда его не
+ * превышает. Память постоянна (около 57 КБ) при любом числе значений, а две гистограммы объединяются сложением
+ * счетчиков. Максимум хранится отдельно и точно.
+ */
+final class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = SUB_BUCKETS * 2;
+    private static final int MAX_EXPONENT = Long.SIZE - 2;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total;
+    private long max;
+
+    void add(long value) {
+        add(value, 1);
+    }
+
+    void add(long value, long count) {
+        long clamped = Math.max(value, 0);
+        counts[bucketOf(clamped)] += count;
+        total += count;
+        max = Math.max(max, clamped);
+    }
+
+    void merge(LogHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long total() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /**
+     * Нижняя граница корзины, в которую попадает значение с рангом {@code rank} (с единицы); для последнего ранга —
+     * точный максимум.
+     */
+    long valueAtRank(long rank) {
+        if (rank >= total) {
+            return max;
+        }
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Записывает максимум и непустые корзины в снимок: номер корзины кодируется разностью с предыдущей.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(max);
+        int nonEmpty = 0;
+        for (long count : counts) {
+            nonEmpty += count != 0 ? 1 : 0;
+        }
+        out.writeVarLong(nonEmpty);
+        int previous = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] != 0) {
+                out.writeVarLong(i - previous);
+                out.writeVarLong(counts[i]);
+                previous = i;
+            }
+        }
+    }
+
+    static LogHistogram readFrom(SnapshotReader in) throws IOException {
+        LogHistogram histogram = new LogHistogram();
+        histogram.max = in.readVarLong();
+        int nonEmpty = in.readInt();
+        int bucket = 0;
+        for (int i = 0; i < nonEmpty; i++) {
+            bucket += in.readInt();
+            if (bucket >= BUCKET_COUNT || bucket < 0) {
+                throw new IOException("Неизвестная корзина гистограммы в снимке статистики: " + bucket);
+            }
+            long count = in.readCount();
+            histogram.counts[bucket] += count;
+            histogram.total += count;
+        }
+        return histogram;
+    }
+
+    static int bucketOf(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
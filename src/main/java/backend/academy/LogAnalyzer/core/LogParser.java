@@ -1,10 +1,8 @@
 package backend.academy.LogAnalyzer.core;
 
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Locale;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
@@ -13,10 +11,9 @@ import org.apache.logging.log4j.Logger;
 public final class LogParser {
     private static final Logger LOGGER = LogManager.getLogger(LogParser.class);
 
-    // Поддержка двух форматов даты: старого и ISO8601
-    private static final DateTimeFormatter OLD_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z",
-            Locale.ENGLISH);
-    private static final DateTimeFormatter ISO_DATE_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+    // Поддержка двух форматов даты (старого и ISO8601); формат определяется один раз на поток чтения
+    private static final ThreadLocal<TimestampDecoder> TIMESTAMP_DECODERS = ThreadLocal
+            .withInitial(TimestampDecoder::new);
 
     private static final String LOG_PATTERN = "^(\\S+) " // IP-адрес клиента
             + "- (\\S+) " // Имя пользователя (или "-")
@@ -27,6 +24,14 @@ public final class LogParser {
             + "\"(.*?)\" " // Поле HTTP Referer в кавычках
             + "\"(.*?)\"$"; // User-Agent клиента в кавычках
 
+    // Шаблон компилируется один раз: он нужен только для строк, которые отклонил CombinedLogScanner
+    private static final Pattern COMPILED_LOG_PATTERN = Pattern.compile(LOG_PATTERN);
+
+    private static final Set<LogField> TIME_FIELDS = EnumSet.of(LogField.TIME_LOCAL);
+
+    private static final String PARSE_ERROR_MESSAGE = "Ошибка при парсинге строки лога: {}. Ошибка: {}";
+    private static final String PATTERN_MISMATCH_MESSAGE = "Строка не соответствует шаблону: {}";
+
     private static final int REMOTE_ADDR_GROUP = 1;
     private static final int REMOTE_USER_GROUP = 2;
     private static final int TIME_LOCAL_GROUP = 3;
@@ -43,17 +48,114 @@ public final class LogParser {
     /**
      * Парсит строку лога и возвращает Optional от LogEntry.
      *
+     * <p>
+     * Сначала строка разбирается однопроходным {@link CombinedLogScanner}; регулярное выражение используется только для
+     * строк, которые сканер отклонил.
+     *
      * @param line
      *            строка лога
      *
      * @return Optional от LogEntry, содержащий информацию о записи, или Optional.empty() при ошибке
      */
     public static Optional<LogEntry> parseLine(String line) {
-        Pattern pattern = Pattern.compile(LOG_PATTERN);
-        Matcher matcher = pattern.matcher(line);
+        try {
+            LogEntry entry = CombinedLogScanner.scan(line, TIMESTAMP_DECODERS.get());
+            if (entry != null) {
+                return Optional.of(entry);
+            }
+        } catch (Exception e) {
+            LOGGER.warn(PARSE_ERROR_MESSAGE, line, e.getMessage());
+            return Optional.empty();
+        }
+        return parseLineWithPattern(line);
+    }
+
+    /**
+     * Разбирает строку лога в переиспользуемый курсор.
+     *
+     * <p>
+     * Строки формата combined разбираются на месте, без выделения памяти; остальные строки уходят в медленный путь с
+     * регулярным выражением, и курсор заполняется значениями созданного LogEntry.
+     *
+     * @param buffer
+     *            буфер прочитанных символов
+     * @param from
+     *            начало строки в буфере
+     * @param to
+     *            конец строки в буфере (без символа перевода строки)
+     * @param cursor
+     *            курсор, который нужно заполнить
+     *
+     * @return {@code true}, если строка разобрана
+     */
+    public static boolean parseLine(char[] buffer, int from, int to, LogRecordCursor cursor) {
+        try {
+            if (cursor.scan(buffer, from, to)) {
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.warn(PARSE_ERROR_MESSAGE, new String(buffer, from, to - from), e.getMessage());
+            return false;
+        }
+        Optional<LogEntry> entry = parseLineWithPattern(new String(buffer, from, to - from));
+        entry.ifPresent(cursor::load);
+        return entry.isPresent();
+    }
+
+    /**
+     * Разбирает у строки формата combined только время; остальные поля курсора не определены. Строку, которую быстрый
+     * путь не принял, разбирает целиком {@link #parseLine(char[], int, int, LogRecordCursor)}.
+     *
+     * @return {@code true}, если время строки разобрано и доступно через {@link LogRecordCursor#getEpochSecond()}
+     */
+    public static boolean parseTime(char[] buffer, int from, int to, LogRecordCursor cursor) {
+        return cursor.locate(buffer, from, to, TIME_FIELDS) || parseLine(buffer, from, to, cursor);
+    }
+
+    /**
+     * Парсит строку лога в заданном формате {@code log_format}.
+     *
+     * <p>
+     * Для стандартного формата {@code combined} используется тот же путь, что и в {@link #parseLine(String)}.
+     *
+     * @param line
+     *            строка лога
+     * @param format
+     *            скомпилированный формат лога
+     *
+     * @return Optional от LogEntry или Optional.empty(), если строка не соответствует формату
+     */
+    public static Optional<LogEntry> parseLine(String line, LogFormat format) {
+        if (format == null || format.isCombined()) {
+            return parseLine(line);
+        }
+        try {
+            LogEntry entry = format.parse(line, TIMESTAMP_DECODERS.get());
+            if (entry == null) {
+                LOGGER.warn(PATTERN_MISMATCH_MESSAGE, line);
+                return Optional.empty();
+            }
+            return Optional.of(entry);
+        } catch (Exception e) {
+            LOGGER.warn(PARSE_ERROR_MESSAGE, line, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Разбирает строку лога регулярным выражением. Медленный путь для строк, которые не принял
+     * {@link CombinedLogScanner}.
+     *
+     * @param line
+     *            строка лога
+     *
+     * @return Optional от LogEntry или Optional.empty(), если строка не соответствует шаблону
+     */
+    static Optional<LogEntry> parseLineWithPattern(String line) {
+        Matcher matcher = COMPILED_LOG_PATTERN.matcher(line);
 
         if (!matcher.matches()) {
-            LOGGER.warn("Строка не соответствует шаблону: {}", line);
+            LOGGER.warn(PATTERN_MISMATCH_MESSAGE, line);
             return Optional.empty();
         }
 
@@ -67,21 +169,19 @@ public final class LogParser {
             String httpReferer = matcher.group(HTTP_REFERER_GROUP);
             String httpUserAgent = matcher.group(HTTP_USER_AGENT_GROUP);
 
-            ZonedDateTime timeLocal = parseDate(timeLocalStr);
+            TimestampDecoder timestamps = TIMESTAMP_DECODERS.get();
+            if (!timestamps.decode(timeLocalStr, 0, timeLocalStr.length())) {
+                LOGGER.warn(PARSE_ERROR_MESSAGE, line, "неизвестный формат даты " + timeLocalStr);
+                return Optional.empty();
+            }
 
-            return Optional.of(new LogEntry(remoteAddr, remoteUser, timeLocal, request, status, bodyBytesSent,
-                    httpReferer, httpUserAgent));
+            LogEntry entry = new LogEntry(remoteAddr, remoteUser, null, request, status, bodyBytesSent, httpReferer,
+                    httpUserAgent);
+            timestamps.applyTo(entry);
+            return Optional.of(entry);
         } catch (Exception e) {
-            LOGGER.warn("Ошибка при парсинге строки лога: {}. Ошибка: {}", line, e.getMessage());
+            LOGGER.warn(PARSE_ERROR_MESSAGE, line, e.getMessage());
             return Optional.empty();
         }
     }
-
-    private static ZonedDateTime parseDate(String dateStr) {
-        try {
-            return ZonedDateTime.parse(dateStr, ISO_DATE_FORMATTER);
-        } catch (DateTimeParseException e) {
-            return ZonedDateTime.parse(dateStr, OLD_DATE_FORMATTER);
-        }
-    }
 }
@@ -0,0 +1,59 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.time.ZoneId;
+
+/**
+ * Разобранная запись лога, доступная для фильтров и статистики.
+ *
+ * <p>
+ * Реализуется как {@link LogEntry}, поля которого — обычные строки, так и переиспользуемым {@link LogRecordCursor},
+ * поля которого — представления внутри буфера прочитанных символов. Значения, возвращаемые курсором, действительны
+ * только до разбора следующей строки: если их нужно сохранить, следует вызвать {@code toString()}.
+ */
+public interface LogRecord {
+
+    CharSequence getRemoteAddr();
+
+    CharSequence getRemoteUser();
+
+    /**
+     * Секунды эпохи (UTC) времени записи.
+     */
+    long getEpochSecond();
+
+    int getNano();
+
+    /**
+     * Смещение локального времени записи от UTC в секундах.
+     */
+    int getOffsetSeconds();
+
+    /**
+     * Часовой пояс записи или {@code null}, если в строке не было времени.
+     */
+    ZoneId getZone();
+
+    CharSequence getRequest();
+
+    int getStatus();
+
+    long getBodyBytesSent();
+
+    CharSequence getHttpReferer();
+
+    CharSequence getHttpUserAgent();
+
+    CharSequence getHost();
+
+    CharSequence getRequestId();
+
+    /**
+     * Время обработки запроса в миллисекундах или {@code -1}, если его нет.
+     */
+    long getRequestTimeMillis();
+
+    /**
+     * Время ответа upstream в миллисекундах или {@code -1}, если его нет.
+     */
+    long getUpstreamResponseTimeMillis();
+}
@@ -0,0 +1,270 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.time.ZoneId;
+import java.util.Set;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.BODY_BYTES_SENT_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.BODY_BYTES_SENT_START;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.BOUNDS_SIZE;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.HTTP_REFERER_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.HTTP_REFERER_START;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.HTTP_USER_AGENT_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.HTTP_USER_AGENT_START;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.NO_MATCH;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.REMOTE_ADDR_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.REMOTE_USER_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.REMOTE_USER_START;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.REQUEST_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.REQUEST_START;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.STATUS;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.TIME_LOCAL_END;
+import static backend.academy.LogAnalyzer.core.CombinedLogScanner.TIME_LOCAL_START;
+
+/**
+ * Переиспользуемая запись лога, поля которой указывают в буфер прочитанных символов.
+ *
+ * <p>
+ * Курсор создается один раз на источник и заполняется через
+ * {@link LogParser#parseLine(char[], int, int, LogRecordCursor)}. Строки формата combined разбираются на месте:
+ * текстовые поля — это представления участков буфера, статус, размер и время хранятся в примитивных полях, поэтому
+ * разбор строки ничего не выделяет в памяти. Значения действительны до следующего разбора; чтобы сохранить запись,
+ * используется {@link #toLogEntry()}.
+ *
+ * <p>
+ * Курсор не потокобезопасен.
+ */
+public final class LogRecordCursor implements LogRecord {
+    private final int[] bounds = new int[BOUNDS_SIZE];
+    private final TimestampDecoder timestamps = new TimestampDecoder();
+    private final CharSlice line = new CharSlice();
+    private final CharSlice remoteAddrSlice = new CharSlice();
+    private final CharSlice remoteUserSlice = new CharSlice();
+    private final CharSlice requestSlice = new CharSlice();
+    private final CharSlice httpRefererSlice = new CharSlice();
+    private final CharSlice httpUserAgentSlice = new CharSlice();
+
+    private CharSequence remoteAddr;
+    private CharSequence remoteUser;
+    private long epochSecond;
+    private int nano;
+    private int offsetSeconds;
+    private ZoneId zone;
+    private CharSequence request;
+    private int status;
+    private long bodyBytesSent;
+    private CharSequence httpReferer;
+    private CharSequence httpUserAgent;
+    private CharSequence host;
+    private CharSequence requestId;
+    private long requestTimeMillis;
+    private long upstreamResponseTimeMillis;
+
+    /**
+     * Декодер временных меток источника, которому принадлежит курсор.
+     */
+    TimestampDecoder timestamps() {
+        return timestamps;
+    }
+
+    /**
+     * Разбирает строку формата combined быстрым путем.
+     *
+     * @return {@code false}, если строку должен разобрать медленный путь; содержимое курсора при этом не определено
+     */
+    boolean scan(char[] buffer, int from, int to) {
+        line.set(buffer, from, to);
+        if (!CombinedLogScanner.scan(line, bounds)
+                || !timestamps.decode(line, bounds[TIME_LOCAL_START], bounds[TIME_LOCAL_END])) {
+            return false;
+        }
+        remoteAddrSlice.set(buffer, from, from + bounds[REMOTE_ADDR_END]);
+        remoteUserSlice.set(buffer, from + bounds[REMOTE_USER_START], from + bounds[REMOTE_USER_END]);
+        requestSlice.set(buffer, from + bounds[REQUEST_START], from + bounds[REQUEST_END]);
+        httpRefererSlice.set(buffer, from + bounds[HTTP_REFERER_START], from + bounds[HTTP_REFERER_END]);
+        httpUserAgentSlice.set(buffer, from + bounds[HTTP_USER_AGENT_START], from + bounds[HTTP_USER_AGENT_END]);
+        remoteAddr = remoteAddrSlice;
+        remoteUser = remoteUserSlice;
+        request = requestSlice;
+        httpReferer = httpRefererSlice;
+        httpUserAgent = httpUserAgentSlice;
+        status = bounds[STATUS];
+        bodyBytesSent = CombinedLogScanner.parseDigits(line, bounds[BODY_BYTES_SENT_START],
+                bounds[BODY_BYTES_SENT_END]);
+        epochSecond = timestamps.getEpochSecond();
+        nano = timestamps.getNano();
+        offsetSeconds = timestamps.getOffsetSeconds();
+        zone = timestamps.getZone();
+        host = null;
+        requestId = null;
+        requestTimeMillis = -1;
+        upstreamResponseTimeMillis = -1;
+        return true;
+    }
+
+    /**
+     * Находит в строке формата combined только начальные поля, не проходя остаток строки: адрес клиента, затем время,
+     * запрос, статус и размер ответа. Используется для проверки строки до полного разбора; поля, которые не были
+     * найдены, остаются от предыдущей строки, и до следующего {@link #scan(char[], int, int)} курсор годится только для
+     * чтения найденных полей.
+     *
+     * @param buffer
+     *            буфер прочитанных символов
+     * @param from
+     *            начало строки в буфере
+     * @param to
+     *            конец строки в буфере
+     * @param fields
+     *            поля, которые нужно найти ({@link LogField#REMOTE_ADDR}, {@link LogField#TIME_LOCAL},
+     *            {@link LogField#REQUEST}, {@link LogField#STATUS})
+     *
+     * @return {@code false}, если начало строки не похоже на combined и о ней ничего нельзя сказать до полного разбора
+     */
+    boolean locate(char[] buffer, int from, int to, Set<LogField> fields) {
+        line.set(buffer, from, to);
+        int pos = CombinedLogScanner.scanClient(line, bounds);
+        if (pos == NO_MATCH) {
+            return false;
+        }
+        remoteAddrSlice.set(buffer, from, from + bounds[REMOTE_ADDR_END]);
+        remoteAddr = remoteAddrSlice;
+        boolean needsTime = fields.contains(LogField.TIME_LOCAL);
+        boolean needsStatus = fields.contains(LogField.STATUS);
+        if (!needsTime && !needsStatus && !fields.contains(LogField.REQUEST)) {
+            return true;
+        }
+        pos = CombinedLogScanner.scanTimeAndRequest(line, pos, bounds);
+        if (pos == NO_MATCH
+                || needsTime && !timestamps.decode(line, bounds[TIME_LOCAL_START], bounds[TIME_LOCAL_END])) {
+            return false;
+        }
+        requestSlice.set(buffer, from + bounds[REQUEST_START], from + bounds[REQUEST_END]);
+        request = requestSlice;
+        if (needsTime) {
+            epochSecond = timestamps.getEpochSecond();
+            nano = timestamps.getNano();
+            offsetSeconds = timestamps.getOffsetSeconds();
+            zone = timestamps.getZone();
+        }
+        // Запрос может содержать кавычку с пробелом: его конец подтверждается только статусом и размером после него,
+        // поэтому они проверяются, даже если статус не нужен
+        pos = CombinedLogScanner.scanStatusAndSize(line, pos, bounds);
+        if (needsStatus) {
+            status = bounds[STATUS];
+        }
+        return pos != NO_MATCH;
+    }
+
+    /**
+     * Заполняет курсор значениями записи, разобранной медленным путем.
+     */
+    void load(LogEntry entry) {
+        remoteAddr = entry.getRemoteAddr();
+        remoteUser = entry.getRemoteUser();
+        epochSecond = entry.getEpochSecond();
+        nano = entry.getNano();
+        offsetSeconds = entry.getOffsetSeconds();
+        zone = entry.getZone();
+        request = entry.getRequest();
+        status = entry.getStatus();
+        bodyBytesSent = entry.getBodyBytesSent();
+        httpReferer = entry.getHttpReferer();
+        httpUserAgent = entry.getHttpUserAgent();
+        host = entry.getHost();
+        requestId = entry.getRequestId();
+        requestTimeMillis = entry.getRequestTimeMillis();
+        upstreamResponseTimeMillis = entry.getUpstreamResponseTimeMillis();
+    }
+
+    /**
+     * Копирует текущую запись в самостоятельный {@link LogEntry}.
+     */
+    public LogEntry toLogEntry() {
+        LogEntry entry = new LogEntry(toStringOrNull(remoteAddr), toStringOrNull(remoteUser), null,
+                toStringOrNull(request), status, bodyBytesSent, toStringOrNull(httpReferer),
+                toStringOrNull(httpUserAgent));
+        entry.setTimestamp(epochSecond, nano, offsetSeconds, zone);
+        entry.setHost(toStringOrNull(host));
+        entry.setRequestId(toStringOrNull(requestId));
+        entry.setRequestTimeMillis(requestTimeMillis);
+        entry.setUpstreamResponseTimeMillis(upstreamResponseTimeMillis);
+        return entry;
+    }
+
+    private static String toStringOrNull(CharSequence value) {
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public CharSequence getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    @Override
+    public CharSequence getRemoteUser() {
+        return remoteUser;
+    }
+
+    @Override
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    @Override
+    public int getNano() {
+        return nano;
+    }
+
+    @Override
+    public int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public CharSequence getRequest() {
+        return request;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public long getBodyBytesSent() {
+        return bodyBytesSent;
+    }
+
+    @Override
+    public CharSequence getHttpReferer() {
+        return httpReferer;
+    }
+
+    @Override
+    public CharSequence getHttpUserAgent() {
+        return httpUserAgent;
+    }
+
+    @Override
+    public CharSequence getHost() {
+        return host;
+    }
+
+    @Override
+    public CharSequence getRequestId() {
+        return requestId;
+    }
+
+    @Override
+    public long getRequestTimeMillis() {
+        return requestTimeMillis;
+    }
+
+    @Override
+    public long getUpstreamResponseTimeMillis() {
+        return upstreamResponseTimeMillis;
+    }
+}
@@ -1,28 +1,92 @@
 package backend.academy.LogAnalyzer.core;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class LogStatistics {
+    /**
+     * Поля записи, которые читает {@link #updateStatistics(LogRecord)}; остальные поля разбирать не нужно.
+     */
+    public static final Set<LogField> REQUIRED_FIELDS = Collections.unmodifiableSet(EnumSet.of(LogField.REMOTE_ADDR,
+            LogField.TIME_LOCAL, LogField.REQUEST, LogField.STATUS, LogField.BODY_BYTES_SENT, LogField.HTTP_USER_AGENT,
+            LogField.REQUEST_TIME, LogField.UPSTREAM_RESPONSE_TIME));
+
     private static final double PERCENTILE_95 = 0.95;
-    private int totalRequests;
-    private Map<String, Integer> resourceCounts = new HashMap<>();
-    private Map<Integer, Integer> statusCounts = new HashMap<>();
-    private Map<String, Integer> methodCounts = new HashMap<>();
-    private List<Long> responseSizes = new ArrayList<>();
-    private ZonedDateTime startDate;
-    private ZonedDateTime endDate;
+    private static final int SECONDS_PER_HOUR = 3600;
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int HOURS_PER_DAY = 24;
+    // Трехзначные коды HTTP считаются в массиве, остальные (из нестандартных источников) — в карте
+    private static final int STATUS_LIMIT = 1000;
+    private static final int TOP_IP_LIMIT = 10;
+    // 4 КБ и около 1,6% ошибки на весь период, 1 КБ и около 3,3% на каждый час
+    private static final int UNIQUE_PRECISION = 12;
+    private static final int HOURLY_UNIQUE_PRECISION = 10;
+    // Все счетчики 64-битные: помесячные агрегаты превышают Integer.MAX_VALUE
+    private long totalRequests;
+    // Счетчики принимают поля записи как CharSequence и не создают строк для уже встреченных значений
+    private CharSequenceCounter resourceCounts = new CharSequenceCounter();
+    // В приближенном режиме ресурсы и IP-адреса считаются в Space-Saving с фиксированным числом счетчиков
+    private TopKCounter resourceTopK;
+    private TopKCounter ipAddressTopK;
+    private final long[] statusCounts = new long[STATUS_LIMIT];
+    private final LongCounter otherStatusCounts = new LongCounter();
+    private final CharSequenceCounter methodCounts = new CharSequenceCounter();
+    // Размеры ответов: по умолчанию гистограмма постоянного размера, в точном режиме — все различные значения
+    private LogHistogram sizeSketch = new LogHistogram();
+    private LongCounter exactSizes;
+    private long responseSizeCount;
+    private long responseSizeSum;
+    // Границы периода хранятся как секунды эпохи, ZonedDateTime создается только в геттере
+    private ZoneId startZone;
+    private long startEpochSecond;
+    private int startNano;
+    private ZoneId endZone;
+    private long endEpochSecond;
+    private int endNano;
     private String fileName;
+    // Число отобранных записей по входным файлам, в порядке их перечисления; пусто, если файл один
+    private final Map<String, Long> fileTotals = new LinkedHashMap<>();
 
     // Дополнительные статистические поля
-    private Map<String, Integer> ipAddressCounts = new HashMap<>();
-    private Map<Integer, Integer> hourlyDistribution = new HashMap<>();
+    private CharSequenceCounter ipAddressCounts = new CharSequenceCounter();
+    private final long[] hourlyDistribution = new long[HOURS_PER_DAY];
+
+    // Оценки числа различных IP-адресов, ресурсов и агентов: за весь период и по часам (создаются при первой записи)
+    private final HyperLogLog uniqueIps = new HyperLogLog(UNIQUE_PRECISION);
+    private final HyperLogLog uniqueResources = new HyperLogLog(UNIQUE_PRECISION);
+    private final HyperLogLog uniqueUserAgents = new HyperLogLog(UNIQUE_PRECISION);
+    private final HyperLogLog[] hourlyUniqueIps = new HyperLogLog[HOURS_PER_DAY];
+    private final HyperLogLog[] hourlyUniqueResources = new HyperLogLog[HOURS_PER_DAY];
+    private final HyperLogLog[] hourlyUniqueUserAgents = new HyperLogLog[HOURS_PER_DAY];
+
+    // Время обработки запросов ($request_time, $upstream_response_time) в миллисекундах
+    private long requestTimeCount;
+    private long requestTimeSumMillis;
+    private long upstreamTimeCount;
+    private long upstreamTimeSumMillis;
+
+    // Временной ряд с корзинами заданной ширины; null, если ряд не нужен
+    private TimeSeries timeSeries;
+    // Группировка по сочетаниям измерений; null, если она не нужна
+    private GroupBy groupBy;
+
+    // После freeze() статистика не меняется, а представления для отчета считаются один раз и кэшируются
+    private boolean frozen;
+    private final Map<String, Map<?, ?>> views = new HashMap<>();
 
     public LogStatistics() {
     }
@@ -36,85 +100,773 @@ public class LogStatistics {
         entries.forEach(this::updateStatistics);
     }
 
-    public void updateStatistics(LogEntry entry) {
+    /**
+     * Учитывает запись в статистике. Принимает как {@link LogEntry}, так и переиспользуемый {@link LogRecordCursor};
+     * для уже встреченных значений полей обновление не выделяет память.
+     *
+     * @param entry
+     *            разобранная запись лога
+     */
+    public void updateStatistics(LogRecord entry) {
+        checkNotFrozen();
         totalRequests++;
 
-        String[] requestParts = entry.getRequest().split(" ");
-        if (requestParts.length > 1) {
-            String resource = requestParts[1];
-            if (resource != null && !resource.isEmpty()) {
-                resourceCounts.put(resource, resourceCounts.getOrDefault(resource, 0) + 1);
+        int hour = hourOf(entry);
+        hourlyDistribution[hour]++;
+
+        // Формат log_format может не содержать $request, $remote_addr или $http_user_agent
+        CharSequence request = entry.getRequest();
+        if (request != null) {
+            countMethodAndResource(request, hour);
+        }
+
+        int status = entry.getStatus();
+        if (status >= 0 && status < STATUS_LIMIT) {
+            statusCounts[status]++;
+        } else {
+            otherStatusCounts.increment(status);
+        }
+
+        recordResponseSize(entry.getBodyBytesSent());
+        if (timeSeries != null && entry.getZone() != null) {
+            timeSeries.add(entry.getEpochSecond(), status, entry.getBodyBytesSent());
+        }
+        if (groupBy != null) {
+            groupBy.add(entry);
+        }
+
+        CharSequence ipAddress = entry.getRemoteAddr();
+        if (ipAddress != null) {
+            countDistinct(uniqueIps, hourlyUniqueIps, hour, ipAddress, 0, ipAddress.length());
+            if (ipAddressTopK != null) {
+                ipAddressTopK.increment(ipAddress);
+            } else {
+                ipAddressCounts.increment(ipAddress);
             }
         }
-        if (requestParts.length > 0) {
-            String method = requestParts[0];
-            if (method != null && !method.isEmpty()) {
-                methodCounts.put(method, methodCounts.getOrDefault(method, 0) + 1);
+
+        if (entry.getRequestTimeMillis() >= 0) {
+            requestTimeCount++;
+            requestTimeSumMillis += entry.getRequestTimeMillis();
+        }
+        if (entry.getUpstreamResponseTimeMillis() >= 0) {
+            upstreamTimeCount++;
+            upstreamTimeSumMillis += entry.getUpstreamResponseTimeMillis();
+        }
+
+        CharSequence userAgent = entry.getHttpUserAgent();
+        if (userAgent != null) {
+            countDistinct(uniqueUserAgents, hourlyUniqueUserAgents, hour, userAgent, 0, userAgent.length());
+        }
+
+        updatePeriod(entry);
+    }
+
+    private void recordResponseSize(long size) {
+        responseSizeCount++;
+        responseSizeSum += size;
+        if (exactSizes != null) {
+            exactSizes.increment(size);
+        } else {
+            sizeSketch.add(size);
+        }
+    }
+
+    // Метод и ресурс — первые два слова запроса "GET /path HTTP/1.1"
+    private void countMethodAndResource(CharSequence request, int hour) {
+        int length = request.length();
+        int methodEnd = indexOfSpace(request, 0, length);
+        if (methodEnd > 0) {
+            methodCounts.increment(request, 0, methodEnd);
+        }
+        if (methodEnd < length) {
+            int resourceEnd = indexOfSpace(request, methodEnd + 1, length);
+            if (resourceEnd > methodEnd + 1) {
+                countDistinct(uniqueResources, hourlyUniqueResources, hour, request, methodEnd + 1, resourceEnd);
+                if (resourceTopK != null) {
+                    resourceTopK.increment(request, methodEnd + 1, resourceEnd);
+                } else {
+                    resourceCounts.increment(request, methodEnd + 1, resourceEnd);
+                }
             }
         }
+    }
 
-        int status = entry.getStatus();
-        statusCounts.put(status, statusCounts.getOrDefault(status, 0) + 1);
+    // Час локального времени записи считается по секундам эпохи, без создания ZonedDateTime
+    static int hourOf(LogRecord entry) {
+        return Math.floorMod(entry.getEpochSecond() + entry.getOffsetSeconds(), SECONDS_PER_DAY) / SECONDS_PER_HOUR;
+    }
+
+    // Хеш считается один раз и учитывается и в общей, и в почасовой оценке
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private static void countDistinct(HyperLogLog overall, HyperLogLog[] hourly, int hour, CharSequence source,
+            int from, int to) {
+        long hash = HyperLogLog.hash(source, from, to);
+        overall.offer(hash);
+        if (hourly[hour] == null) {
+            hourly[hour] = new HyperLogLog(HOURLY_UNIQUE_PRECISION);
+        }
+        hourly[hour].offer(hash);
+    }
+
+    private static void mergeDistinct(HyperLogLog[] hourly, HyperLogLog[] other) {
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            if (other[hour] == null) {
+                continue;
+            }
+            if (hourly[hour] == null) {
+                hourly[hour] = new HyperLogLog(HOURLY_UNIQUE_PRECISION);
+            }
+            hourly[hour].merge(other[hour]);
+        }
+    }
+
+    private static Map<Integer, Long> hourlyEstimates(HyperLogLog[] hourly) {
+        Map<Integer, Long> estimates = new LinkedHashMap<>();
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            if (hourly[hour] != null) {
+                estimates.put(hour, hourly[hour].estimate());
+            }
+        }
+        return estimates;
+    }
+
+    static int indexOfSpace(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private void updatePeriod(LogRecord entry) {
+        if (entry.getZone() == null) {
+            return;
+        }
+        if (startZone == null || compareTime(entry, startEpochSecond, startNano) < 0) {
+            startZone = entry.getZone();
+            startEpochSecond = entry.getEpochSecond();
+            startNano = entry.getNano();
+        }
+        if (endZone == null || compareTime(entry, endEpochSecond, endNano) > 0) {
+            endZone = entry.getZone();
+            endEpochSecond = entry.getEpochSecond();
+            endNano = entry.getNano();
+        }
+    }
+
+    private static int compareTime(LogRecord entry, long epochSecond, int nano) {
+        return compareTime(entry.getEpochSecond(), entry.getNano(), epochSecond, nano);
+    }
+
+    private static int compareTime(long epochSecond, int nano, long otherEpochSecond, int otherNano) {
+        int result = Long.compare(epochSecond, otherEpochSecond);
+        return result != 0 ? result : Integer.compare(nano, otherNano);
+    }
+
+    /**
+     * Добавляет к статистике результаты другой статистики, собранной по другой части лога.
+     *
+     * <p>
+     * Все счетчики складываются, а период берется по самой ранней и самой поздней записи, поэтому объединение частичных
+     * статистик дает тот же отчет, что и последовательный проход по всему логу. Имя файла не меняется.
+     *
+     * @param other
+     *            частичная статистика; после объединения ее можно выбросить
+     *
+     * @return эта статистика
+     */
+    public LogStatistics merge(LogStatistics other) {
+        checkNotFrozen();
+        totalRequests += other.totalRequests;
+        mergeHeavyHitters(other);
+        methodCounts.merge(other.methodCounts);
+        for (int status = 0; status < STATUS_LIMIT; status++) {
+            statusCounts[status] += other.statusCounts[status];
+        }
+        otherStatusCounts.merge(other.otherStatusCounts);
+        mergeResponseSizes(other);
+        other.fileTotals.forEach((file, total) -> fileTotals.merge(file, total, Long::sum));
+        if (other.timeSeries != null) {
+            if (timeSeries == null) {
+                timeSeries = new TimeSeries(other.timeSeries.getBucketSeconds());
+            }
+            timeSeries.merge(other.timeSeries);
+        }
+        if (other.groupBy != null) {
+            if (groupBy == null) {
+                groupBy = new GroupBy(other.groupBy.getDimensions());
+            }
+            groupBy.merge(other.groupBy);
+        }
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            hourlyDistribution[hour] += other.hourlyDistribution[hour];
+        }
+        uniqueIps.merge(other.uniqueIps);
+        uniqueResources.merge(other.uniqueResources);
+        uniqueUserAgents.merge(other.uniqueUserAgents);
+        mergeDistinct(hourlyUniqueIps, other.hourlyUniqueIps);
+        mergeDistinct(hourlyUniqueResources, other.hourlyUniqueResources);
+        mergeDistinct(hourlyUniqueUserAgents, other.hourlyUniqueUserAgents);
+        requestTimeCount += other.requestTimeCount;
+        requestTimeSumMillis += other.requestTimeSumMillis;
+        upstreamTimeCount += other.upstreamTimeCount;
+        upstreamTimeSumMillis += other.upstreamTimeSumMillis;
+        if (other.startZone != null && (startZone == null
+                || compareTime(other.startEpochSecond, other.startNano, startEpochSecond, startNano) < 0)) {
+            startZone = other.startZone;
+            startEpochSecond = other.startEpochSecond;
+            startNano = other.startNano;
+        }
+        if (other.endZone != null
+                && (endZone == null || compareTime(other.endEpochSecond, other.endNano, endEpochSecond, endNano) > 0)) {
+            endZone = other.endZone;
+            endEpochSecond = other.endEpochSecond;
+            endNano = other.endNano;
+        }
+        return this;
+    }
+
+    // Точные счетчики объединяются точно; если хотя бы одна сторона приближенная, результат приближенный
+    private void mergeHeavyHitters(LogStatistics other) {
+        if (resourceTopK == null && other.resourceTopK == null) {
+            resourceCounts.merge(other.resourceCounts);
+            ipAddressCounts.merge(other.ipAddressCounts);
+            return;
+        }
+        if (resourceTopK == null) {
+            useHeavyHitters(other.resourceTopK.capacity());
+        }
+        if (other.resourceTopK != null) {
+            resourceTopK.merge(other.resourceTopK);
+            ipAddressTopK.merge(other.ipAddressTopK);
+        } else {
+            resourceTopK.merge(other.resourceCounts.toMap());
+            ipAddressTopK.merge(other.ipAddressCounts.toMap());
+        }
+    }
+
+    private void useHeavyHitters(int capacity) {
+        resourceTopK = new TopKCounter(capacity);
+        ipAddressTopK = new TopKCounter(capacity);
+        resourceTopK.merge(resourceCounts.toMap());
+        ipAddressTopK.merge(ipAddressCounts.toMap());
+        resourceCounts = null;
+        ipAddressCounts = null;
+    }
+
+    /**
+     * Включает приближенный подсчет ресурсов и IP-адресов с фиксированной памятью.
+     *
+     * <p>
+     * Для каждой из двух таблиц хранится не больше {@code capacity} ключей (алгоритм Space-Saving). Счетчик хранимого
+     * ключа может быть завышен, но не больше чем на его погрешность ({@link #getResourceCountErrors()},
+     * {@link #getTopIpAddressErrors()}), а погрешность не превышает {@code N / capacity}, где N — число запросов.
+     *
+     * @param capacity
+     *            число счетчиков в каждой таблице или 0 для точного подсчета
+     *
+     * @throws IllegalStateException
+     *             если в статистике уже есть записи
+     */
+    public void setHeavyHitterCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Число счетчиков не может быть отрицательным: " + capacity);
+        }
+        checkNotFrozen();
+        if (totalRequests > 0) {
+            throw new IllegalStateException("Режим подсчета ресурсов нельзя менять после начала сбора статистики");
+        }
+        resourceCounts = new CharSequenceCounter();
+        ipAddressCounts = new CharSequenceCounter();
+        resourceTopK = null;
+        ipAddressTopK = null;
+        if (capacity > 0) {
+            useHeavyHitters(capacity);
+        }
+    }
+
+    /**
+     * Число счетчиков приближенного подсчета ресурсов и IP-адресов или 0, если подсчет точный.
+     */
+    public int getHeavyHitterCapacity() {
+        return resourceTopK == null ? 0 : resourceTopK.capacity();
+    }
+
+    // Точные значения объединяются точно; если хотя бы одна сторона хранит гистограмму, результат — гистограмма
+    private void mergeResponseSizes(LogStatistics other) {
+        responseSizeCount += other.responseSizeCount;
+        responseSizeSum += other.responseSizeSum;
+        if (exactSizes != null && other.exactSizes != null) {
+            exactSizes.merge(other.exactSizes);
+            return;
+        }
+        if (exactSizes != null) {
+            sizeSketch = new LogHistogram();
+            exactSizes.forEach(sizeSketch::add);
+            exactSizes = null;
+        }
+        if (other.exactSizes != null) {
+            other.exactSizes.forEach(sizeSketch::add);
+        } else {
+            sizeSketch.merge(other.sizeSketch);
+        }
+    }
+
+    /**
+     * Переключает хранение размеров ответов между гистограммой и точным режимом.
+     *
+     * <p>
+     * По умолчанию перцентили считаются по гистограмме с логарифмическими корзинами: память постоянна, значения меньше
+     * 256 байт и максимум точны, а остальные перцентили занижены не более чем на 1/128 (0,79%). В точном режиме
+     * хранится каждое различное значение, и память растет с их числом.
+     *
+     * @param exact
+     *            {@code true}, чтобы считать перцентили точно
+     *
+     * @throws IllegalStateException
+     *             если в статистике уже есть записи
+     */
+    public void setExactPercentiles(boolean exact) {
+        checkNotFrozen();
+        if (responseSizeCount > 0) {
+            throw new IllegalStateException("Режим перцентилей нельзя менять после начала сбора статистики");
+        }
+        exactSizes = exact ? new LongCounter() : null;
+        sizeSketch = exact ? null : new LogHistogram();
+    }
+
+    /**
+     * Включает временной ряд запросов, ошибок и байтов с корзинами указанной ширины.
+     *
+     * @param bucketSeconds
+     *            ширина корзины в секундах (например, 10, 60, 300 или 3600) или 0, чтобы не строить ряд
+     *
+     * @throws IllegalStateException
+     *             если в статистике уже есть записи
+     */
+    public void setTimeBucketSeconds(int bucketSeconds) {
+        checkNotFrozen();
+        if (totalRequests > 0) {
+            throw new IllegalStateException("Ширину корзин нельзя менять после начала сбора статистики");
+        }
+        timeSeries = bucketSeconds == 0 ? null : new TimeSeries(bucketSeconds);
+    }
+
+    /**
+     * Временной ряд или {@code null}, если он не включен через {@link #setTimeBucketSeconds(int)}.
+     */
+    public TimeSeries getTimeSeries() {
+        return timeSeries;
+    }
+
+    /**
+     * Включает группировку запросов по сочетаниям значений измерений.
+     *
+     * @param dimensions
+     *            измерения без повторов или пустой список, чтобы не группировать
+     *
+     * @throws IllegalStateException
+     *             если в статистике уже есть записи
+     */
+    public void setGroupBy(List<GroupDimension> dimensions) {
+        checkNotFrozen();
+        if (totalRequests > 0) {
+            throw new IllegalStateException("Группировку нельзя менять после начала сбора статистики");
+        }
+        groupBy = dimensions.isEmpty() ? null : new GroupBy(dimensions);
+    }
+
+    /**
+     * Группировка или {@code null}, если она не включена через {@link #setGroupBy(List)}.
+     */
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    public boolean isExactPercentiles() {
+        return exactSizes != null;
+    }
+
+    /**
+     * Завершает сбор: после вызова статистика не принимает записи и не меняет настройки, а карты, которые возвращают
+     * геттеры, вычисляются при первом обращении, кэшируются и не изменяемы. Отчет по замороженной статистике не
+     * сортирует одни и те же счетчики повторно.
+     *
+     * @return эта статистика
+     */
+    public LogStatistics freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Статистика заморожена и не может быть изменена");
+        }
+    }
 
-        responseSizes.add(entry.getBodyBytesSent());
+    /**
+     * Записывает статистику в двоичный снимок, который можно объединять с другими без повторного чтения логов.
+     *
+     * <p>
+     * Строки (ресурсы, адреса, методы, значения группировки) хранятся один раз в таблице строк снимка, счетчики
+     * кодируются как varint, а гистограммы, HyperLogLog, Space-Saving и временной ряд — в собственном виде, поэтому
+     * {@link #readSnapshot(InputStream)} восстанавливает статистику, дающую тот же отчет и те же результаты
+     * {@link #merge(LogStatistics)}.
+     *
+     * @param out
+     *            поток для снимка; не закрывается
+     *
+     * @throws IOException
+     *             если запись не удалась
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        SnapshotWriter writer = new SnapshotWriter();
+        writer.writeString(fileName);
+        writer.writeVarLong(totalRequests);
+        writer.writeBoolean(resourceTopK != null);
+        if (resourceTopK != null) {
+            resourceTopK.writeTo(writer);
+            ipAddressTopK.writeTo(writer);
+        } else {
+            resourceCounts.writeTo(writer);
+            ipAddressCounts.writeTo(writer);
+        }
+        methodCounts.writeTo(writer);
+        int statuses = 0;
+        for (long count : statusCounts) {
+            statuses += count != 0 ? 1 : 0;
+        }
+        writer.writeVarLong(statuses);
+        for (int status = 0; status < STATUS_LIMIT; status++) {
+            if (statusCounts[status] != 0) {
+                writer.writeVarLong(status);
+                writer.writeVarLong(statusCounts[status]);
+            }
+        }
+        otherStatusCounts.writeTo(writer);
+        writer.writeVarLong(responseSizeCount);
+        writer.writeSignedVarLong(responseSizeSum);
+        writer.writeBoolean(exactSizes != null);
+        if (exactSizes != null) {
+            exactSizes.writeTo(writer);
+        } else {
+            sizeSketch.writeTo(writer);
+        }
+        writer.writeString(startZone == null ? null : startZone.getId());
+        writer.writeSignedVarLong(startEpochSecond);
+        writer.writeVarLong(startNano);
+        writer.writeString(endZone == null ? null : endZone.getId());
+        writer.writeSignedVarLong(endEpochSecond);
+        writer.writeVarLong(endNano);
+        for (long count : hourlyDistribution) {
+            writer.writeVarLong(count);
+        }
+        uniqueIps.writeTo(writer);
+        uniqueResources.writeTo(writer);
+        uniqueUserAgents.writeTo(writer);
+        writeHourly(writer, hourlyUniqueIps);
+        writeHourly(writer, hourlyUniqueResources);
+        writeHourly(writer, hourlyUniqueUserAgents);
+        writer.writeVarLong(requestTimeCount);
+        writer.writeVarLong(requestTimeSumMillis);
+        writer.writeVarLong(upstreamTimeCount);
+        writer.writeVarLong(upstreamTimeSumMillis);
+        writer.writeBoolean(timeSeries != null);
+        if (timeSeries != null) {
+            timeSeries.writeTo(writer);
+        }
+        writer.writeBoolean(groupBy != null);
+        if (groupBy != null) {
+            groupBy.writeTo(writer);
+        }
+        writer.writeVarLong(fileTotals.size());
+        for (Map.Entry<String, Long> total : fileTotals.entrySet()) {
+            writer.writeString(total.getKey());
+            writer.writeVarLong(total.getValue());
+        }
+        writer.finish(out);
+    }
 
-        String ipAddress = entry.getRemoteAddr();
-        ipAddressCounts.put(ipAddress, ipAddressCounts.getOrDefault(ipAddress, 0) + 1);
+    /**
+     * Восстанавливает статистику из снимка {@link #writeSnapshot(OutputStream)}. Результат не заморожен, и к нему можно
+     * добавлять записи и другие статистики.
+     *
+     * @param in
+     *            поток снимка; для скорости стоит передавать буферизованный поток
+     *
+     * @return статистика из снимка
+     *
+     * @throws IOException
+     *             если снимок не читается, обрезан, поврежден или записан неподдерживаемой версией
+     */
+    public static LogStatistics readSnapshot(InputStream in) throws IOException {
+        try {
+            return readFrom(new SnapshotReader(in));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IOException("Поврежденный снимок статистики: " + e.getMessage(), e);
+        }
+    }
 
-        int hour = entry.getTimeLocal().getHour();
-        hourlyDistribution.put(hour, hourlyDistribution.getOrDefault(hour, 0) + 1);
+    private static LogStatistics readFrom(SnapshotReader reader) throws IOException {
+        LogStatistics stats = new LogStatistics(reader.readString());
+        stats.totalRequests = reader.readVarLong();
+        if (reader.readBoolean()) {
+            stats.resourceTopK = TopKCounter.readFrom(reader);
+            stats.ipAddressTopK = TopKCounter.readFrom(reader);
+            stats.resourceCounts = null;
+            stats.ipAddressCounts = null;
+        } else {
+            stats.resourceCounts = CharSequenceCounter.readFrom(reader);
+            stats.ipAddressCounts = CharSequenceCounter.readFrom(reader);
+        }
+        stats.methodCounts.merge(CharSequenceCounter.readFrom(reader));
+        int statuses = reader.readInt();
+        for (int i = 0; i < statuses; i++) {
+            int status = reader.readInt();
+            if (status >= STATUS_LIMIT) {
+                throw new IOException("Неверный код ответа в снимке статистики: " + status);
+            }
+            stats.statusCounts[status] = reader.readVarLong();
+        }
+        stats.otherStatusCounts.merge(LongCounter.readFrom(reader));
+        stats.responseSizeCount = reader.readVarLong();
+        stats.responseSizeSum = reader.readSignedVarLong();
+        if (reader.readBoolean()) {
+            stats.exactSizes = LongCounter.readFrom(reader);
+            stats.sizeSketch = null;
+        } else {
+            stats.sizeSketch = LogHistogram.readFrom(reader);
+        }
+        String zone = reader.readString();
+        stats.startZone = zone == null ? null : ZoneId.of(zone);
+        stats.startEpochSecond = reader.readSignedVarLong();
+        stats.startNano = reader.readInt();
+        zone = reader.readString();
+        stats.endZone = zone == null ? null : ZoneId.of(zone);
+        stats.endEpochSecond = reader.readSignedVarLong();
+        stats.endNano = reader.readInt();
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            stats.hourlyDistribution[hour] = reader.readVarLong();
+        }
+        stats.uniqueIps.merge(HyperLogLog.readFrom(reader));
+        stats.uniqueResources.merge(HyperLogLog.readFrom(reader));
+        stats.uniqueUserAgents.merge(HyperLogLog.readFrom(reader));
+        readHourly(reader, stats.hourlyUniqueIps);
+        readHourly(reader, stats.hourlyUniqueResources);
+        readHourly(reader, stats.hourlyUniqueUserAgents);
+        stats.requestTimeCount = reader.readVarLong();
+        stats.requestTimeSumMillis = reader.readVarLong();
+        stats.upstreamTimeCount = reader.readVarLong();
+        stats.upstreamTimeSumMillis = reader.readVarLong();
+        stats.timeSeries = reader.readBoolean() ? TimeSeries.readFrom(reader) : null;
+        stats.groupBy = reader.readBoolean() ? GroupBy.readFrom(reader) : null;
+        int files = reader.version() >= SnapshotWriter.FILE_TOTALS_VERSION ? reader.readInt() : 0;
+        for (int i = 0; i < files; i++) {
+            String file = reader.readString();
+            if (file == null) {
+                throw new IOException("Нет имени входного файла в снимке статистики");
+            }
+            stats.fileTotals.merge(file, reader.readVarLong(), Long::sum);
+        }
+        return stats;
+    }
 
-        if (startDate == null || entry.getTimeLocal().isBefore(startDate)) {
-            startDate = entry.getTimeLocal();
+    // Часы с оценками отмечаются битами маски, затем идут сами оценки
+    private static void writeHourly(SnapshotWriter writer, HyperLogLog[] hourly) {
+        int present = 0;
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            present |= hourly[hour] != null ? 1 << hour : 0;
         }
-        if (endDate == null || entry.getTimeLocal().isAfter(endDate)) {
-            endDate = entry.getTimeLocal();
+        writer.writeVarLong(present);
+        for (HyperLogLog estimator : hourly) {
+            if (estimator != null) {
+                estimator.writeTo(writer);
+            }
         }
     }
 
+    private static void readHourly(SnapshotReader reader, HyperLogLog[] hourly) throws IOException {
+        int present = reader.readInt();
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            if ((present & (1 << hour)) != 0) {
+                hourly[hour] = HyperLogLog.readFrom(reader);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> Map<K, V> view(String name, Supplier<Map<K, V>> compute) {
+        if (!frozen) {
+            return compute.get();
+        }
+        synchronized (views) {
+            Map<?, ?> cached = views.get(name);
+            if (cached == null) {
+                cached = Collections.unmodifiableMap(compute.get());
+                views.put(name, cached);
+            }
+            return (Map<K, V>) cached;
+        }
+    }
+
+    /**
+     * Число запросов; больше {@link Integer#MAX_VALUE} не растет, полное значение — {@link #getTotalRequestsAsLong()}.
+     */
     public int getTotalRequests() {
+        return saturatedInt(totalRequests);
+    }
+
+    public long getTotalRequestsAsLong() {
         return totalRequests;
     }
 
     @SuppressWarnings("all")
     public Map<String, Integer> getResourceCounts() {
-        return resourceCounts.entrySet().stream().sorted(Map.Entry.<String, Integer> comparingByValue().reversed())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+        return view("resourceCounts", () -> toIntCounts(getResourceCountsAsLong()));
+    }
+
+    /**
+     * Число запросов к каждому ресурсу по убыванию.
+     */
+    public Map<String, Long> getResourceCountsAsLong() {
+        return getTopResources(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Самые запрашиваемые ресурсы по убыванию числа запросов. Отбор частичный: все ресурсы не сортируются.
+     *
+     * @param limit
+     *            наибольшее число ресурсов в результате
+     */
+    public Map<String, Long> getTopResources(int limit) {
+        return view("topResources:" + limit,
+                () -> resourceTopK != null ? rankByCount(resourceTopK.toMap(), limit) : resourceCounts.top(limit));
+    }
+
+    /**
+     * Погрешности счетчиков ресурсов в приближенном режиме: истинное число запросов не меньше {@code count - error}. В
+     * точном режиме карта пустая.
+     */
+    public Map<String, Long> getResourceCountErrors() {
+        return view("resourceCountErrors", () -> resourceTopK == null ? Map.of() : resourceTopK.errors());
     }
 
     @SuppressWarnings("all")
     public Map<Integer, Integer> getStatusCounts() {
-        return statusCounts.entrySet().stream().sorted(Map.Entry.<Integer, Integer> comparingByValue().reversed())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+        return view("statusCounts", () -> toIntCounts(getStatusCountsAsLong()));
+    }
+
+    public Map<Integer, Long> getStatusCountsAsLong() {
+        return view("statusCountsAsLong", this::computeStatusCounts);
+    }
+
+    private Map<Integer, Long> computeStatusCounts() {
+        Map<Integer, Long> counts = new HashMap<>();
+        otherStatusCounts.forEach((status, count) -> counts.put((int) status, count));
+        for (int status = 0; status < STATUS_LIMIT; status++) {
+            if (statusCounts[status] > 0) {
+                counts.put(status, statusCounts[status]);
+            }
+        }
+        return rankByCount(counts, Integer.MAX_VALUE);
     }
 
     @SuppressWarnings("all")
     public Map<String, Integer> getMethodCounts() {
-        return methodCounts.entrySet().stream().sorted(Map.Entry.<String, Integer> comparingByValue().reversed())
+        return view("methodCounts", () -> toIntCounts(getMethodCountsAsLong()));
+    }
+
+    public Map<String, Long> getMethodCountsAsLong() {
+        return view("methodCountsAsLong", () -> rankByCount(methodCounts.toMap(), Integer.MAX_VALUE));
+    }
+
+    // Сортировка по убыванию счетчика, при равенстве — по ключу, чтобы отчет не зависел от порядка обхода
+    @SuppressWarnings("all")
+    private static <K extends Comparable<K>> Map<K, Long> rankByCount(Map<K, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long> comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<K, Long> comparingByKey()))
+                .limit(limit)
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
     }
 
+    // Карты с int сохраняются ради совместимости; значения больше Integer.MAX_VALUE ограничиваются им
+    private static <K> Map<K, Integer> toIntCounts(Map<K, Long> counts) {
+        Map<K, Integer> result = new LinkedHashMap<>(counts.size() * 2);
+        counts.forEach((key, count) -> result.put(key, saturatedInt(count)));
+        return result;
+    }
+
+    private static int saturatedInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
     @SuppressWarnings("all")
     public double getAverageResponseSize() {
-        return responseSizes.stream().mapToLong(Long::longValue).average().orElse(0);
+        return responseSizeCount == 0 ? 0 : (double) responseSizeSum / responseSizeCount;
     }
 
     public int get95PercentileSize() {
-        if (responseSizes.isEmpty()) {
+        return (int) getResponseSizePercentile(PERCENTILE_95);
+    }
+
+    /**
+     * Перцентиль размера ответа по методу ближайшего ранга.
+     *
+     * @param quantile
+     *            доля от 0 до 1, например {@code 0.99}
+     *
+     * @return размер ответа в байтах или 0, если записей нет
+     */
+    public long getResponseSizePercentile(double quantile) {
+        if (responseSizeCount == 0) {
             return 0;
         }
-        List<Long> sortedSizes = new ArrayList<>(responseSizes);
-        Collections.sort(sortedSizes);
-        int index = (int) Math.ceil(PERCENTILE_95 * sortedSizes.size()) - 1;
-        return sortedSizes.get(index).intValue();
+        long rank = Math.max(1, (long) Math.ceil(quantile * responseSizeCount));
+        return exactSizes != null ? exactSizes.valueAtRank(rank) : sizeSketch.valueAtRank(rank);
+    }
+
+    public long getMaxResponseSize() {
+        return getResponseSizePercentile(1);
+    }
+
+    /**
+     * Количество записей, в которых было время обработки запроса.
+     */
+    public long getRequestTimeCount() {
+        return requestTimeCount;
+    }
+
+    public double getAverageRequestTimeMillis() {
+        return requestTimeCount == 0 ? 0 : (double) requestTimeSumMillis / requestTimeCount;
+    }
+
+    /**
+     * Количество записей, в которых было время ответа upstream.
+     */
+    public long getUpstreamTimeCount() {
+        return upstreamTimeCount;
+    }
+
+    public double getAverageUpstreamTimeMillis() {
+        return upstreamTimeCount == 0 ? 0 : (double) upstreamTimeSumMillis / upstreamTimeCount;
     }
 
     public ZonedDateTime getStartDate() {
-        return startDate;
+        return startZone == null ? null
+                : ZonedDateTime.ofInstant(Instant.ofEpochSecond(startEpochSecond, startNano), startZone);
     }
 
     public ZonedDateTime getEndDate() {
-        return endDate;
+        return endZone == null ? null
+                : ZonedDateTime.ofInstant(Instant.ofEpochSecond(endEpochSecond, endNano), endZone);
     }
 
     public String getFileName() {
@@ -122,19 +874,113 @@ public class LogStatistics {
     }
 
     public void setFileName(String fileName) {
+        checkNotFrozen();
         this.fileName = fileName;
     }
 
+    /**
+     * Учитывает число записей одного из входных файлов, из которых собрана статистика.
+     *
+     * @param file
+     *            имя файла
+     * @param requests
+     *            число отобранных записей файла
+     */
+    public void addFileTotal(String file, long requests) {
+        checkNotFrozen();
+        fileTotals.merge(file, requests, Long::sum);
+    }
+
+    /**
+     * Число отобранных записей по входным файлам в порядке их перечисления. Пусто, если статистика собрана по одному
+     * файлу.
+     */
+    public Map<String, Long> getFileTotals() {
+        return Collections.unmodifiableMap(fileTotals);
+    }
+
     @SuppressWarnings("all")
     public Map<String, Integer> getTopIpAddresses() {
-        return ipAddressCounts.entrySet().stream().sorted(Map.Entry.<String, Integer> comparingByValue().reversed())
-                .limit(10)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+        return view("topIpAddresses", () -> toIntCounts(getTopIpAddressesAsLong()));
+    }
+
+    /**
+     * Десять самых активных IP-адресов по убыванию числа запросов.
+     */
+    public Map<String, Long> getTopIpAddressesAsLong() {
+        return getTopIpAddressesAsLong(TOP_IP_LIMIT);
+    }
+
+    /**
+     * Самые активные IP-адреса по убыванию числа запросов. Отбор частичный: все адреса не сортируются.
+     *
+     * @param limit
+     *            наибольшее число адресов в результате
+     */
+    public Map<String, Long> getTopIpAddressesAsLong(int limit) {
+        return view("topIpAddresses:" + limit,
+                () -> ipAddressTopK != null ? rankByCount(ipAddressTopK.toMap(), limit) : ipAddressCounts.top(limit));
+    }
+
+    /**
+     * Погрешности счетчиков IP-адресов в приближенном режиме; в точном режиме карта пустая.
+     */
+    public Map<String, Long> getTopIpAddressErrors() {
+        return view("topIpAddressErrors", () -> ipAddressTopK == null ? Map.of() : ipAddressTopK.errors());
+    }
+
+    /**
+     * Оценка числа различных IP-адресов клиентов (HyperLogLog, стандартная ошибка около 1,6%).
+     */
+    public long getUniqueIpCount() {
+        return uniqueIps.estimate();
+    }
+
+    /**
+     * Оценка числа различных ресурсов (HyperLogLog, стандартная ошибка около 1,6%).
+     */
+    public long getUniqueResourceCount() {
+        return uniqueResources.estimate();
+    }
+
+    /**
+     * Оценка числа различных User-Agent (HyperLogLog, стандартная ошибка около 1,6%).
+     */
+    public long getUniqueUserAgentCount() {
+        return uniqueUserAgents.estimate();
+    }
+
+    /**
+     * Оценки числа различных IP-адресов по часам суток (стандартная ошибка около 3,3%).
+     */
+    public Map<Integer, Long> getHourlyUniqueIps() {
+        return view("hourlyUniqueIps", () -> hourlyEstimates(hourlyUniqueIps));
+    }
+
+    public Map<Integer, Long> getHourlyUniqueResources() {
+        return view("hourlyUniqueResources", () -> hourlyEstimates(hourlyUniqueResources));
+    }
+
+    public Map<Integer, Long> getHourlyUniqueUserAgents() {
+        return view("hourlyUniqueUserAgents", () -> hourlyEstimates(hourlyUniqueUserAgents));
     }
 
     @SuppressWarnings("all")
     public Map<Integer, Integer> getHourlyDistribution() {
-        return hourlyDistribution.entrySet().stream().sorted(Map.Entry.comparingByKey())
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e1, LinkedHashMap::new));
+        return view("hourlyDistribution", () -> toIntCounts(getHourlyDistributionAsLong()));
+    }
+
+    public Map<Integer, Long> getHourlyDistributionAsLong() {
+        return view("hourlyDistributionAsLong", this::computeHourlyDistribution);
+    }
+
+    private Map<Integer, Long> computeHourlyDistribution() {
+        Map<Integer, Long> distribution = new LinkedHashMap<>();
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            if (hourlyDistribution[hour] > 0) {
+                distribution.put(hour, hourlyDistribution[hour]);
+            }
+        }
+        return distribution;
     }
 }
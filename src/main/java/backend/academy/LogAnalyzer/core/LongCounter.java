@@ -0,0 +1,187 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Счетчик вхождений чисел {@code long} с открытой адресацией.
+ *
+ * <p>
+ * Хранит каждое различное значение один раз вместе с числом его повторений, поэтому точные перцентили считаются по
+ * отсортированным различным значениям, а не по списку всех наблюдений.
+ */
+final class LongCounter {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int HASH_SHIFT = 32;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    // Нулевой счетчик означает свободную ячейку
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+    private long total;
+    private long sum;
+    // Отсортированные различные значения; сбрасываются при изменении, чтобы несколько перцентилей сортировали один раз
+    private long[] sorted;
+
+    void increment(long value) {
+        increment(value, 1);
+    }
+
+    /**
+     * Учитывает {@code count} повторений значения.
+     */
+    void increment(long value, long count) {
+        total += count;
+        sum += value * count;
+        add(value, count);
+    }
+
+    /**
+     * Добавляет к счетчикам значения другого счетчика.
+     */
+    void merge(LongCounter other) {
+        total += other.total;
+        sum += other.sum;
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] != 0) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    private void add(long value, long delta) {
+        sorted = null;
+        int mask = keys.length - 1;
+        int slot = slot(value, mask);
+        while (counts[slot] != 0) {
+            if (keys[slot] == value) {
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        counts[slot] = delta;
+        size++;
+        if (size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Количество учтенных значений с повторениями.
+     */
+    long total() {
+        return total;
+    }
+
+    long sum() {
+        return sum;
+    }
+
+    /**
+     * Значение с рангом {@code rank} (с единицы) в отсортированной последовательности всех наблюдений.
+     */
+    long valueAtRank(long rank) {
+        long[] distinct = sortedValues();
+        long seen = 0;
+        for (long value : distinct) {
+            seen += count(value);
+            if (seen >= rank) {
+                return value;
+            }
+        }
+        return distinct.length == 0 ? 0 : distinct[distinct.length - 1];
+    }
+
+    /**
+     * Передает каждое различное значение вместе с числом его повторений.
+     */
+    void forEach(ValueCount action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Различные значения по возрастанию. Массив кэшируется до следующего изменения и не должен меняться вызывающим.
+     */
+    long[] sortedValues() {
+        if (sorted == null) {
+            sorted = new long[size];
+            int next = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) {
+                    sorted[next++] = keys[i];
+                }
+            }
+            Arrays.sort(sorted);
+        }
+        return sorted;
+    }
+
+    long count(long value) {
+        int mask = keys.length - 1;
+        int slot = slot(value, mask);
+        while (counts[slot] != 0) {
+            if (keys[slot] == value) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Записывает пары «значение — число повторений» в снимок.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(size);
+        forEach((value, count) -> {
+            out.writeSignedVarLong(value);
+            out.writeVarLong(count);
+        });
+    }
+
+    static LongCounter readFrom(SnapshotReader in) throws IOException {
+        LongCounter counter = new LongCounter();
+        int distinct = in.readInt();
+        for (int i = 0; i < distinct; i++) {
+            counter.increment(in.readSignedVarLong(), in.readCount());
+        }
+        return counter;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new long[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i], mask);
+                while (counts[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slot(long value, int mask) {
+        return (int) ((value * HASH_MULTIPLIER) >>> HASH_SHIFT) & mask;
+    }
+
+    /**
+     * Получатель пар «значение — число повторений».
+     */
+    @FunctionalInterface
+    interface ValueCount {
+        void accept(long value, long count);
+    }
+}
@@ -0,0 +1,152 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Декодер двоичного снимка статистики, записанного {@link SnapshotWriter}.
+ *
+ * <p>
+ * Снимок читается в память целиком и разбирается по индексу в массиве, без обращений к потоку на каждый байт. Все
+ * чтения проверяют границы: обрезанный или поврежденный снимок дает {@link IOException}, а не неверную статистику.
+ */
+final class SnapshotReader {
+    private static final int MAGIC_BYTES = 4;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int MAX_VARINT_SHIFT = 63;
+    private static final String CORRUPT_NUMBER = "Поврежденное число в снимке статистики";
+    private static final String TRUNCATED = "Снимок статистики обрезан";
+
+    private final byte[] data;
+    private int position;
+    private final String[] strings;
+    private final int version;
+
+    /**
+     * Читает снимок, проверяет заголовок и разбирает таблицу строк.
+     *
+     * @param in
+     *            поток снимка; читается до конца
+     *
+     * @throws IOException
+     *             если это не снимок статистики или его версия не поддерживается
+     */
+    SnapshotReader(InputStream in) throws IOException {
+        this.data = in.readAllBytes();
+        int magic = 0;
+        for (int i = 0; i < MAGIC_BYTES; i++) {
+            magic = (magic << Byte.SIZE) | readByte();
+        }
+        if (magic != SnapshotWriter.MAGIC) {
+            throw new IOException("Файл не является снимком статистики");
+        }
+        long format = readVarLong();
+        if (format < SnapshotWriter.FIRST_VERSION || format > SnapshotWriter.VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка статистики: " + format);
+        }
+        this.version = (int) format;
+        strings = new String[readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = readInt();
+            checkAvailable(length);
+            strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+        }
+    }
+
+    /**
+     * Версия формата снимка; снимки прежних версий читаются без полей, добавленных позже.
+     */
+    int version() {
+        return version;
+    }
+
+    /**
+     * Читает неотрицательное число.
+     */
+    long readVarLong() throws IOException {
+        long value = readRawVarLong();
+        if (value < 0) {
+            throw new IOException(CORRUPT_NUMBER);
+        }
+        return value;
+    }
+
+    /**
+     * Читает число со знаком.
+     */
+    long readSignedVarLong() throws IOException {
+        long value = readRawVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Читает положительный счетчик.
+     */
+    long readCount() throws IOException {
+        long count = readVarLong();
+        if (count == 0) {
+            throw new IOException("Нулевой счетчик в снимке статистики");
+        }
+        return count;
+    }
+
+    /**
+     * Читает неотрицательное число, помещающееся в {@code int}: размер, индекс или параметр.
+     */
+    int readInt() throws IOException {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Слишком большое значение в снимке статистики: " + value);
+        }
+        return (int) value;
+    }
+
+    boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    String readString() throws IOException {
+        int id = readInt();
+        if (id > strings.length) {
+            throw new IOException("Неизвестная строка в снимке статистики: " + id);
+        }
+        return id == 0 ? null : strings[id - 1];
+    }
+
+    byte[] readBytes() throws IOException {
+        int length = readInt();
+        checkAvailable(length);
+        position += length;
+        return Arrays.copyOfRange(data, position - length, position);
+    }
+
+    private long readRawVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        int next;
+        do {
+            if (shift > MAX_VARINT_SHIFT) {
+                throw new IOException(CORRUPT_NUMBER);
+            }
+            next = readByte();
+            value |= (long) (next & SnapshotWriter.VARINT_MASK) << shift;
+            shift += SnapshotWriter.VARINT_BITS;
+        } while ((next & SnapshotWriter.VARINT_CONTINUATION) != 0);
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        checkAvailable(1);
+        return data[position++] & BYTE_MASK;
+    }
+
+    private void checkAvailable(int length) throws EOFException {
+        if (length > data.length - position) {
+            throw new EOFException(TRUNCATED);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кодировщик двоичного снимка статистики.
+ *
+ * <p>
+ * Снимок начинается с сигнатуры {@code LASN} и номера версии, за ними идет таблица строк и тело. Неотрицательные числа
+ * записываются как varint (по 7 бит в байте, старший бит — признак продолжения), числа со знаком — как varint после
+ * zigzag-преобразования. Каждая строка хранится в таблице один раз, а в теле заменяется ее номером плюс один (ноль
+ * означает {@code null}). Так как номера появляются по мере записи тела, тело собирается в памяти и выводится после
+ * таблицы.
+ */
+final class SnapshotWriter {
+    static final int MAGIC = 0x4C41534E;
+    static final int VERSION = 2;
+    static final int FIRST_VERSION = 1;
+    // Версия, в которой появилось число записей по входным файлам
+    static final int FILE_TOTALS_VERSION = 2;
+    static final int VARINT_BITS = 7;
+    static final int VARINT_MASK = 0x7F;
+    static final int VARINT_CONTINUATION = 0x80;
+    private static final int MAGIC_BYTES = 4;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Записывает неотрицательное число.
+     */
+    void writeVarLong(long value) {
+        writeVarLong(body, value);
+    }
+
+    /**
+     * Записывает число со знаком.
+     */
+    void writeSignedVarLong(long value) {
+        writeVarLong(body, (value << 1) ^ (value >> (Long.SIZE - 1)));
+    }
+
+    void writeBoolean(boolean value) {
+        body.write(value ? 1 : 0);
+    }
+
+    /**
+     * Записывает номер строки в таблице; строка может быть {@code null}.
+     */
+    void writeString(String value) {
+        int id = 0;
+        if (value != null) {
+            id = stringIds.computeIfAbsent(value, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            }) + 1;
+        }
+        writeVarLong(body, id);
+    }
+
+    void writeBytes(byte[] bytes) {
+        writeVarLong(body, bytes.length);
+        body.writeBytes(bytes);
+    }
+
+    /**
+     * Выводит заголовок, таблицу строк и тело.
+     */
+    void finish(OutputStream out) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        for (int i = MAGIC_BYTES - 1; i >= 0; i--) {
+            header.write(MAGIC >>> (i * Byte.SIZE));
+        }
+        writeVarLong(header, VERSION);
+        writeVarLong(header, strings.size());
+        for (String value : strings) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(header, encoded.length);
+            header.writeBytes(encoded);
+        }
+        header.writeTo(out);
+        body.writeTo(out);
+        out.flush();
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        long rest = value;
+        while ((rest & ~VARINT_MASK) != 0) {
+            out.write((int) (rest & VARINT_MASK) | VARINT_CONTINUATION);
+            rest >>>= VARINT_BITS;
+        }
+        out.write((int) rest);
+    }
+}
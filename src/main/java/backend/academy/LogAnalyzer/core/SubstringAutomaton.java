@@ -0,0 +1,130 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Автомат Ахо — Корасик для поиска любой из набора подстрок.
+ *
+ * <p>
+ * Бор образцов достраивается ссылками неудач до полного детерминированного автомата: для каждого состояния и каждого
+ * класса символов переход известен заранее, поэтому поиск делает один переход по таблице на символ текста, сколько бы
+ * образцов ни было загружено. Символы, которых нет в образцах, объединены в один класс, что держит таблицу переходов
+ * небольшой. Состояние помечено как выходное, если в нем или в одном из его суффиксов заканчивается образец; поиск
+ * останавливается на первом таком состоянии.
+ *
+ * <p>
+ * Экземпляр неизменяемый после создания и может использоваться из нескольких потоков.
+ */
+final class SubstringAutomaton {
+    private static final int NO_STATE = -1;
+
+    private final boolean ignoreCase;
+    // Класс символа: 0 — символ не встречается в образцах
+    private final char[] classOf = new char[Character.MAX_VALUE + 1];
+    private final int classes;
+    // next[state * classes + class]
+    private final int[] next;
+    private final boolean[] output;
+
+    private SubstringAutomaton(List<String> patterns, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        int classCount = 1;
+        int maxStates = 1;
+        for (String pattern : patterns) {
+            maxStates += pattern.length();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = normalize(pattern.charAt(i));
+                if (classOf[c] == 0) {
+                    classOf[c] = (char) classCount++;
+                }
+            }
+        }
+        this.classes = classCount;
+        int[] transitions = new int[maxStates * classes];
+        Arrays.fill(transitions, NO_STATE);
+        boolean[] terminal = new boolean[maxStates];
+        int states = 1;
+        for (String pattern : patterns) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int slot = state * classes + classOf[normalize(pattern.charAt(i))];
+                if (transitions[slot] == NO_STATE) {
+                    transitions[slot] = states++;
+                }
+                state = transitions[slot];
+            }
+            terminal[state] = true;
+        }
+        this.next = Arrays.copyOf(transitions, states * classes);
+        this.output = Arrays.copyOf(terminal, states);
+        link(states);
+    }
+
+    /**
+     * Строит автомат.
+     *
+     * @param patterns
+     *            образцы; пустой образец встречается в любом тексте
+     * @param ignoreCase
+     *            сравнивать символы без учета регистра
+     *
+     * @return автомат
+     */
+    static SubstringAutomaton of(List<String> patterns, boolean ignoreCase) {
+        return new SubstringAutomaton(patterns, ignoreCase);
+    }
+
+    /**
+     * Встречается ли в участке {@code text[from, to)} хотя бы один образец.
+     */
+    boolean find(CharSequence text, int from, int to) {
+        if (output[0]) {
+            return true;
+        }
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = next[state * classes + classOf[normalize(text.charAt(i))]];
+            if (output[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Обходит бор в ширину, вычисляя ссылки неудач, и заменяет отсутствующие переходы переходами из состояния по ссылке
+     * неудачи; выходной признак наследуется от суффикса.
+     */
+    private void link(int states) {
+        int[] failure = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classes; c++) {
+            if (next[c] == NO_STATE) {
+                next[c] = 0;
+            } else {
+                queue[tail++] = next[c];
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            output[state] |= output[failure[state]];
+            for (int c = 0; c < classes; c++) {
+                int slot = state * classes + c;
+                int fallback = next[failure[state] * classes + c];
+                if (next[slot] == NO_STATE) {
+                    next[slot] = fallback;
+                } else {
+                    failure[next[slot]] = fallback;
+                    queue[tail++] = next[slot];
+                }
+            }
+        }
+    }
+
+    private char normalize(char c) {
+        return ignoreCase ? Character.toLowerCase(c) : c;
+    }
+}
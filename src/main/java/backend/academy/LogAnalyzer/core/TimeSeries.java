@@ -0,0 +1,212 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+
+/**
+ * Временной ряд запросов с корзинами фиксированной ширины.
+ *
+ * <p>
+ * Номер корзины — {@code floorDiv(epochSecond, bucketSeconds)}, поэтому корзины выровнены по эпохе UTC и не требуют
+ * вычислений с календарем. Значения хранятся по столбцам (запросы, ошибки, байты) в массивах, покрывающих непрерывный
+ * диапазон корзин от самой ранней записи до самой поздней, включая пустые корзины. Массивы растут в сторону, где
+ * появилась новая корзина, с удвоением, поэтому и упорядоченный, и обратный порядок записей обходятся амортизированно
+ * за O(1) на запись.
+ *
+ * <p>
+ * Диапазон ограничен {@value #MAX_BUCKETS} корзинами; записи, которые расширили бы его дальше (например, со сбитым
+ * временем), не учитываются и считаются в {@link #getDroppedCount()}.
+ */
+public final class TimeSeries {
+    /**
+     * Наибольшее число корзин в ряду: около 48 МБ, 24 дня по 1 секунде или 16 лет по 5 минут.
+     */
+    public static final int MAX_BUCKETS = 2_097_152;
+
+    // Ошибкой считается ответ с кодом 4xx или 5xx
+    private static final int ERROR_STATUS = 400;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int bucketSeconds;
+    // Номер корзины в нулевой ячейке массивов и занятый диапазон номеров [lo, hi)
+    private long base;
+    private long lo;
+    private long hi;
+    private long[] requests = new long[0];
+    private long[] errors = new long[0];
+    private long[] bytes = new long[0];
+    private long dropped;
+
+    TimeSeries(int bucketSeconds) {
+        if (bucketSeconds <= 0) {
+            throw new IllegalArgumentException("Ширина корзины должна быть положительной: " + bucketSeconds);
+        }
+        this.bucketSeconds = bucketSeconds;
+    }
+
+    void add(long epochSecond, int status, long sentBytes) {
+        long bucket = Math.floorDiv(epochSecond, bucketSeconds);
+        if (ensureRange(bucket)) {
+            int index = (int) (bucket - base);
+            requests[index]++;
+            if (status >= ERROR_STATUS) {
+                errors[index]++;
+            }
+            bytes[index] += sentBytes;
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * Добавляет корзины другого ряда той же ширины.
+     */
+    void merge(TimeSeries other) {
+        if (other.bucketSeconds != bucketSeconds) {
+            throw new IllegalArgumentException("Нельзя объединить временные ряды с разной шириной корзин");
+        }
+        dropped += other.dropped;
+        for (long bucket = other.lo; bucket < other.hi; bucket++) {
+            int from = (int) (bucket - other.base);
+            if (other.requests[from] != 0) {
+                addBucket(bucket, other.requests[from], other.errors[from], other.bytes[from]);
+            }
+        }
+    }
+
+    /**
+     * Записывает ширину корзин и занятый диапазон в снимок; у пустых корзин хранится только нулевое число запросов.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(bucketSeconds);
+        out.writeVarLong(dropped);
+        out.writeSignedVarLong(lo);
+        out.writeVarLong(size());
+        for (int i = 0; i < size(); i++) {
+            int index = column(i);
+            out.writeVarLong(requests[index]);
+            if (requests[index] != 0) {
+                out.writeVarLong(errors[index]);
+                out.writeVarLong(bytes[index]);
+            }
+        }
+    }
+
+    static TimeSeries readFrom(SnapshotReader in) throws IOException {
+        int bucketSeconds = in.readInt();
+        if (bucketSeconds == 0) {
+            throw new IOException("Нулевая ширина корзины в снимке статистики");
+        }
+        TimeSeries series = new TimeSeries(bucketSeconds);
+        series.dropped = in.readVarLong();
+        long first = in.readSignedVarLong();
+        int size = in.readInt();
+        if (size > MAX_BUCKETS) {
+            throw new IOException("Слишком длинный временной ряд в снимке статистики: " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            long count = in.readVarLong();
+            if (count != 0) {
+                series.addBucket(first + i, count, in.readVarLong(), in.readVarLong());
+            }
+        }
+        return series;
+    }
+
+    private void addBucket(long bucket, long bucketRequests, long bucketErrors, long bucketBytes) {
+        if (ensureRange(bucket)) {
+            int index = (int) (bucket - base);
+            requests[index] += bucketRequests;
+            errors[index] += bucketErrors;
+            bytes[index] += bucketBytes;
+        } else {
+            dropped += bucketRequests;
+        }
+    }
+
+    public int getBucketSeconds() {
+        return bucketSeconds;
+    }
+
+    /**
+     * Число корзин от самой ранней до самой поздней записи включительно.
+     */
+    public int size() {
+        return (int) (hi - lo);
+    }
+
+    /**
+     * Начало корзины в секундах эпохи.
+     *
+     * @param index
+     *            номер корзины в ряду, от 0 до {@link #size()}
+     */
+    public long getBucketStart(int index) {
+        return (lo + index) * bucketSeconds;
+    }
+
+    public long getRequests(int index) {
+        return requests[column(index)];
+    }
+
+    /**
+     * Число ответов с кодами 4xx и 5xx в корзине.
+     */
+    public long getErrors(int index) {
+        return errors[column(index)];
+    }
+
+    public long getBytes(int index) {
+        return bytes[column(index)];
+    }
+
+    /**
+     * Число записей, не попавших в ряд из-за ограничения {@value #MAX_BUCKETS} корзин.
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    private int column(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Корзина " + index + " вне ряда из " + size());
+        }
+        return (int) (lo - base) + index;
+    }
+
+    private boolean ensureRange(long bucket) {
+        if (requests.length == 0) {
+            allocate(INITIAL_CAPACITY, bucket - INITIAL_CAPACITY / 2);
+            lo = bucket;
+            hi = bucket + 1;
+            return true;
+        }
+        long newLo = Math.min(lo, bucket);
+        long newHi = Math.max(hi, bucket + 1);
+        if (newHi - newLo > MAX_BUCKETS) {
+            return false;
+        }
+        if (bucket < base || bucket >= base + requests.length) {
+            // Запас оставляется с той стороны, в которую ряд растет
+            int capacity = (int) Math.min(MAX_BUCKETS, Math.max(newHi - newLo, 2L * requests.length));
+            allocate(capacity, bucket < base ? newHi - capacity : newLo);
+        }
+        lo = newLo;
+        hi = newHi;
+        return true;
+    }
+
+    private void allocate(int capacity, long newBase) {
+        requests = copy(requests, capacity, newBase);
+        errors = copy(errors, capacity, newBase);
+        bytes = copy(bytes, capacity, newBase);
+        base = newBase;
+    }
+
+    private long[] copy(long[] column, int capacity, long newBase) {
+        long[] result = new long[capacity];
+        if (hi > lo) {
+            System.arraycopy(column, (int) (lo - base), result, (int) (lo - newBase), (int) (hi - lo));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,317 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Декодер временных меток строк лога в секунды эпохи и смещение.
+ *
+ * <p>
+ * Формат определяется по первой метке источника и запоминается, поэтому на каждой строке не бросается
+ * {@code DateTimeParseException}. Для фиксированных раскладок NGINX ({@code dd/MMM/yyyy:HH:mm:ss Z}) и ISO8601 с
+ * секундной точностью метка разбирается вручную; последняя разобранная секунда и последний день кэшируются, так что
+ * подряд идущие строки с одинаковым временем не выполняют никакой арифметики дат. Все остальные варианты разбираются
+ * через {@link DateTimeFormatter}.
+ *
+ * <p>
+ * Экземпляр хранит состояние и не потокобезопасен: его заводят на каждый источник (поток) строк.
+ */
+public final class TimestampDecoder {
+
+    private static final DateTimeFormatter OLD_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z",
+            Locale.ENGLISH);
+    private static final DateTimeFormatter ISO_DATE_FORMATTER = DateTimeFormatter.ISO_DATE_TIME;
+
+    // Трехбуквенные названия месяцев подряд: месяц N занимает символы [3 * (N - 1), 3 * N)
+    private static final String MONTH_NAMES = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final int MONTH_NAME_LENGTH = 3;
+
+    // 17/May/2015:08:05:32 +0000
+    private static final int NGINX_LENGTH = 26;
+    private static final int NGINX_DATE_LENGTH = 11;
+    private static final int NGINX_MONTH = 3;
+    private static final int NGINX_YEAR = 7;
+    private static final int NGINX_HOUR = 12;
+    private static final int NGINX_MINUTE = 15;
+    private static final int NGINX_SECOND = 18;
+    private static final int NGINX_OFFSET = 21;
+
+    // 2015-05-17T08:05:32Z или 2015-05-17T08:05:32+03:00
+    private static final int ISO_UTC_LENGTH = 20;
+    private static final int ISO_OFFSET_LENGTH = 25;
+    private static final int ISO_DATE_LENGTH = 10;
+    private static final int ISO_MONTH = 5;
+    private static final int ISO_DAY = 8;
+    private static final int ISO_HOUR = 11;
+    private static final int ISO_MINUTE = 14;
+    private static final int ISO_SECOND = 17;
+    private static final int ISO_OFFSET = 19;
+
+    private static final int YEAR_DIGITS = 4;
+    private static final int OFFSET_MINUTES = 3;
+    private static final int OFFSET_MINUTES_WITH_COLON = 4;
+    private static final int MAX_HOUR = 23;
+    private static final int MAX_MINUTE = 59;
+    private static final int MAX_OFFSET_HOURS = 18;
+    private static final int DECIMAL_RADIX = 10;
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int SECONDS_PER_HOUR = 3600;
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int CACHE_CAPACITY = 32;
+
+    /**
+     * Раскладка временной метки, определенная для источника.
+     */
+    private enum Layout {
+        NGINX, ISO, OTHER
+    }
+
+    private Layout layout;
+
+    // Результат последнего успешного декодирования
+    private long epochSecond;
+    private int nano;
+    private int offsetSeconds;
+    private ZoneId zone;
+
+    // Кэш последней секунды: текст метки и его длина (-1, если кэш пуст)
+    private final char[] lastText = new char[CACHE_CAPACITY];
+    private int lastLength = -1;
+
+    // Кэш последнего дня: текст даты и номер дня эпохи
+    private final char[] lastDate = new char[NGINX_DATE_LENGTH];
+    private int lastDateLength;
+    private long lastEpochDay;
+
+    /**
+     * Декодирует временную метку.
+     *
+     * @param text
+     *            текст, содержащий метку
+     * @param from
+     *            начало метки (включительно)
+     * @param to
+     *            конец метки (не включительно)
+     *
+     * @return {@code true}, если метка разобрана; результат доступен через геттеры декодера
+     */
+    public boolean decode(CharSequence text, int from, int to) {
+        int length = to - from;
+        if (length == lastLength && regionEquals(text, from, lastText, length)) {
+            return true;
+        }
+        if (layout == null) {
+            layout = detect(text, from, length);
+        }
+        boolean decoded = switch (layout) {
+        case NGINX -> decodeNginx(text, from, length);
+        case ISO -> decodeIso(text, from, length);
+        default -> false;
+        };
+        if (!decoded) {
+            // Смешанные источники: определяем раскладку заново и, если нужно, идем через DateTimeFormatter
+            layout = detect(text, from, length);
+            decoded = decodeWithFormatter(text.subSequence(from, to));
+        }
+        if (decoded && length <= CACHE_CAPACITY) {
+            for (int i = 0; i < length; i++) {
+                lastText[i] = text.charAt(from + i);
+            }
+            lastLength = length;
+        } else {
+            lastLength = -1;
+        }
+        return decoded;
+    }
+
+    /**
+     * Записывает результат последнего декодирования во время записи лога.
+     *
+     * @param entry
+     *            запись лога
+     */
+    public void applyTo(LogEntry entry) {
+        entry.setTimestamp(epochSecond, nano, offsetSeconds, zone);
+    }
+
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    public int getNano() {
+        return nano;
+    }
+
+    public int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    private static Layout detect(CharSequence text, int from, int length) {
+        if (length == NGINX_LENGTH && text.charAt(from + 2) == '/') {
+            return Layout.NGINX;
+        }
+        if ((length == ISO_UTC_LENGTH || length == ISO_OFFSET_LENGTH) && text.charAt(from + ISO_HOUR - 1) == 'T') {
+            return Layout.ISO;
+        }
+        return Layout.OTHER;
+    }
+
+    private boolean decodeNginx(CharSequence text, int from, int length) {
+        if (length != NGINX_LENGTH || !matchesAt(text, from, NGINX_DATE_LENGTH, ':')
+                || text.charAt(from + NGINX_OFFSET - 1) != ' ') {
+            return false;
+        }
+        int offset = parseOffset(text, from + NGINX_OFFSET, false);
+        return offset != Integer.MIN_VALUE && resolveDate(text, from, true)
+                && resolveTime(text, from + NGINX_HOUR, from + NGINX_MINUTE, from + NGINX_SECOND, offset);
+    }
+
+    private boolean decodeIso(CharSequence text, int from, int length) {
+        if ((length != ISO_UTC_LENGTH && length != ISO_OFFSET_LENGTH) || !matchesAt(text, from, ISO_DATE_LENGTH, 'T')) {
+            return false;
+        }
+        int offset;
+        if (length == ISO_UTC_LENGTH) {
+            offset = text.charAt(from + ISO_OFFSET) == 'Z' ? 0 : Integer.MIN_VALUE;
+        } else {
+            offset = parseOffset(text, from + ISO_OFFSET, true);
+        }
+        return offset != Integer.MIN_VALUE && resolveDate(text, from, false)
+                && resolveTime(text, from + ISO_HOUR, from + ISO_MINUTE, from + ISO_SECOND, offset);
+    }
+
+    /**
+     * Находит номер дня эпохи для даты в начале метки, используя кэш последнего дня.
+     */
+    private boolean resolveDate(CharSequence text, int from, boolean nginx) {
+        int dateLength = nginx ? NGINX_DATE_LENGTH : ISO_DATE_LENGTH;
+        if (dateLength == lastDateLength && regionEquals(text, from, lastDate, dateLength)) {
+            return true;
+        }
+        int year = parseDigits(text, from + (nginx ? NGINX_YEAR : 0), YEAR_DIGITS);
+        int month = nginx ? parseMonth(text, from + NGINX_MONTH) : parseDigits(text, from + ISO_MONTH, 2);
+        int day = parseDigits(text, from + (nginx ? 0 : ISO_DAY), 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return false;
+        }
+        try {
+            lastEpochDay = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            // Несуществующая дата (например, 31/Feb): ее разрешает DateTimeFormatter по своим правилам
+            lastDateLength = 0;
+            return false;
+        }
+        for (int i = 0; i < dateLength; i++) {
+            lastDate[i] = text.charAt(from + i);
+        }
+        lastDateLength = dateLength;
+        return true;
+    }
+
+    private boolean resolveTime(CharSequence text, int hourPos, int minutePos, int secondPos, int offset) {
+        int hour = parseDigits(text, hourPos, 2);
+        int minute = parseDigits(text, minutePos, 2);
+        int second = parseDigits(text, secondPos, 2);
+        if (hour < 0 || hour > MAX_HOUR || minute < 0 || minute > MAX_MINUTE || second < 0 || second > MAX_MINUTE
+                || text.charAt(minutePos - 1) != ':' || text.charAt(secondPos - 1) != ':') {
+            return false;
+        }
+        epochSecond = lastEpochDay * SECONDS_PER_DAY + hour * SECONDS_PER_HOUR + minute * SECONDS_PER_MINUTE + second
+                - offset;
+        nano = 0;
+        if (zone == null || offsetSeconds != offset || !(zone instanceof ZoneOffset)) {
+            zone = ZoneOffset.ofTotalSeconds(offset);
+        }
+        offsetSeconds = offset;
+        return true;
+    }
+
+    private boolean decodeWithFormatter(CharSequence text) {
+        ZonedDateTime dateTime;
+        try {
+            dateTime = ZonedDateTime.parse(text, layout == Layout.NGINX ? OLD_DATE_FORMATTER : ISO_DATE_FORMATTER);
+        } catch (DateTimeException e) {
+            try {
+                dateTime = ZonedDateTime.parse(text, layout == Layout.NGINX ? ISO_DATE_FORMATTER : OLD_DATE_FORMATTER);
+            } catch (DateTimeException ignored) {
+                return false;
+            }
+        }
+        epochSecond = dateTime.toEpochSecond();
+        nano = dateTime.getNano();
+        offsetSeconds = dateTime.getOffset().getTotalSeconds();
+        zone = dateTime.getZone();
+        return true;
+    }
+
+    /**
+     * Разбирает смещение вида {@code +hhmm} или {@code +hh:mm}.
+     *
+     * @return смещение в секундах или {@code Integer.MIN_VALUE}, если формат не подходит
+     */
+    private static int parseOffset(CharSequence text, int pos, boolean colon) {
+        char sign = text.charAt(pos);
+        int hours = parseDigits(text, pos + 1, 2);
+        int minutesPos = pos + (colon ? OFFSET_MINUTES_WITH_COLON : OFFSET_MINUTES);
+        int minutes = parseDigits(text, minutesPos, 2);
+        if ((sign != '+' && sign != '-') || hours < 0 || hours > MAX_OFFSET_HOURS || minutes < 0 || minutes > MAX_MINUTE
+                || (colon && text.charAt(minutesPos - 1) != ':')) {
+            return Integer.MIN_VALUE;
+        }
+        int total = hours * SECONDS_PER_HOUR + minutes * SECONDS_PER_MINUTE;
+        if (total > MAX_OFFSET_HOURS * SECONDS_PER_HOUR) {
+            return Integer.MIN_VALUE;
+        }
+        return sign == '-' ? -total : total;
+    }
+
+    private static int parseMonth(CharSequence text, int pos) {
+        for (int i = 0; i < MONTH_NAMES.length(); i += MONTH_NAME_LENGTH) {
+            if (text.charAt(pos) == MONTH_NAMES.charAt(i) && text.charAt(pos + 1) == MONTH_NAMES.charAt(i + 1)
+                    && text.charAt(pos + 2) == MONTH_NAMES.charAt(i + 2)) {
+                return i / MONTH_NAME_LENGTH + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseDigits(CharSequence text, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * DECIMAL_RADIX + (c - '0');
+        }
+        return value;
+    }
+
+    // Проверяет разделители даты: '/' или '-' на своих местах и separator после даты
+    private static boolean matchesAt(CharSequence text, int from, int dateLength, char separator) {
+        boolean nginx = dateLength == NGINX_DATE_LENGTH;
+        char dateSeparator = nginx ? '/' : '-';
+        int first = nginx ? 2 : YEAR_DIGITS;
+        int second = nginx ? NGINX_YEAR - 1 : ISO_MONTH + 2;
+        return text.charAt(from + first) == dateSeparator && text.charAt(from + second) == dateSeparator
+                && text.charAt(from + dateLength) == separator;
+    }
+
+    private static boolean regionEquals(CharSequence text, int from, char[] cached, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (text.charAt(from + i) != cached[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,310 @@
+package backend.academy.LogAnalyzer.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Приближенный счетчик самых частых строк по алгоритму Space-Saving (Metwally, Agrawal, El Abbadi, 2005).
+ *
+ * <p>
+ * Хранит не больше {@code capacity} ключей. Когда все места заняты, новый ключ вытесняет ключ с наименьшим счетчиком и
+ * наследует его значение как погрешность. Для каждого хранимого ключа истинное число вхождений лежит в диапазоне
+ * {@code [count - error, count]}, а погрешность не превышает {@code N / capacity}, где N — число учтенных значений.
+ * Любой ключ, встретившийся больше {@code N / capacity} раз, гарантированно хранится.
+ *
+ * <p>
+ * Ключи ищутся в таблице с открытой адресацией и сравниваются посимвольно, как в {@link CharSequenceCounter}, а
+ * минимальный счетчик находится по двоичной куче, поэтому учет значения не выделяет память для уже хранимых ключей.
+ */
+final class TopKCounter {
+    // Таблица поиска заполнена не больше чем наполовину при любом числе счетчиков
+    private static final int TABLE_SCALE = 4;
+
+    private final int capacity;
+    private final String[] keys;
+    private final int[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private int size;
+    // Номер записи плюс один; ноль означает свободную ячейку
+    private final int[] table;
+    // Минимальная куча номеров записей по счетчику и обратный индекс записи в куче
+    private final int[] heap;
+    private final int[] heapIndex;
+
+    TopKCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Число счетчиков должно быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        heap = new int[capacity];
+        heapIndex = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity) * TABLE_SCALE];
+    }
+
+    /**
+     * Учитывает ключ {@code source[from, to)}.
+     */
+    void increment(CharSequence source, int from, int to) {
+        add(source, from, to);
+    }
+
+    void increment(CharSequence key) {
+        add(key, 0, key.length());
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Наибольшая возможная погрешность счетчика любого ключа: минимальный хранимый счетчик, если все места заняты.
+     */
+    long errorBound() {
+        return size < capacity ? 0 : counts[heap[0]];
+    }
+
+    /**
+     * Оценки числа вхождений хранимых ключей (сверху).
+     */
+    Map<String, Long> toMap() {
+        Map<String, Long> result = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            result.put(keys[i], counts[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Погрешности оценок хранимых ключей: истинное значение не меньше {@code count - error}.
+     */
+    Map<String, Long> errors() {
+        Map<String, Long> result = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            result.put(keys[i], errors[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Объединяет с другим приближенным счетчиком (Agarwal и др., «Mergeable Summaries», 2012).
+     *
+     * <p>
+     * Ключ, которого нет в одном из счетчиков, получает от него минимальный счетчик и как оценку, и как погрешность,
+     * после чего остаются {@code capacity} ключей с наибольшими оценками. Гарантии погрешности сохраняются.
+     */
+    void merge(TopKCounter other) {
+        merge(other.toMap(), other.errors(), other.errorBound());
+    }
+
+    /**
+     * Добавляет точные счетчики.
+     */
+    void merge(Map<String, Long> exactCounts) {
+        merge(exactCounts, Map.of(), 0);
+    }
+
+    private void merge(Map<String, Long> otherCounts, Map<String, Long> otherErrors, long otherMin) {
+        long ownMin = errorBound();
+        Map<String, long[]> merged = new HashMap<>((size + otherCounts.size()) * 2);
+        for (int i = 0; i < size; i++) {
+            merged.put(keys[i], estimate(counts[i] + otherMin, errors[i] + otherMin));
+        }
+        otherCounts.forEach((key, count) -> {
+            long error = otherErrors.getOrDefault(key, 0L);
+            long[] entry = merged.get(key);
+            if (entry == null) {
+                merged.put(key, estimate(count + ownMin, error + ownMin));
+            } else {
+                entry[0] += count - otherMin;
+                entry[1] += error - otherMin;
+            }
+        });
+        List<Map.Entry<String, long[]>> ranked = new ArrayList<>(merged.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+
+        Arrays.fill(table, 0);
+        size = 0;
+        for (Map.Entry<String, long[]> entry : ranked.subList(0, Math.min(capacity, ranked.size()))) {
+            put(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Записывает число счетчиков и хранимые ключи с оценками и погрешностями в снимок.
+     */
+    void writeTo(SnapshotWriter out) {
+        out.writeVarLong(capacity);
+        out.writeVarLong(size);
+        for (int i = 0; i < size; i++) {
+            out.writeString(keys[i]);
+            out.writeVarLong(counts[i]);
+            out.writeVarLong(errors[i]);
+        }
+    }
+
+    static TopKCounter readFrom(SnapshotReader in) throws IOException {
+        int capacity = in.readInt();
+        int stored = in.readInt();
+        if (capacity < 1 || stored > capacity) {
+            throw new IOException("Поврежденный счетчик Space-Saving в снимке статистики");
+        }
+        TopKCounter counter = new TopKCounter(capacity);
+        for (int i = 0; i < stored; i++) {
+            String key = CharSequenceCounter.requireKey(in.readString());
+            if (counter.find(key, 0, key.length(), CharSequenceCounter.hash(key, 0, key.length())) >= 0) {
+                throw new IOException("Повторный ключ счетчика Space-Saving в снимке статистики: " + key);
+            }
+            counter.put(key, in.readVarLong(), in.readVarLong());
+        }
+        return counter;
+    }
+
+    // Добавляет новый ключ в свободную запись; место должно быть
+    private void put(String key, long count, long error) {
+        int hash = CharSequenceCounter.hash(key, 0, key.length());
+        store(size, key, hash, insertionSlot(hash));
+        counts[size] = count;
+        errors[size] = error;
+        heap[size] = size;
+        heapIndex[size] = size;
+        siftUp(size);
+        size++;
+    }
+
+    private static long[] estimate(long count, long error) {
+        long[] estimate = new long[2];
+        estimate[0] = count;
+        estimate[1] = error;
+        return estimate;
+    }
+
+    private void add(CharSequence source, int from, int to) {
+        int hash = CharSequenceCounter.hash(source, from, to);
+        int found = find(source, from, to, hash);
+        if (found >= 0) {
+            counts[found]++;
+            siftDown(heapIndex[found]);
+        } else if (size < capacity) {
+            store(size, copy(source, from, to), hash, -found - 1);
+            counts[size] = 1;
+            errors[size] = 0;
+            heap[size] = size;
+            heapIndex[size] = size;
+            siftUp(size);
+            size++;
+        } else {
+            // Вытесняется ключ с минимальным счетчиком, его значение становится погрешностью нового ключа
+            int evicted = heap[0];
+            long min = counts[evicted];
+            removeFromTable(evicted);
+            store(evicted, copy(source, from, to), hash, insertionSlot(hash));
+            counts[evicted] = min + 1;
+            errors[evicted] = min;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Ищет ключ в таблице.
+     *
+     * @return номер записи или {@code -(slot + 1)}, где slot — свободная ячейка для нового ключа
+     */
+    private int find(CharSequence source, int from, int to, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int entry = table[slot] - 1;
+            if (hashes[entry] == hash && CharSequenceCounter.matches(keys[entry], source, from, to)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private static String copy(CharSequence source, int from, int to) {
+        return new StringBuilder(to - from).append(source, from, to).toString();
+    }
+
+    private void store(int entry, String key, int hash, int slot) {
+        keys[entry] = key;
+        hashes[entry] = hash;
+        table[slot] = entry + 1;
+    }
+
+    private int insertionSlot(int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Удаление со сдвигом назад: цепочки проб остаются непрерывными без специальных меток
+    private void removeFromTable(int entry) {
+        int mask = table.length - 1;
+        int free = hashes[entry] & mask;
+        while (table[free] != entry + 1) {
+            free = (free + 1) & mask;
+        }
+        int next = (free + 1) & mask;
+        while (table[next] != 0) {
+            int home = hashes[table[next] - 1] & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                table[free] = table[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[free] = 0;
+    }
+
+    private void siftUp(int position) {
+        int pos = position;
+        int entry = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[entry]) {
+                break;
+            }
+            place(heap[parent], pos);
+            pos = parent;
+        }
+        place(entry, pos);
+    }
+
+    private void siftDown(int position) {
+        int pos = position;
+        int entry = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[entry]) {
+                break;
+            }
+            place(heap[child], pos);
+            pos = child;
+        }
+        place(entry, pos);
+    }
+
+    private void place(int entry, int position) {
+        heap[position] = entry;
+        heapIndex[entry] = position;
+    }
+}
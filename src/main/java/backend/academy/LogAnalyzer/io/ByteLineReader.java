@@ -0,0 +1,132 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Построчное чтение UTF-8 напрямую из канала байтов.
+ *
+ * <p>
+ * Строки ищутся в буфере байтов, а декодируется только найденная строка (см. {@link LineDecoder}): ASCII-строки просто
+ * расширяются до символов, а некорректные последовательности UTF-8 заменяются символом U+FFFD, поэтому один «грязный»
+ * User-Agent не прерывает разбор файла.
+ */
+public final class ByteLineReader implements LineSource {
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private ByteBuffer bytes;
+    // Непрочитанные байты лежат в bytes[position, limit), байты [position, scanned) уже проверены на конец строки
+    private int position;
+    private int limit;
+    private int scanned;
+    private boolean endOfInput;
+    private boolean skipLineFeed;
+    private final LineDecoder decoder;
+
+    public ByteLineReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    public ByteLineReader(ReadableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.bytes = ByteBuffer.allocate(Math.max(capacity, 1));
+        this.decoder = new LineDecoder(capacity);
+    }
+
+    /**
+     * Открывает локальный файл для построчного чтения.
+     *
+     * @param path
+     *            путь к файлу
+     *
+     * @return читатель файла
+     *
+     * @throws IOException
+     *             если файл не удалось открыть
+     */
+    public static ByteLineReader open(Path path) throws IOException {
+        return new ByteLineReader(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        byte[] data = bytes.array();
+        while (true) {
+            if (skipLineFeed && position < limit) {
+                skipLineFeed = false;
+                if (data[position] == '\n') {
+                    position++;
+                    scanned = Math.max(scanned, position);
+                }
+            }
+            for (int i = scanned; i < limit; i++) {
+                byte b = data[i];
+                if (b == '\n' || b == '\r') {
+                    decoder.decode(bytes, position, i);
+                    position = i + 1;
+                    scanned = position;
+                    skipLineFeed = b == '\r';
+                    return true;
+                }
+            }
+            scanned = limit;
+            if (endOfInput) {
+                if (position == limit) {
+                    return false;
+                }
+                decoder.decode(bytes, position, limit);
+                position = limit;
+                return true;
+            }
+            fill();
+            data = bytes.array();
+        }
+    }
+
+    @Override
+    public char[] buffer() {
+        return decoder.chars();
+    }
+
+    @Override
+    public int lineStart() {
+        return 0;
+    }
+
+    @Override
+    public int lineEnd() {
+        return decoder.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Сдвигает непрочитанный хвост в начало буфера (расширяя буфер для длинных строк) и дочитывает данные
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == bytes.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+            larger.put(bytes.array(), position, remaining);
+            bytes = larger;
+        } else if (position > 0) {
+            System.arraycopy(bytes.array(), position, bytes.array(), 0, remaining);
+        }
+        scanned -= position;
+        position = 0;
+        limit = remaining;
+        bytes.limit(bytes.capacity()).position(limit);
+        int read = channel.read(bytes);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+}
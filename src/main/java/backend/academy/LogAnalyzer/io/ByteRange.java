@@ -0,0 +1,22 @@
+package backend.academy.LogAnalyzer.io;
+
+/**
+ * Диапазон байтов файла {@code [start, end)}, выровненный по строкам.
+ */
+public final class ByteRange {
+    private final long start;
+    private final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,117 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Построчное чтение в переиспользуемый буфер символов.
+ *
+ * <p>
+ * В отличие от {@link java.io.BufferedReader#readLine()}, строка не копируется в новый {@code String}: после
+ * {@link #nextLine()} она доступна как участок {@link #buffer()} от {@link #lineStart()} до {@link #lineEnd()} и
+ * остается действительной до следующего вызова. Концом строки считаются {@code \n}, {@code \r} и {@code \r\n}, как и в
+ * BufferedReader.
+ */
+public final class CharLineReader implements LineSource {
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final Reader reader;
+    private char[] buffer;
+    // Непрочитанные символы лежат в buffer[position, limit)
+    private int position;
+    private int limit;
+    // Символы buffer[position, scanned) уже проверены и не содержат конца строки
+    private int scanned;
+    private int lineStart;
+    private int lineEnd;
+    private boolean endOfInput;
+    private boolean skipLineFeed;
+
+    public CharLineReader(Reader reader) {
+        this(reader, DEFAULT_CAPACITY);
+    }
+
+    public CharLineReader(Reader reader, int capacity) {
+        this.reader = reader;
+        this.buffer = new char[Math.max(capacity, 1)];
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        while (true) {
+            if (skipLineFeed && position < limit) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    scanned = Math.max(scanned, position);
+                }
+            }
+            for (int i = scanned; i < limit; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    setLine(i);
+                    position = i + 1;
+                    scanned = position;
+                    skipLineFeed = c == '\r';
+                    return true;
+                }
+            }
+            scanned = limit;
+            if (endOfInput) {
+                if (position == limit) {
+                    return false;
+                }
+                setLine(limit);
+                position = limit;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    @Override
+    public char[] buffer() {
+        return buffer;
+    }
+
+    @Override
+    public int lineStart() {
+        return lineStart;
+    }
+
+    @Override
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void setLine(int end) {
+        lineStart = position;
+        lineEnd = end;
+    }
+
+    // Сдвигает непрочитанный хвост в начало буфера (расширяя буфер для длинных строк) и дочитывает данные
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, position, larger, 0, remaining);
+            buffer = larger;
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        scanned -= position;
+        position = 0;
+        limit = remaining;
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+}
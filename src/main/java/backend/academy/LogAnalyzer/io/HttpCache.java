@@ -0,0 +1,371 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Дисковый кэш удаленных логов.
+ *
+ * <p>
+ * Тело ответа хранится в каталоге кэша в файле {@code <sha-256 URL>.body}, а рядом, в {@code <sha-256 URL>.meta}, —
+ * URL, {@code ETag}, {@code Last-Modified} и длина тела. Повторное обращение к URL отправляет условный запрос с
+ * {@code If-None-Match} (или {@code If-Modified-Since}), поэтому неизменившийся лог стоит одного ответа 304 без тела.
+ *
+ * <p>
+ * Логи обычно только дописываются, поэтому тот же запрос просит не весь файл, а диапазон начиная с последних
+ * {@value #OVERLAP_BYTES} байтов кэшированного тела. Если пришедшее начало диапазона совпадает с концом тела, файл
+ * действительно дописан, и к телу добавляется только новый хвост. Иначе файл переписан (например, ротирован), и он
+ * загружается целиком. {@code If-Range} здесь не годится: у дописанного файла валидатор уже другой.
+ *
+ * <p>
+ * Суммарный размер тел ограничен: после каждого обращения вытесняются записи, к которым дольше всего не обращались.
+ * Тело, полученное {@link #fetch(URI)}, не вытесняется до вызова {@link #release(URI)}, поэтому анализ идет по нему как
+ * по обычному локальному файлу, даже когда другие потоки загружают другие URL.
+ */
+public final class HttpCache {
+    static final int MAGIC = 0x4C414843;
+    static final int VERSION = 1;
+    static final int OVERLAP_BYTES = 4096;
+    private static final Logger LOGGER = LogManager.getLogger(HttpCache.class);
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final HttpClient client;
+    // Записи, которые сейчас загружаются или читаются, с числом пользователей; они не вытесняются
+    private final Map<String, Integer> inUse = new HashMap<>();
+
+    /**
+     * Создает кэш с общим клиентом HTTP.
+     *
+     * @param directory
+     *            каталог кэша; создается при первом обращении
+     * @param maxBytes
+     *            наибольший суммарный размер тел
+     */
+    public HttpCache(Path directory, long maxBytes) {
+        this(directory, maxBytes, ResumableHttpStream.CLIENT);
+    }
+
+    /**
+     * Создает кэш с переданным клиентом HTTP.
+     *
+     * @see #HttpCache(Path, long)
+     */
+    public HttpCache(Path directory, long maxBytes, HttpClient client) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.client = client;
+    }
+
+    /**
+     * Возвращает актуальную копию удаленного лога, загружая только то, чего в кэше еще нет. Копия не вытесняется, пока
+     * ее не освободят методом {@link #release(URI)}.
+     *
+     * @param uri
+     *            адрес лога
+     *
+     * @return путь к телу ответа в кэше
+     *
+     * @throws IOException
+     *             если ответ не удалось получить или записать
+     */
+    public Path fetch(URI uri) throws IOException {
+        Files.createDirectories(directory);
+        String key = key(uri);
+        Path body = directory.resolve(key + BODY_SUFFIX);
+        Path meta = directory.resolve(key + META_SUFFIX);
+        // Запись занимается до проверки: вытеснение из другого потока не удалит тело, пока его дописывают или читают
+        acquire(key);
+        try {
+            Entry cached = Entry.read(meta, uri.toString(), body);
+            Entry current = cached == null ? download(uri, body) : revalidate(uri, cached, body);
+            if (current != cached) {
+                current.write(meta);
+            }
+            // Время изменения метаданных — время последнего обращения, по нему вытесняются записи
+            Files.setLastModifiedTime(meta, FileTime.fromMillis(System.currentTimeMillis()));
+            evict();
+        } catch (IOException | RuntimeException e) {
+            release(uri);
+            throw e;
+        }
+        return body;
+    }
+
+    /**
+     * Освобождает копию, полученную методом {@link #fetch(URI)}, когда она больше не читается. После этого запись снова
+     * может быть вытеснена.
+     *
+     * @param uri
+     *            адрес лога, переданный в {@link #fetch(URI)}
+     */
+    public synchronized void release(URI uri) {
+        inUse.computeIfPresent(key(uri), (key, users) -> users > 1 ? users - 1 : null);
+    }
+
+    private synchronized void acquire(String key) {
+        inUse.merge(key, 1, Integer::sum);
+    }
+
+    /**
+     * Загружает тело целиком, продолжая его после обрывов соединения.
+     */
+    private Entry download(URI uri, Path body) throws IOException {
+        LOGGER.info("Загрузка {} в кэш", uri);
+        try (ResumableHttpStream in = ResumableHttpStream.open(client, uri)) {
+            store(in, body);
+            return new Entry(uri.toString(), in.getEntityTag(), in.getLastModified(), Files.size(body));
+        }
+    }
+
+    /**
+     * Отправляет условный запрос диапазона с перекрытием и по ответу оставляет тело, дописывает к нему хвост или
+     * загружает заново.
+     */
+    private Entry revalidate(URI uri, Entry cached, Path body) throws IOException {
+        long overlapStart = Math.max(cached.length - OVERLAP_BYTES, 0);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(TIMEOUT).GET().header("Range",
+                "bytes=" + overlapStart + "-");
+        if (cached.entityTag != null) {
+            request.header("If-None-Match", cached.entityTag);
+        } else if (cached.lastModified != null) {
+            request.header("If-Modified-Since", cached.lastModified);
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Проверка " + uri + " прервана");
+        }
+        Entry current = null;
+        try (InputStream in = response.body()) {
+            int status = response.statusCode();
+            if (status == HTTP_NOT_MODIFIED) {
+                LOGGER.info("{}: не изменился, используется кэш", uri);
+                current = cached;
+            } else if (status == HTTP_PARTIAL_CONTENT) {
+                current = appendTail(response, in, cached, body, overlapStart);
+            } else if (status == HTTP_OK) {
+                // Сервер не поддерживает диапазоны: полученный ответ и есть новое тело
+                store(in, body);
+                current = Entry.of(uri.toString(), response, Files.size(body));
+            } else if (status != HTTP_RANGE_NOT_SATISFIABLE) {
+                throw new IOException("HTTP " + status + " при проверке " + uri);
+            }
+        }
+        // Файл стал короче кэшированного или переписан: загружается заново
+        return current != null ? current : download(uri, body);
+    }
+
+    /**
+     * Дописывает к телу хвост из ответа 206, если начало диапазона совпадает с концом тела.
+     *
+     * @return новая запись или {@code null}, если файл переписан и должен быть загружен заново
+     */
+    private Entry appendTail(HttpResponse<InputStream> response, InputStream in, Entry cached, Path body,
+            long overlapStart) throws IOException {
+        Matcher range = CONTENT_RANGE.matcher(response.headers().firstValue("Content-Range").orElse(""));
+        int overlap = (int) (cached.length - overlapStart);
+        if (!range.matches() || Long.parseLong(range.group(1)) != overlapStart
+                || !Arrays.equals(in.readNBytes(overlap), readTail(body, overlapStart, overlap))) {
+            LOGGER.info("{}: файл переписан, загружается заново", response.uri());
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(body, StandardOpenOption.WRITE)) {
+            try {
+                long appended = channel.transferFrom(Channels.newChannel(in), cached.length, Long.MAX_VALUE);
+                LOGGER.info("{}: дописано {} байтов", response.uri(), appended);
+                return Entry.of(cached.url, response, cached.length + appended);
+            } catch (IOException e) {
+                // Недописанный хвост отрезается, и запись остается прежней
+                channel.truncate(cached.length);
+                throw e;
+            }
+        }
+    }
+
+    private static byte[] readTail(Path body, long start, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(body, StandardOpenOption.READ)) {
+            ByteBuffer tail = ByteBuffer.allocate(count);
+            int read = 0;
+            while (tail.hasRemaining() && read >= 0) {
+                read = channel.read(tail, start + tail.position());
+            }
+            return tail.array();
+        }
+    }
+
+    /**
+     * Записывает тело во временный файл и заменяет им прежнее, чтобы другой процесс не прочитал его наполовину.
+     */
+    private static void store(InputStream in, Path body) throws IOException {
+        Path temporary = temporaryPath(body);
+        try {
+            Files.copy(in, temporary, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporary, body, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Удаляет записи, к которым дольше всего не обращались, начиная с той, которая уже не помещается в предел вместе с
+     * более свежими. Занятые записи не удаляются, даже если одни превышают предел.
+     */
+    private synchronized void evict() throws IOException {
+        List<Path> metas = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + META_SUFFIX)) {
+            entries.forEach(metas::add);
+        }
+        metas.sort(Comparator.comparing(HttpCache::lastAccess).reversed());
+        long total = 0;
+        for (Path meta : metas) {
+            String key = meta.getFileName().toString().replace(META_SUFFIX, "");
+            Path body = directory.resolve(key + BODY_SUFFIX);
+            long size = Files.exists(body) ? Files.size(body) : 0;
+            if (total + size > maxBytes && !inUse.containsKey(key)) {
+                LOGGER.info("Запись кэша {} вытеснена", key);
+                Files.deleteIfExists(meta);
+                Files.deleteIfExists(body);
+                Files.deleteIfExists(TimeIndex.indexPath(body));
+            } else {
+                total += size;
+            }
+        }
+    }
+
+    /**
+     * Временный файл свой у каждого процесса, поэтому параллельные запуски не пишут в один файл.
+     */
+    private static Path temporaryPath(Path path) {
+        return path.resolveSibling(path.getFileName() + "." + ProcessHandle.current().pid() + TEMPORARY_SUFFIX);
+    }
+
+    private static FileTime lastAccess(Path meta) {
+        try {
+            return Files.getLastModifiedTime(meta);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String key(URI uri) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(uri.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * Метаданные тела в кэше.
+     */
+    private static final class Entry {
+        private final String url;
+        private final String entityTag;
+        private final String lastModified;
+        private final long length;
+
+        Entry(String url, String entityTag, String lastModified, long length) {
+            this.url = url;
+            this.entityTag = entityTag;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        /**
+         * Запись с валидаторами из ответа сервера.
+         */
+        static Entry of(String url, HttpResponse<?> response, long length) {
+            return new Entry(url, response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null), length);
+        }
+
+        /**
+         * Читает метаданные записи.
+         *
+         * @return запись или {@code null}, если ее нет, она повреждена, принадлежит другому URL или тело не той длины
+         */
+        static Entry read(Path meta, String url, Path body) {
+            if (!Files.isRegularFile(meta) || !Files.isRegularFile(body)) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(meta)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(url)) {
+                    return null;
+                }
+                Entry entry = new Entry(url, optional(in.readUTF()), optional(in.readUTF()), in.readLong());
+                return entry.length == Files.size(body) ? entry : null;
+            } catch (IOException e) {
+                // Поврежденная запись: тело будет загружено заново
+                return null;
+            }
+        }
+
+        void write(Path meta) throws IOException {
+            Path temporary = temporaryPath(meta);
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeUTF(url);
+                    out.writeUTF(entityTag == null ? "" : entityTag);
+                    out.writeUTF(lastModified == null ? "" : lastModified);
+                    out.writeLong(length);
+                }
+                Files.move(temporary, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private static String optional(String value) {
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
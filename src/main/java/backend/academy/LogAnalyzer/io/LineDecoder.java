@@ -0,0 +1,65 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Декодирует строку UTF-8 из буфера байтов в переиспользуемый массив символов.
+ *
+ * <p>
+ * Пока в строке нет байтов старше 0x7F, байты просто расширяются до символов, и декодер UTF-8 вызывается лишь для
+ * остатка строки с не-ASCII байтом. Некорректные последовательности заменяются символом U+FFFD.
+ */
+final class LineDecoder {
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private char[] chars;
+    private CharBuffer charView;
+    private int length;
+
+    LineDecoder(int capacity) {
+        this.chars = new char[Math.max(capacity, 1)];
+        this.charView = CharBuffer.wrap(chars);
+    }
+
+    /**
+     * Декодирует байты {@code bytes[from, to)} по абсолютным индексам. После вызова позиция буфера равна нулю, а
+     * граница — емкости.
+     */
+    void decode(ByteBuffer bytes, int from, int to) {
+        // UTF-8 никогда не дает больше символов UTF-16, чем было байтов, поэтому буфера длины строки достаточно
+        int byteLength = to - from;
+        if (chars.length < byteLength) {
+            chars = new char[Math.max(byteLength, chars.length * 2)];
+            charView = CharBuffer.wrap(chars);
+        }
+        int i = from;
+        byte b;
+        while (i < to && (b = bytes.get(i)) >= 0) {
+            chars[i - from] = (char) b;
+            i++;
+        }
+        length = i == to ? byteLength : decodeRest(bytes, i, to, i - from);
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    int length() {
+        return length;
+    }
+
+    private int decodeRest(ByteBuffer bytes, int from, int to, int decoded) {
+        bytes.limit(to).position(from);
+        charView.clear().position(decoded);
+        decoder.reset();
+        decoder.decode(bytes, charView, true);
+        decoder.flush(charView);
+        bytes.clear();
+        return charView.position();
+    }
+}
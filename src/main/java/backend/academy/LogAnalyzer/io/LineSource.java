@@ -0,0 +1,90 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Источник строк лога, отдающий каждую строку как участок переиспользуемого буфера символов.
+ *
+ * <p>
+ * Строка действительна до следующего вызова {@link #nextLine()}; {@code String} создается только в {@link #line()}.
+ */
+public interface LineSource extends Closeable {
+
+    /**
+     * Переходит к следующей строке.
+     *
+     * @return {@code false}, если строки закончились
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     */
+    boolean nextLine() throws IOException;
+
+    /**
+     * Буфер, в котором лежит текущая строка.
+     */
+    char[] buffer();
+
+    int lineStart();
+
+    /**
+     * Конец текущей строки (без символов перевода строки).
+     */
+    int lineEnd();
+
+    /**
+     * Текущая строка в виде {@code String}.
+     */
+    default String line() {
+        return new String(buffer(), lineStart(), lineEnd() - lineStart());
+    }
+
+    /**
+     * Оставшиеся строки в виде потока; закрытие потока закрывает источник.
+     */
+    default Stream<String> lines() {
+        Iterator<String> iterator = new Iterator<>() {
+            private boolean ready;
+            private boolean hasLine;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    try {
+                        hasLine = nextLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    ready = true;
+                }
+                return hasLine;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return line();
+            }
+        };
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+}
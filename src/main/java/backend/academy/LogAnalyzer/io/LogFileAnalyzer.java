@@ -0,0 +1,371 @@
+package backend.academy.LogAnalyzer.io;
+
+import backend.academy.LogAnalyzer.core.LineFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogRecord;
+import backend.academy.LogAnalyzer.core.LogRecordCursor;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Сбор статистики по лог-файлу: чтение, разбор, фильтрация и подсчет.
+ *
+ * <p>
+ * В параллельном режиме локальный файл делится на диапазоны, выровненные по строкам ({@link MappedLineReader#split}),
+ * каждый диапазон обрабатывается своим потоком в собственную {@link LogStatistics}, а частичные результаты в конце
+ * объединяются через {@link LogStatistics#merge(LogStatistics)}. Отчет при этом совпадает с последовательным.
+ */
+public final class LogFileAnalyzer {
+
+    private LogFileAnalyzer() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Собирает статистику по локальному файлу или URL.
+     *
+     * @param filePath
+     *            путь к файлу или URL
+     * @param format
+     *            формат строк лога
+     * @param filter
+     *            условие отбора записей; вызывается из рабочих потоков и не должно иметь состояния. Строки формата
+     *            combined, которые {@link LineFilter} отклоняет по началу, не разбираются
+     * @param threads
+     *            число рабочих потоков; URL всегда читается в один поток
+     *
+     * @return статистика по отобранным записям
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     * @throws InterruptedException
+     *             если ожидание рабочих потоков было прервано
+     */
+    public static LogStatistics analyze(String filePath, LogFormat format, Predicate<LogRecord> filter, int threads)
+            throws IOException, InterruptedException {
+        return analyze(filePath, format, filter, threads, LogStatistics::new);
+    }
+
+    /**
+     * Собирает статистику по локальному файлу или URL в статистики, созданные фабрикой.
+     *
+     * @param statistics
+     *            фабрика пустых статистик с нужными настройками; в параллельном режиме вызывается для каждой части
+     *            файла
+     *
+     * @return статистика по отобранным записям
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     * @throws InterruptedException
+     *             если ожидание рабочих потоков было прервано
+     *
+     * @see #analyze(String, LogFormat, Predicate, int)
+     */
+    public static LogStatistics analyze(String filePath, LogFormat format, Predicate<LogRecord> filter, int threads,
+            Supplier<LogStatistics> statistics) throws IOException, InterruptedException {
+        if (LogReader.isHttpUrl(filePath)) {
+            LogStatistics result = statistics.get();
+            result.setFileName(filePath);
+            try (LineSource lines = LogReader.openUrl(filePath)) {
+                return analyze(lines, format, filter, result);
+            }
+        }
+        Path path = Paths.get(filePath);
+        if (LogReader.isGzip(path)) {
+            // Поток gzip распаковывается только последовательно: файл читается в один поток
+            LogStatistics result = statistics.get();
+            result.setFileName(filePath);
+            try (LineSource lines = LogReader.openLines(path)) {
+                return analyze(lines, format, filter, result);
+            }
+        }
+        return analyze(path, 0, Files.size(path), format, filter, threads, statistics);
+    }
+
+    /**
+     * Собирает общую статистику по нескольким файлам или URL.
+     *
+     * @param filePaths
+     *            пути к файлам или URL, в том числе сжатым gzip
+     * @param threads
+     *            число рабочих потоков
+     *
+     * @return объединенная статистика
+     *
+     * @throws IOException
+     *             при ошибке чтения любого из файлов
+     * @throws InterruptedException
+     *             если ожидание рабочих потоков было прервано
+     *
+     * @see #analyzeFiles(List, int, FileAnalysis, Supplier)
+     */
+    public static LogStatistics analyzeFiles(List<String> filePaths, LogFormat format, Predicate<LogRecord> filter,
+            int threads, Supplier<LogStatistics> statistics) throws IOException, InterruptedException {
+        return analyzeFiles(filePaths, threads,
+                (filePath, fileThreads) -> analyze(filePath, format, filter, fileThreads, statistics), statistics);
+    }
+
+    /**
+     * Собирает общую статистику по нескольким файлам или URL, обрабатывая каждый файл переданной процедурой.
+     *
+     * <p>
+     * Каждый файл обрабатывается одним рабочим потоком в собственную статистику, и до {@code threads} файлов читаются
+     * одновременно. Это и есть параллельность для сжатых файлов: распаковка одного потока gzip не делится между
+     * потоками, а несколько файлов распаковываются независимо. Частичные статистики объединяются в порядке файлов, и
+     * для каждого файла запоминается число его записей ({@link LogStatistics#getFileTotals()}). Единственный файл
+     * обрабатывается процедурой со всеми {@code threads} потоками.
+     *
+     * @param filePaths
+     *            пути к файлам или URL
+     * @param threads
+     *            число рабочих потоков
+     * @param analysis
+     *            обработка одного файла
+     * @param statistics
+     *            фабрика пустой статистики для объединения
+     *
+     * @return объединенная статистика; имена файлов перечислены через запятую
+     *
+     * @throws IOException
+     *             при ошибке чтения любого из файлов; сообщение начинается с имени файла
+     * @throws InterruptedException
+     *             если ожидание рабочих потоков было прервано
+     */
+    public static LogStatistics analyzeFiles(List<String> filePaths, int threads, FileAnalysis analysis,
+            Supplier<LogStatistics> statistics) throws IOException, InterruptedException {
+        if (filePaths.size() == 1) {
+            return analysis.analyze(filePaths.get(0), threads);
+        }
+        List<Callable<LogStatistics>> tasks = new ArrayList<>();
+        for (String filePath : filePaths) {
+            tasks.add(() -> {
+                try {
+                    return analysis.analyze(filePath, 1);
+                } catch (IOException e) {
+                    throw new IOException(filePath + ": " + e.getMessage(), e);
+                }
+            });
+        }
+        LogStatistics result = statistics.get();
+        List<LogStatistics> partials = runAll(tasks, threads);
+        for (int i = 0; i < partials.size(); i++) {
+            result.merge(partials.get(i));
+            result.addFileTotal(filePaths.get(i), partials.get(i).getTotalRequestsAsLong());
+        }
+        result.setFileName(String.join(", ", filePaths));
+        return result;
+    }
+
+    /**
+     * Собирает статистику по диапазону байтов локального файла, например найденному {@link TimeSeeker}.
+     *
+     * @param path
+     *            путь к файлу
+     * @param from
+     *            начало диапазона; должно быть началом строки
+     * @param to
+     *            конец диапазона; должен быть концом строки или файла
+     *
+     * @return статистика по отобранным записям диапазона
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     * @throws InterruptedException
+     *             если ожидание рабочих потоков было прервано
+     *
+     * @see #analyze(String, LogFormat, Predicate, int, Supplier)
+     */
+    public static LogStatistics analyze(Path path, long from, long to, LogFormat format, Predicate<LogRecord> filter,
+            int threads, Supplier<LogStatistics> statistics) throws IOException, InterruptedException {
+        LogStatistics result = statistics.get();
+        result.setFileName(path.toString());
+        if (threads <= 1) {
+            try (LineSource lines = MappedLineReader.open(path, from, to)) {
+                return analyze(lines, format, filter, result);
+            }
+        }
+        return analyzeInParallel(MappedLineReader.split(path, from, to, threads), format, filter, statistics, result);
+    }
+
+    /**
+     * Собирает статистику по строкам одного источника в указанную статистику.
+     *
+     * @return переданная статистика
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     */
+    public static LogStatistics analyze(LineSource lines, LogFormat format, Predicate<LogRecord> filter,
+            LogStatistics stats) throws IOException {
+        if (format.isCombined()) {
+            // Строки combined разбираются в один переиспользуемый курсор: цикл не выделяет память на строку
+            // LineFilter отбрасывает заведомо неподходящие строки по их началу, до полного разбора
+            LineFilter lineFilter = filter instanceof LineFilter prefilter ? prefilter : null;
+            LogRecordCursor cursor = new LogRecordCursor();
+            while (lines.nextLine()) {
+                char[] buffer = lines.buffer();
+                int start = lines.lineStart();
+                int end = lines.lineEnd();
+                if ((lineFilter == null || lineFilter.testLine(buffer, start, end, cursor))
+                        && LogParser.parseLine(buffer, start, end, cursor) && filter.test(cursor)) {
+                    stats.updateStatistics(cursor);
+                }
+            }
+        } else {
+            while (lines.nextLine()) {
+                LogParser.parseLine(lines.line(), format).filter(filter).ifPresent(stats::updateStatistics);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Записывает двоичный снимок статистики в файл ({@link LogStatistics#writeSnapshot}).
+     *
+     * @param stats
+     *            статистика
+     * @param filePath
+     *            путь к файлу снимка; существующий файл перезаписывается
+     *
+     * @throws IOException
+     *             при ошибке записи
+     */
+    public static void writeSnapshot(LogStatistics stats, String filePath) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(filePath)))) {
+            stats.writeSnapshot(out);
+        }
+    }
+
+    /**
+     * Объединяет снимки статистики без чтения исходных логов. Имена файлов из снимков перечисляются через запятую.
+     *
+     * @param snapshotPaths
+     *            пути к файлам снимков
+     *
+     * @return объединенная статистика
+     *
+     * @throws IOException
+     *             если снимок не читается или поврежден
+     * @throws IllegalArgumentException
+     *             если список пуст или снимки собраны с несовместимыми настройками (разная ширина корзин временного
+     *             ряда или разные измерения группировки)
+     */
+    public static LogStatistics mergeSnapshots(List<String> snapshotPaths) throws IOException {
+        if (snapshotPaths.isEmpty()) {
+            throw new IllegalArgumentException("Не указано ни одного снимка статистики");
+        }
+        LogStatistics result = null;
+        Set<String> fileNames = new LinkedHashSet<>();
+        for (String snapshotPath : snapshotPaths) {
+            LogStatistics snapshot;
+            try (InputStream in = Files.newInputStream(Paths.get(snapshotPath))) {
+                snapshot = LogStatistics.readSnapshot(in);
+            } catch (IOException e) {
+                throw new IOException(snapshotPath + ": " + e.getMessage(), e);
+            }
+            String fileName = snapshot.getFileName() != null ? snapshot.getFileName() : snapshotPath;
+            fileNames.add(fileName);
+            if (snapshot.getFileTotals().isEmpty()) {
+                // Снимок одного файла: его итог становится строкой разбивки по входным файлам
+                snapshot.addFileTotal(fileName, snapshot.getTotalRequestsAsLong());
+            }
+            result = result == null ? snapshot : result.merge(snapshot);
+        }
+        result.setFileName(String.join(", ", fileNames));
+        return result;
+    }
+
+    private static LogStatistics analyzeInParallel(List<MappedLineReader> chunks, LogFormat format,
+            Predicate<LogRecord> filter, Supplier<LogStatistics> statistics, LogStatistics result)
+            throws IOException, InterruptedException {
+        try {
+            List<Callable<LogStatistics>> tasks = new ArrayList<>();
+            for (MappedLineReader chunk : chunks) {
+                tasks.add(() -> {
+                    try (chunk) {
+                        return analyze(chunk, format, filter, statistics.get());
+                    }
+                });
+            }
+            for (LogStatistics partial : runAll(tasks, chunks.size())) {
+                result.merge(partial);
+            }
+            return result;
+        } finally {
+            for (MappedLineReader chunk : chunks) {
+                chunk.close();
+            }
+        }
+    }
+
+    /**
+     * Выполняет задачи не более чем в {@code threads} потоках.
+     *
+     * @return результаты в порядке задач
+     */
+    private static List<LogStatistics> runAll(List<Callable<LogStatistics>> tasks, int threads)
+            throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(Math.min(threads, tasks.size()), 1));
+        try {
+            List<Future<LogStatistics>> futures = new ArrayList<>();
+            for (Callable<LogStatistics> task : tasks) {
+                futures.add(workers.submit(task));
+            }
+            List<LogStatistics> results = new ArrayList<>();
+            for (Future<LogStatistics> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("Ошибка в потоке анализа: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Обработка одного входного файла в {@link #analyzeFiles(List, int, FileAnalysis, Supplier)}.
+     */
+    @FunctionalInterface
+    public interface FileAnalysis {
+
+        /**
+         * Собирает статистику по одному файлу.
+         *
+         * @param filePath
+         *            путь к файлу или URL
+         * @param threads
+         *            сколько потоков можно занять внутри файла
+         *
+         * @return статистика файла
+         *
+         * @throws IOException
+         *             при ошибке чтения
+         * @throws InterruptedException
+         *             если ожидание рабочих потоков было прервано
+         */
+        LogStatistics analyze(String filePath, int threads) throws IOException, InterruptedException;
+    }
+}
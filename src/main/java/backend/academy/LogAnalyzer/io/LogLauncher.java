@@ -1,22 +1,29 @@
 package backend.academy.LogAnalyzer.io;
 
-import backend.academy.LogAnalyzer.core.LogFilter;
-import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.FilterExpression;
+import backend.academy.LogAnalyzer.core.GroupDimension;
+import backend.academy.LogAnalyzer.core.LineFilter;
+import backend.academy.LogAnalyzer.core.LogField;
+import backend.academy.LogAnalyzer.core.LogFormat;
 import backend.academy.LogAnalyzer.core.LogStatistics;
 import backend.academy.LogAnalyzer.report.ReportGenerator;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.URL;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Supplier;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.logging.log4j.LogManager;
@@ -33,6 +40,24 @@ public final class LogLauncher {
     private static final String OPTION_TO = "to";
     private static final String OPTION_FILTER_FIELD = "filter-field";
     private static final String OPTION_FILTER_VALUE = "filter-value";
+    private static final String OPTION_LOG_FORMAT = "log-format";
+    private static final String OPTION_THREADS = "threads";
+    private static final String OPTION_EXACT_PERCENTILES = "exact-percentiles";
+    private static final String OPTION_HEAVY_HITTERS = "heavy-hitters";
+    private static final String OPTION_TOP = "top";
+    private static final String OPTION_TIME_BUCKET = "time-bucket";
+    private static final String OPTION_GROUP_BY = "group-by";
+    private static final String OPTION_SNAPSHOT = "snapshot";
+    private static final String OPTION_WHERE = "where";
+    private static final String OPTION_SEEK = "seek";
+    private static final String OPTION_INDEX = "index";
+    private static final String OPTION_CACHE = "cache-dir";
+    private static final String OPTION_CACHE_SIZE = "cache-size";
+    private static final String DEFAULT_CACHE_SIZE = "1g";
+    private static final String MODE_MERGE = "merge";
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int BYTES_PER_KILOBYTE = 1024;
+    private static final int SECONDS_PER_HOUR = 3600;
 
     private static final String CLASS_NAME = "LogLauncher";
 
@@ -45,24 +70,27 @@ public final class LogLauncher {
 
         CommandLine cmd = parseCommandLine(args, options);
 
-        String filePath = cmd.getOptionValue(OPTION_FILE);
-        if (filePath == null) {
+        // Режим merge: позиционные аргументы после слова merge — файлы снимков
+        List<String> arguments = cmd.getArgList();
+        boolean mergeMode = !arguments.isEmpty() && MODE_MERGE.equals(arguments.get(0));
+
+        String[] filePaths = cmd.getOptionValues(OPTION_FILE);
+        if (filePaths == null && !mergeMode) {
             LOGGER.error("Путь к лог-файлу не указан. Используйте параметр -f или --file.");
             printHelpAndExit(options);
         }
 
         String reportType = cmd.getOptionValue(OPTION_REPORT, "markdown");
 
-        ZonedDateTime fromTime = getZonedDateTime(cmd, OPTION_FROM);
-        ZonedDateTime toTime = getZonedDateTime(cmd, OPTION_TO);
-
-        String filterField = cmd.getOptionValue(OPTION_FILTER_FIELD);
-        String filterValue = cmd.getOptionValue(OPTION_FILTER_VALUE);
-
         try {
-            LogStatistics stats = analyzeLogFile(filePath, fromTime, toTime, filterField, filterValue);
+            LogStatistics stats = mergeMode ? LogFileAnalyzer.mergeSnapshots(arguments.subList(1, arguments.size()))
+                    : analyze(cmd, List.of(filePaths));
+            if (cmd.hasOption(OPTION_SNAPSHOT)) {
+                LogFileAnalyzer.writeSnapshot(stats, cmd.getOptionValue(OPTION_SNAPSHOT));
+            }
 
-            String report = generateReport(reportType, stats);
+            int topLimit = Integer.parseInt(cmd.getOptionValue(OPTION_TOP, "0"));
+            String report = generateReport(reportType, stats.freeze(), topLimit);
 
             LOGGER.info(report);
 
@@ -72,14 +100,235 @@ public final class LogLauncher {
         }
     }
 
+    private static LogStatistics analyze(CommandLine cmd, List<String> filePaths)
+            throws IOException, InterruptedException {
+        ZonedDateTime fromTime = getZonedDateTime(cmd, OPTION_FROM);
+        ZonedDateTime toTime = getZonedDateTime(cmd, OPTION_TO);
+
+        // Выражения компилируются один раз; поля и значения разрешаются до чтения лога
+        FilterExpression fieldFilter = FilterExpression.forField(cmd.getOptionValue(OPTION_FILTER_FIELD),
+                cmd.getOptionValue(OPTION_FILTER_VALUE));
+        FilterExpression where = cmd.hasOption(OPTION_WHERE)
+                ? FilterExpression.compile(cmd.getOptionValue(OPTION_WHERE)) : FilterExpression.all();
+        LineFilter filter = LineFilter.of(fromTime, toTime, fieldFilter, where);
+
+        List<GroupDimension> groupBy = cmd.hasOption(OPTION_GROUP_BY)
+                ? GroupDimension.parseList(cmd.getOptionValue(OPTION_GROUP_BY)) : List.of();
+        LogFormat format = LogFormat.compile(cmd.getOptionValue(OPTION_LOG_FORMAT, LogFormat.COMBINED),
+                requiredFields(groupBy, filter));
+        // Несколько файлов по умолчанию читаются параллельно, по файлу на ядро
+        int defaultThreads = Math.min(filePaths.size(), Runtime.getRuntime().availableProcessors());
+        int threads = parseThreads(cmd.getOptionValue(OPTION_THREADS), defaultThreads);
+        boolean exactPercentiles = cmd.hasOption(OPTION_EXACT_PERCENTILES);
+        int topKCapacity = Integer.parseInt(cmd.getOptionValue(OPTION_HEAVY_HITTERS, "0"));
+        int bucketSeconds = parseBucketSeconds(cmd.getOptionValue(OPTION_TIME_BUCKET));
+        Supplier<LogStatistics> statistics = () -> {
+            LogStatistics partial = new LogStatistics();
+            partial.setExactPercentiles(exactPercentiles);
+            partial.setHeavyHitterCapacity(topKCapacity);
+            partial.setTimeBucketSeconds(bucketSeconds);
+            partial.setGroupBy(groupBy);
+            return partial;
+        };
+        List<String> files = LogReader.expandPaths(filePaths);
+        if (files.size() > 1) {
+            LOGGER.info("Входные файлы ({}): {}", files.size(), String.join(", ", files));
+        }
+        HttpCache cache = cmd.hasOption(OPTION_CACHE) ? new HttpCache(Paths.get(cmd.getOptionValue(OPTION_CACHE)),
+                parseBytes(cmd.getOptionValue(OPTION_CACHE_SIZE, DEFAULT_CACHE_SIZE))) : null;
+        return LogFileAnalyzer.analyzeFiles(files, threads,
+                (filePath, fileThreads) -> analyzeFile(cmd, filePath, format, filter, fileThreads, statistics, cache),
+                statistics);
+    }
+
+    /**
+     * Собирает статистику по одному входному файлу. URL при включенном кэше читается из его локальной копии, как
+     * обычный файл; копия занята в кэше, пока идет анализ.
+     */
+    private static LogStatistics analyzeFile(CommandLine cmd, String filePath, LogFormat format, LineFilter filter,
+            int threads, Supplier<LogStatistics> statistics, HttpCache cache) throws IOException, InterruptedException {
+        if (cache == null || !LogReader.isHttpUrl(filePath)) {
+            return analyzeSource(cmd, filePath, filePath, format, filter, threads, statistics);
+        }
+        URI uri = URI.create(filePath);
+        Path copy = cache.fetch(uri);
+        try {
+            return analyzeSource(cmd, filePath, copy.toString(), format, filter, threads, statistics);
+        } finally {
+            cache.release(uri);
+        }
+    }
+
+    /**
+     * Собирает статистику по файлу или URL, читая по индексу или поиском по времени только интервал
+     * {@code --from}/{@code --to}, если это включено и возможно.
+     *
+     * @param filePath
+     *            входной файл, как он указан в {@code --file}; попадает в отчет
+     * @param source
+     *            то, что читается: сам файл или копия URL в кэше
+     */
+    private static LogStatistics analyzeSource(CommandLine cmd, String filePath, String source, LogFormat format,
+            LineFilter filter, int threads, Supplier<LogStatistics> statistics)
+            throws IOException, InterruptedException {
+        ZonedDateTime fromTime = getZonedDateTime(cmd, OPTION_FROM);
+        ZonedDateTime toTime = getZonedDateTime(cmd, OPTION_TO);
+        // Сжатый файл нельзя читать с произвольного смещения: индекс и поиск по времени к нему не применяются
+        boolean local = !LogReader.isHttpUrl(source) && !LogReader.isGzip(Paths.get(source));
+        boolean interval = fromTime != null || toTime != null;
+        ByteRange range = null;
+        if (local && cmd.hasOption(OPTION_INDEX)) {
+            // Индекс строится при первом чтении файла и переиспользуется, пока файл не изменится
+            TimeIndex index = openIndex(Paths.get(source), format);
+            range = interval ? index.findRange(fromTime, toTime) : null;
+        } else if (local && interval && cmd.hasOption(OPTION_SEEK)) {
+            // Упорядоченный по времени файл: границы интервала ищутся двоичным поиском
+            range = TimeSeeker.findRange(Paths.get(source), format, fromTime, toTime,
+                    Duration.ofSeconds(parseSeconds(cmd.getOptionValue(OPTION_SEEK))));
+        }
+        LogStatistics result;
+        if (range != null) {
+            LOGGER.info("Интервал времени найден в байтах [{}, {}) файла {}", range.getStart(), range.getEnd(),
+                    filePath);
+            result = LogFileAnalyzer.analyze(Paths.get(source), range.getStart(), range.getEnd(), format, filter,
+                    threads, statistics);
+        } else {
+            result = LogFileAnalyzer.analyze(source, format, filter, threads, statistics);
+        }
+        // В отчете остается URL, а не путь к копии в кэше
+        result.setFileName(filePath);
+        return result;
+    }
+
+    /**
+     * Читает индекс времени файла или, если его нет или он устарел, строит и сохраняет новый. Индекс, который не
+     * удалось сохранить (например, каталог только для чтения), используется для текущего запуска.
+     */
+    private static TimeIndex openIndex(Path path, LogFormat format) throws IOException {
+        TimeIndex index = TimeIndex.load(path, format);
+        if (index != null) {
+            return index;
+        }
+        LOGGER.info("Индекс времени {} отсутствует или устарел, строится заново", TimeIndex.indexPath(path));
+        index = TimeIndex.build(path, format);
+        try {
+            index.save();
+        } catch (IOException e) {
+            LOGGER.warn("Не удалось сохранить индекс времени {}: {}", TimeIndex.indexPath(path), e.getMessage());
+        }
+        return index;
+    }
+
+    /**
+     * Разбирает число рабочих потоков.
+     *
+     * @return число потоков или значение по умолчанию, если параметр не указан
+     */
+    private static int parseThreads(String value, int defaultThreads) {
+        if (value == null) {
+            return defaultThreads;
+        }
+        int threads = Integer.parseInt(value.strip());
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + value);
+        }
+        return threads;
+    }
+
+    /**
+     * Разбирает ширину корзины временного ряда: число с суффиксом {@code s}, {@code m} или {@code h} (10s, 1m, 5m, 1h);
+     * число без суффикса — секунды.
+     *
+     * @return ширина в секундах или 0, если параметр не указан
+     */
+    private static int parseBucketSeconds(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int seconds = parseSeconds(value);
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Ширина корзины должна быть положительной: " + value);
+        }
+        return seconds;
+    }
+
+    /**
+     * Разбирает длительность: число с суффиксом {@code s}, {@code m} или {@code h}; число без суффикса — секунды.
+     *
+     * @return длительность в секундах
+     */
+    private static int parseSeconds(String value) {
+        String trimmed = value.strip().toLowerCase(Locale.ROOT);
+        int multiplier = switch (trimmed.isEmpty() ? ' ' : trimmed.charAt(trimmed.length() - 1)) {
+        case 's' -> 1;
+        case 'm' -> SECONDS_PER_MINUTE;
+        case 'h' -> SECONDS_PER_HOUR;
+        default -> 0;
+        };
+        String number = multiplier == 0 ? trimmed : trimmed.substring(0, trimmed.length() - 1);
+        int seconds = Integer.parseInt(number) * Math.max(multiplier, 1);
+        if (seconds < 0) {
+            throw new IllegalArgumentException("Длительность не может быть отрицательной: " + value);
+        }
+        return seconds;
+    }
+
+    /**
+     * Разбирает размер: число с суффиксом {@code k}, {@code m} или {@code g} (кибибайты, мебибайты, гибибайты); число
+     * без суффикса — байты.
+     *
+     * @return размер в байтах
+     */
+    private static long parseBytes(String value) {
+        String trimmed = value.strip().toLowerCase(Locale.ROOT);
+        int power = "kmg".indexOf(trimmed.isEmpty() ? ' ' : trimmed.charAt(trimmed.length() - 1)) + 1;
+        String number = power == 0 ? trimmed : trimmed.substring(0, trimmed.length() - 1);
+        long bytes = Long.parseLong(number);
+        for (int i = 0; i < power; i++) {
+            bytes = Math.multiplyExact(bytes, BYTES_PER_KILOBYTE);
+        }
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Размер не может быть отрицательным: " + value);
+        }
+        return bytes;
+    }
+
     private static Options createOptions() {
         Options options = new Options();
-        options.addOption("f", OPTION_FILE, true, "Путь к лог-файлу или URL");
+        options.addOption(Option.builder("f").longOpt(OPTION_FILE).hasArgs()
+                .desc("Пути к лог-файлам, шаблоны имен (access.log*) или URL; файлы gzip распаковываются на лету")
+                .build());
         options.addOption("r", OPTION_REPORT, true, "Тип отчета (markdown или asciidoc)");
         options.addOption(OPTION_FROM, true, "Начальное время в формате ISO8601 (необязательно)");
         options.addOption(OPTION_TO, true, "Конечное время в формате ISO8601 (необязательно)");
         options.addOption(null, OPTION_FILTER_FIELD, true, "Поле для фильтрации (например, method, agent)");
         options.addOption(null, OPTION_FILTER_VALUE, true, "Значение для фильтрации");
+        options.addOption(null, OPTION_LOG_FORMAT, true,
+                "Формат строк лога в синтаксисе NGINX log_format (по умолчанию combined)");
+        options.addOption(null, OPTION_THREADS, true, "Число потоков анализа: части одного локального файла или "
+                + "несколько файлов одновременно (по умолчанию — число файлов, но не больше числа ядер)");
+        options.addOption(null, OPTION_EXACT_PERCENTILES, false,
+                "Считать перцентили размера ответа точно (память растет с числом различных размеров)");
+        options.addOption(null, OPTION_HEAVY_HITTERS, true,
+                "Считать ресурсы и IP-адреса приближенно, храня не больше указанного числа счетчиков");
+        options.addOption(null, OPTION_TIME_BUCKET, true,
+                "Добавить в отчет временной ряд с корзинами указанной ширины (10s, 1m, 5m, 1h)");
+        options.addOption(null, OPTION_TOP, true,
+                "Число самых частых ресурсов и IP-адресов в отчете (по умолчанию все ресурсы и 10 адресов)");
+        options.addOption(null, OPTION_GROUP_BY, true, "Сгруппировать запросы по сочетаниям измерений через запятую "
+                + "(status, method, resource, hour, ip, host, agent)");
+        options.addOption(null, OPTION_WHERE, true,
+                "Выражение фильтра, например \"status >= 500 and method in (GET, HEAD) and not agent ~ 'bot'\"");
+        options.addOption(null, OPTION_SEEK, true, "Файл упорядочен по времени: найти интервал --from/--to двоичным "
+                + "поиском и читать только его; значение — допуск нарушения порядка (0, 30s, 5m)");
+        options.addOption(null, OPTION_INDEX, false, "Вести индекс времени <файл>.idx: построить при первом чтении и "
+                + "читать по нему только интервал --from/--to; устаревший индекс строится заново");
+        options.addOption(null, OPTION_CACHE, true, "Каталог кэша URL: повторный запуск проверяет лог условным "
+                + "запросом и загружает только дописанный хвост");
+        options.addOption(null, OPTION_CACHE_SIZE, true,
+                "Наибольший размер кэша URL (например, 500m или 2g; по умолчанию " + DEFAULT_CACHE_SIZE + ")");
+        options.addOption(null, OPTION_SNAPSHOT, true,
+                "Записать двоичный снимок статистики в файл; снимки объединяются командой merge файл...");
         return options;
     }
 
@@ -103,31 +352,22 @@ public final class LogLauncher {
         return cmd.hasOption(option) ? ZonedDateTime.parse(cmd.getOptionValue(option), ISO_FORMATTER) : null;
     }
 
-    private static String generateReport(String reportType, LogStatistics stats) {
-        return "asciidoc".equalsIgnoreCase(reportType) ? ReportGenerator.generateAsciidocReport(stats)
-                : ReportGenerator.generateMarkdownReport(stats);
+    private static String generateReport(String reportType, LogStatistics stats, int topLimit) {
+        return "asciidoc".equalsIgnoreCase(reportType) ? ReportGenerator.generateAsciidocReport(stats, topLimit)
+                : ReportGenerator.generateMarkdownReport(stats, topLimit);
     }
 
-    private static LogStatistics analyzeLogFile(String filePath, ZonedDateTime fromTime, ZonedDateTime toTime,
-            String filterField, String filterValue) throws Exception {
-        LogStatistics stats = new LogStatistics(filePath);
-
-        try (Stream<String> lines = (filePath.startsWith("http"))
-                ? new BufferedReader(new InputStreamReader(new URL(filePath).openStream())).lines()
-                : Files.lines(Paths.get(filePath))) {
-
-            lines.map(LogParser::parseLine).flatMap(Optional::stream) // Получаем только успешные парсинги
-                    .filter(entry -> LogFilter.filterByTime(entry, fromTime, toTime))
-                    .filter(entry -> LogFilter.filterByField(entry, filterField, filterValue))
-                    .forEach(stats::updateStatistics);
-        }
-
-        return stats;
+    // Разбираются только поля, которые прочитают статистика, фильтры и группировка
+    private static Set<LogField> requiredFields(List<GroupDimension> groupBy, LineFilter filter) {
+        Set<LogField> fields = EnumSet.copyOf(LogStatistics.REQUIRED_FIELDS);
+        fields.addAll(filter.getRequiredFields());
+        groupBy.forEach(dimension -> fields.add(dimension.getField()));
+        return fields;
     }
 
     private static void logRequestMethods(LogStatistics stats) {
         LOGGER.info("## Request Methods\n");
-        stats.getMethodCounts().forEach((method, count) -> {
+        stats.getMethodCountsAsLong().forEach((method, count) -> {
             LOGGER.info("| {} | {} |", method, count);
         });
     }
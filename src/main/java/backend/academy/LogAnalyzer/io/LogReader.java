@@ -1,37 +1,205 @@
 package backend.academy.LogAnalyzer.io;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 public final class LogReader {
 
-    private static final int MAX_RETRIES = 3;
+    private static final String GLOB_CHARACTERS = "*?[{";
+    // Сигнатура gzip (RFC 1952): 1f 8b
+    private static final int GZIP_MAGIC_FIRST = 0x1F;
+    private static final int GZIP_MAGIC_SECOND = 0x8B;
+    private static final int GZIP_MAGIC_BYTES = 2;
+    private static final int GZIP_BUFFER = 64 * 1024;
 
     private LogReader() {
         throw new UnsupportedOperationException("Utility class");
     }
 
     public static Stream<String> readLogs(String path) throws IOException {
-        if (isValidURL(path)) {
-            return readFromUrlWithRetries(path, MAX_RETRIES).stream();
+        if (isHttpUrl(path)) {
+            return openUrl(path).lines();
         } else {
             Path filePath = getPath(path);
             if (!Files.exists(filePath)) {
                 throw new IOException("File does not exist: " + path);
             }
-            return Files.lines(filePath);
+            // Строки читаются из байтов напрямую, некорректный UTF-8 заменяется, а не прерывает чтение
+            return openLines(filePath).lines();
         }
     }
 
+    /**
+     * Открывает HTTP(S)-источник для построчного чтения. Тело ответа читается потоком, как локальный файл: в памяти
+     * держатся только буферы, а обрыв соединения продолжается запросом диапазона с первого непрочитанного байта
+     * ({@link ResumableHttpStream}). Ответ в формате gzip распаковывается.
+     *
+     * @param url
+     *            адрес лога
+     *
+     * @return источник строк ответа
+     *
+     * @throws IOException
+     *             если ответ не удалось получить
+     */
+    public static ByteLineReader openUrl(String url) throws IOException {
+        InputStream in;
+        try {
+            in = ResumableHttpStream.open(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Неверный URL: " + url, e);
+        }
+        try {
+            return new ByteLineReader(Channels.newChannel(decompressed(in)));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Раскрывает шаблоны имен файлов. Шаблон в синтаксисе glob ({@code *}, {@code ?}, {@code [...]}, {@code {...}})
+     * допускается только в имени файла, не в каталогах: {@code /var/log/nginx/access.log*}. Совпавшие файлы идут по
+     * алфавиту, файлы индекса времени ({@link TimeIndex}) пропускаются. URL и пути без шаблона не меняются, повторы
+     * убираются.
+     *
+     * @param paths
+     *            пути, шаблоны и URL
+     *
+     * @return пути к файлам и URL в порядке перечисления
+     *
+     * @throws IOException
+     *             если каталог не читается или шаблону не соответствует ни один файл
+     * @throws IllegalArgumentException
+     *             если шаблон стоит в имени каталога
+     */
+    public static List<String> expandPaths(List<String> paths) throws IOException {
+        Set<String> files = new LinkedHashSet<>();
+        for (String path : paths) {
+            if (isValidURL(path) || !isGlob(path)) {
+                files.add(path);
+                continue;
+            }
+            Path pattern = Paths.get(path);
+            Path directory = pattern.getParent();
+            if (directory != null && isGlob(directory.toString())) {
+                throw new IllegalArgumentException("Шаблон допускается только в имени файла: " + path);
+            }
+            List<String> matches = new ArrayList<>();
+            Path searched = directory == null ? Paths.get(".") : directory;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(searched, pattern.getFileName().toString())) {
+                for (Path entry : entries) {
+                    if (Files.isRegularFile(entry) && !TimeIndex.isIndexFile(entry)) {
+                        Path name = entry.getFileName();
+                        matches.add((directory == null ? name : directory.resolve(name)).toString());
+                    }
+                }
+            }
+            if (matches.isEmpty()) {
+                throw new IOException("Нет файлов по шаблону: " + path);
+            }
+            Collections.sort(matches);
+            files.addAll(matches);
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static boolean isGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(path.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Открывает локальный файл для построчного чтения. Файл в формате gzip (например, ротированный
+     * {@code access.log.1.gz}) распознается по сигнатуре, а не по расширению, и распаковывается потоком: в памяти
+     * держатся только буферы распаковки и строк.
+     *
+     * @param path
+     *            путь к файлу
+     *
+     * @return источник строк файла
+     *
+     * @throws IOException
+     *             если файл не удалось открыть
+     */
+    public static ByteLineReader openLines(Path path) throws IOException {
+        if (!isGzip(path)) {
+            return ByteLineReader.open(path);
+        }
+        InputStream in = Files.newInputStream(path);
+        try {
+            return new ByteLineReader(Channels.newChannel(new GZIPInputStream(in, GZIP_BUFFER)));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Сжат ли файл gzip: проверяются первые два байта.
+     *
+     * @throws IOException
+     *             если файл не удалось прочитать
+     */
+    public static boolean isGzip(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(GZIP_MAGIC_BYTES);
+            int read = 0;
+            while (magic.hasRemaining() && read >= 0) {
+                read = channel.read(magic);
+            }
+            return magic.position() == GZIP_MAGIC_BYTES && isGzipMagic(magic.get(0), magic.get(1));
+        }
+    }
+
+    /**
+     * Оборачивает поток распаковкой, если он начинается с сигнатуры gzip; иначе возвращает поток без изменений.
+     *
+     * @param in
+     *            исходный поток, например ответ сервера
+     *
+     * @return поток несжатых байтов
+     *
+     * @throws IOException
+     *             если поток не удалось прочитать или заголовок gzip поврежден
+     */
+    public static InputStream decompressed(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, GZIP_BUFFER);
+        buffered.mark(GZIP_MAGIC_BYTES);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        return isGzipMagic((byte) first, (byte) second) ? new GZIPInputStream(buffered, GZIP_BUFFER) : buffered;
+    }
+
+    private static boolean isGzipMagic(byte first, byte second) {
+        return Byte.toUnsignedInt(first) == GZIP_MAGIC_FIRST && Byte.toUnsignedInt(second) == GZIP_MAGIC_SECOND;
+    }
+
     private static boolean isValidURL(String path) {
         try {
             URL url = new URL(path);
@@ -42,21 +210,12 @@ public final class LogReader {
         }
     }
 
-    private static List<String> readFromUrlWithRetries(String path, int maxRetries) throws IOException {
-        int attempt = 0;
-
-        while (attempt < maxRetries) {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new URL(path).openStream()))) {
-                return reader.lines().collect(Collectors.toList());
-            } catch (IOException e) {
-                attempt++;
-                System.err.println("Failed to read from URL: " + path + ". Attempt " + attempt + " of " + maxRetries);
-                if (attempt >= maxRetries) {
-                    throw new IOException("Exceeded maximum retry attempts to read from URL: " + path, e);
-                }
-            }
-        }
-        throw new IOException("Failed to read from URL after " + maxRetries + " attempts");
+    /**
+     * Является ли путь адресом HTTP(S).
+     */
+    public static boolean isHttpUrl(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.startsWith("http://") || lower.startsWith("https://");
     }
 
     // Метод для корректного получения пути, поддерживающий как URL, так и локальные файлы
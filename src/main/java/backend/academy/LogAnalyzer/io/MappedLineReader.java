@@ -0,0 +1,255 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Построчное чтение диапазона локального файла через отображение в память.
+ *
+ * <p>
+ * Файл разбивается методом {@link #split(Path, int)} на диапазоны, границы которых выровнены по переводам строки, и
+ * каждый диапазон читается независимым источником строк — их можно обрабатывать параллельно. Диапазон отображается
+ * целиком одним {@link MemorySegment}, который освобождается при закрытии источника, а не сборщиком мусора. Строки
+ * сканируются и декодируются через окна — представления {@link ByteBuffer} над сегментом размером до 2 ГБ: окно
+ * сдвигается к началу строки, которая в него не поместилась, без повторного отображения файла.
+ */
+public final class MappedLineReader implements LineSource {
+    private static final int DEFAULT_WINDOW = 256 * 1024 * 1024;
+    private static final int BOUNDARY_PROBE = 8 * 1024;
+    // Наибольший сегмент, который можно представить как ByteBuffer
+    private static final int MAX_WINDOW = Integer.MAX_VALUE - 8;
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long start;
+    private final long end;
+    private final LineDecoder decoder;
+    private int windowSize;
+    private long windowStart;
+    private ByteBuffer window;
+    // Непрочитанные байты окна начинаются с position, байты [position, scanned) уже проверены на конец строки
+    private int position;
+    private int scanned;
+    private boolean skipLineFeed;
+    private long lineOffset;
+    private boolean closed;
+
+    /**
+     * Открывает весь файл.
+     */
+    public static MappedLineReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedLineReader(path, 0, channel.size(), DEFAULT_WINDOW);
+        }
+    }
+
+    /**
+     * Открывает диапазон файла {@code [from, to)} с окном отображения по умолчанию.
+     */
+    public static MappedLineReader open(Path path, long from, long to) throws IOException {
+        return new MappedLineReader(path, from, to, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Открывает диапазон файла {@code [from, to)}.
+     *
+     * @param path
+     *            путь к файлу
+     * @param from
+     *            начало диапазона; должно быть началом строки
+     * @param to
+     *            конец диапазона; должен быть концом строки или файла
+     * @param windowSize
+     *            размер окна отображения в байтах
+     *
+     * @throws IOException
+     *             если файл не удалось открыть или отобразить
+     */
+    public MappedLineReader(Path path, long from, long to, int windowSize) throws IOException {
+        // Общая арена: источник создается в одном потоке, а читается в рабочем
+        this.arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        this.start = from;
+        this.end = to;
+        this.windowSize = Math.clamp(windowSize, 1, MAX_WINDOW);
+        this.windowStart = from;
+        this.decoder = new LineDecoder(BOUNDARY_PROBE);
+        slide(from);
+    }
+
+    /**
+     * Делит файл на диапазоны, выровненные по переводам строки.
+     *
+     * @param path
+     *            путь к файлу
+     * @param parts
+     *            желаемое число диапазонов; для маленьких файлов их может получиться меньше
+     *
+     * @return независимые источники строк, вместе покрывающие файл ровно один раз
+     *
+     * @throws IOException
+     *             если файл не удалось прочитать
+     */
+    public static List<MappedLineReader> split(Path path, int parts) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return split(path, 0, channel.size(), parts);
+        }
+    }
+
+    /**
+     * Делит диапазон файла {@code [from, to)} на диапазоны, выровненные по переводам строки.
+     *
+     * @param path
+     *            путь к файлу
+     * @param from
+     *            начало диапазона; должно быть началом строки
+     * @param to
+     *            конец диапазона; должен быть концом строки или файла
+     * @param parts
+     *            желаемое число диапазонов
+     *
+     * @return независимые источники строк, вместе покрывающие диапазон ровно один раз
+     *
+     * @throws IOException
+     *             если файл не удалось прочитать
+     */
+    public static List<MappedLineReader> split(Path path, long from, long to, int parts) throws IOException {
+        List<MappedLineReader> readers = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = to - from;
+            long start = from;
+            for (int i = 1; i <= parts && start < to; i++) {
+                long boundary = i == parts ? to : Math.min(lineStartAfter(channel, from + length * i / parts, to), to);
+                if (boundary > start) {
+                    readers.add(new MappedLineReader(path, start, boundary, DEFAULT_WINDOW));
+                    start = boundary;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (MappedLineReader reader : readers) {
+                reader.close();
+            }
+            throw e;
+        }
+        return readers;
+    }
+
+    @Override
+    public boolean nextLine() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            if (skipLineFeed && position < limit) {
+                skipLineFeed = false;
+                if (window.get(position) == '\n') {
+                    position++;
+                    scanned = Math.max(scanned, position);
+                }
+            }
+            for (int i = scanned; i < limit; i++) {
+                byte b = window.get(i);
+                if (b == '\n' || b == '\r') {
+                    lineOffset = windowStart + position;
+                    decoder.decode(window, position, i);
+                    position = i + 1;
+                    scanned = position;
+                    skipLineFeed = b == '\r';
+                    return true;
+                }
+            }
+            scanned = limit;
+            if (windowStart + limit >= end) {
+                if (position == limit) {
+                    return false;
+                }
+                lineOffset = windowStart + position;
+                decoder.decode(window, position, limit);
+                position = limit;
+                return true;
+            }
+            if (position == 0) {
+                if (windowSize == MAX_WINDOW) {
+                    throw new IOException("Строка длиннее 2 ГБ со смещения " + windowStart);
+                }
+                // Строка длиннее окна: окно увеличивается, пока строка не поместится
+                windowSize = (int) Math.min(MAX_WINDOW, windowSize * 2L);
+            }
+            slide(windowStart + position);
+        }
+    }
+
+    @Override
+    public char[] buffer() {
+        return decoder.chars();
+    }
+
+    @Override
+    public int lineStart() {
+        return 0;
+    }
+
+    @Override
+    public int lineEnd() {
+        return decoder.length();
+    }
+
+    /**
+     * Смещение в файле, с которого начинается текущая строка.
+     */
+    public long lineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Снимает отображение файла. После закрытия строки источника читать нельзя; повторное закрытие ничего не делает.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            arena.close();
+        }
+    }
+
+    private void slide(long offset) {
+        int consumed = (int) (offset - windowStart);
+        scanned = Math.max(scanned - consumed, 0);
+        position = 0;
+        windowStart = offset;
+        window = segment.asSlice(offset - start, Math.min(windowSize, end - offset)).asByteBuffer();
+    }
+
+    // Начало первой строки, которая начинается не раньше offset
+    static long lineStartAfter(FileChannel channel, long offset, long size) throws IOException {
+        if (offset <= 0) {
+            return 0;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE);
+        long pos = offset - 1;
+        while (pos < size) {
+            probe.clear();
+            int read = channel.read(probe, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+}
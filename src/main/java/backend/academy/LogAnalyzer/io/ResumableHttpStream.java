@@ -0,0 +1,324 @@
+package backend.academy.LogAnalyzer.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Поток тела HTTP-ответа, который переживает обрывы соединения.
+ *
+ * <p>
+ * Байты отдаются читателю по мере получения, без накопления в памяти. Поток помнит, сколько байтов уже отдано, и при
+ * ошибке чтения или соединения переоткрывает ответ запросом с заголовком {@code Range: bytes=<отдано>-}, выдерживая
+ * экспоненциально растущую паузу. Чтобы не склеить части разных версий файла, к запросу добавляется {@code If-Range} с
+ * {@code ETag} или {@code Last-Modified} первого ответа: изменившийся файл сервер отдает целиком с другим валидатором,
+ * и чтение завершается ошибкой. Сервер, который не поддерживает диапазоны и отдает тот же файл целиком, тоже годится:
+ * уже прочитанное начало пропускается.
+ *
+ * <p>
+ * Зависшее соединение тоже считается обрывом: если очередное чтение не получает данных дольше тайм-аута, тело ответа
+ * закрывается и запрашивается заново.
+ *
+ * <p>
+ * Все потоки используют один {@link HttpClient}, поэтому несколько URL можно читать одновременно из разных потоков. Сам
+ * экземпляр потока не потокобезопасен.
+ */
+public final class ResumableHttpStream extends InputStream {
+    private static final Logger LOGGER = LogManager.getLogger(ResumableHttpStream.class);
+
+    private static final int CONNECT_TIMEOUT_SECONDS = 10;
+    static final HttpClient CLIENT = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS)).build();
+    private static final int DEFAULT_RETRIES = 5;
+    private static final Duration DEFAULT_BACKOFF = Duration.ofMillis(500);
+    private static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    // Закрывает тела ответов, чтение которых зависло; поток-демон не мешает завершению программы
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+
+    private final HttpClient client;
+    private final URI uri;
+    private final Duration backoff;
+    private final int maxRetries;
+    private final Duration readTimeout;
+    private InputStream body;
+    // Выставляется сторожем, когда он закрыл зависшее тело ответа
+    private volatile boolean stalled;
+    // Сколько байтов тела отдано читателю: с этого смещения продолжается чтение после обрыва
+    private long position;
+    private long length = -1;
+    private String entityTag;
+    private String lastModified;
+    // Ошибки подряд, после которых не было прочитано ни одного байта
+    private int failures;
+    private boolean finished;
+
+    /**
+     * Открывает поток.
+     *
+     * @param client
+     *            клиент HTTP
+     * @param uri
+     *            адрес ресурса
+     * @param backoff
+     *            пауза перед первой повторной попыткой; каждая следующая вдвое длиннее, но не больше 30 секунд
+     * @param maxRetries
+     *            сколько раз подряд можно переоткрыть соединение, не получив ни одного нового байта
+     * @param readTimeout
+     *            сколько можно ждать заголовков ответа или очередной порции тела
+     *
+     * @throws IOException
+     *             если ответ не удалось получить за все попытки или сервер ответил ошибкой клиента (4xx)
+     */
+    public ResumableHttpStream(HttpClient client, URI uri, Duration backoff, int maxRetries, Duration readTimeout)
+            throws IOException {
+        this.client = client;
+        this.uri = uri;
+        this.backoff = backoff;
+        this.maxRetries = maxRetries;
+        this.readTimeout = readTimeout;
+        try {
+            connect();
+        } catch (FatalHttpException e) {
+            throw e;
+        } catch (IOException e) {
+            reconnect(e);
+        }
+    }
+
+    /**
+     * Открывает поток общим клиентом с настройками повторов по умолчанию.
+     */
+    public static ResumableHttpStream open(URI uri) throws IOException {
+        return open(CLIENT, uri);
+    }
+
+    /**
+     * Открывает поток переданным клиентом с настройками повторов по умолчанию.
+     */
+    public static ResumableHttpStream open(HttpClient client, URI uri) throws IOException {
+        return new ResumableHttpStream(client, uri, DEFAULT_BACKOFF, DEFAULT_RETRIES, DEFAULT_READ_TIMEOUT);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : Byte.toUnsignedInt(single[0]);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        while (!finished) {
+            try {
+                int read = readBody(buffer, offset, count);
+                if (read < 0 && length >= 0 && position < length) {
+                    throw new EOFException("Соединение закрыто на байте " + position + " из " + length);
+                }
+                if (read < 0) {
+                    finished = true;
+                } else {
+                    position += read;
+                    failures = read > 0 ? 0 : failures;
+                    return read;
+                }
+            } catch (IOException e) {
+                body.close();
+                reconnect(e);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        body.close();
+    }
+
+    /**
+     * Читает тело ответа под присмотром сторожа: если данных нет дольше тайм-аута, сторож закрывает тело, и
+     * заблокированное чтение возвращается.
+     */
+    private int readBody(byte[] buffer, int offset, int count) throws IOException {
+        InputStream current = body;
+        ScheduledFuture<?> alarm = WATCHDOG.schedule(() -> {
+            stalled = true;
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.debug("Не удалось закрыть зависший ответ {}", uri, e);
+            }
+        }, readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        int read;
+        try {
+            read = current.read(buffer, offset, count);
+        } finally {
+            alarm.cancel(false);
+        }
+        if (stalled) {
+            throw new HttpTimeoutException("Нет данных дольше " + readTimeout.toMillis() + " мс");
+        }
+        return read;
+    }
+
+    /**
+     * Сколько байтов тела уже отдано читателю.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Значение {@code ETag} первого ответа или {@code null}, если сервер его не прислал.
+     */
+    public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * Значение {@code Last-Modified} первого ответа или {@code null}, если сервер его не прислал.
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Переоткрывает ответ с текущего смещения, выдерживая паузы между попытками.
+     */
+    private void reconnect(IOException cause) throws IOException {
+        IOException last = cause;
+        while (true) {
+            failures++;
+            if (failures > maxRetries) {
+                throw new IOException("Не удалось дочитать " + uri + " с байта " + position + " за " + maxRetries
+                        + " попыток: " + last.getMessage(), last);
+            }
+            long delay = Math.min(backoff.toMillis() << Math.min(failures - 1, Long.SIZE - 2), MAX_BACKOFF.toMillis());
+            LOGGER.warn("Ошибка чтения {} на байте {}: {}. Повтор через {} мс", uri, position, last.getMessage(),
+                    delay);
+            try {
+                Thread.sleep(delay);
+                connect();
+                return;
+            } catch (InterruptedException e) {
+                throw interrupted();
+            } catch (FatalHttpException e) {
+                throw e;
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+    }
+
+    private void connect() throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(readTimeout).GET();
+        if (position > 0) {
+            request.header("Range", "bytes=" + position + "-");
+            String validator = entityTag != null ? entityTag : lastModified;
+            if (validator != null) {
+                request.header("If-Range", validator);
+            }
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            throw interrupted();
+        }
+        body = response.body();
+        stalled = false;
+        int status = response.statusCode();
+        if (status == HTTP_RANGE_NOT_SATISFIABLE && position > 0) {
+            // Обрыв пришелся ровно на конец тела: продолжать нечего
+            body.close();
+            finished = true;
+        } else if (status == HTTP_PARTIAL_CONTENT && position > 0) {
+            checkContentRange(response);
+        } else if (status == HTTP_OK) {
+            acceptFullBody(response);
+        } else {
+            body.close();
+            String message = "HTTP " + status + " при чтении " + uri;
+            throw status == HTTP_TOO_MANY_REQUESTS || status >= HTTP_SERVER_ERROR ? new IOException(message)
+                    : new FatalHttpException(message);
+        }
+    }
+
+    /**
+     * Принимает ответ 200: при первом запросе запоминает валидаторы и длину, при продолжении пропускает уже отданное
+     * начало, если файл на сервере не изменился.
+     */
+    private void acceptFullBody(HttpResponse<InputStream> response) throws IOException {
+        Optional<String> tag = response.headers().firstValue("ETag");
+        Optional<String> modified = response.headers().firstValue("Last-Modified");
+        if (position == 0) {
+            entityTag = tag.orElse(null);
+            lastModified = modified.orElse(null);
+            length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            return;
+        }
+        boolean changed = entityTag != null ? !tag.orElse("").equals(entityTag)
+                : lastModified != null && !modified.orElse("").equals(lastModified);
+        if (changed) {
+            body.close();
+            throw new FatalHttpException("Файл " + uri + " изменился на сервере во время чтения");
+        }
+        LOGGER.warn("Сервер {} не поддерживает диапазоны: пропускается {} уже прочитанных байтов", uri, position);
+        body.skipNBytes(position);
+    }
+
+    private void checkContentRange(HttpResponse<InputStream> response) throws IOException {
+        String range = response.headers().firstValue("Content-Range").orElse("");
+        if (!range.startsWith("bytes " + position + "-")) {
+            body.close();
+            throw new FatalHttpException("Сервер вернул не тот диапазон " + uri + ": " + range);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = Executors.defaultThreadFactory().newThread(task);
+            thread.setDaemon(true);
+            thread.setName("http-read-watchdog");
+            return thread;
+        });
+        // Отмененные сроки удаляются сразу: на каждое чтение ставится свой
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+
+    private InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Чтение " + uri + " прервано");
+    }
+
+    /**
+     * Ошибка, которую повтор не исправит: ответ 4xx или изменившийся файл.
+     */
+    private static final class FatalHttpException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FatalHttpException(String message) {
+            super(message);
+        }
+    }
+}
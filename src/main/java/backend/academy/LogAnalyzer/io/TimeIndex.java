@@ -0,0 +1,278 @@
+package backend.academy.LogAnalyzer.io;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogRecordCursor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Разреженный индекс времени лог-файла, хранящийся рядом с ним в файле {@code <имя>.idx}.
+ *
+ * <p>
+ * Файл делится на блоки по {@value #BLOCK_LINES} строк; для каждого блока запоминается смещение его первой строки и
+ * наименьшее и наибольшее время разобранных строк. Интервал {@code --from} / {@code --to} превращается в диапазон
+ * байтов от первого до последнего блока, время которого пересекается с интервалом, поэтому повторные запросы к тому же
+ * файлу читают только этот диапазон. В отличие от {@link TimeSeeker}, порядок строк не требуется: блок с опоздавшей
+ * строкой просто расширяет диапазон.
+ *
+ * <p>
+ * Индекс действителен только для того файла, по которому построен: в заголовке хранятся размер файла, время его
+ * изменения, контрольная сумма первых {@value #HEAD_BYTES} байтов и формат строк. Если что-то из этого не совпадает или
+ * индекс поврежден, {@link #load(Path, LogFormat)} его не возвращает, и индекс строится заново.
+ */
+public final class TimeIndex {
+    static final int MAGIC = 0x4C414958;
+    static final int VERSION = 1;
+    static final int BLOCK_LINES = 1024;
+    static final int HEAD_BYTES = 64 * 1024;
+    private static final String SUFFIX = ".idx";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int INITIAL_BLOCKS = 64;
+
+    private final Path path;
+    private final String format;
+    private final long size;
+    private final long modifiedMillis;
+    private final long headHash;
+    private long[] offsets;
+    private long[] minSeconds;
+    private long[] maxSeconds;
+    private int count;
+
+    private TimeIndex(Path path, String format, long size, long modifiedMillis, long headHash, int capacity) {
+        this.path = path;
+        this.format = format;
+        this.size = size;
+        this.modifiedMillis = modifiedMillis;
+        this.headHash = headHash;
+        this.offsets = new long[capacity];
+        this.minSeconds = new long[capacity];
+        this.maxSeconds = new long[capacity];
+    }
+
+    /**
+     * Путь к файлу индекса для лог-файла.
+     */
+    public static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Является ли файл индексом времени или его временной копией при записи.
+     */
+    public static boolean isIndexFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(SUFFIX) || name.contains(SUFFIX + ".") && name.endsWith(TEMPORARY_SUFFIX);
+    }
+
+    /**
+     * Читает индекс лог-файла, если он есть и построен по текущему содержимому файла.
+     *
+     * @param path
+     *            путь к лог-файлу
+     * @param format
+     *            формат строк лога
+     *
+     * @return индекс или {@code null}, если индекса нет, он устарел или поврежден
+     *
+     * @throws IOException
+     *             если не удалось прочитать сам лог-файл
+     */
+    public static TimeIndex load(Path path, LogFormat format) throws IOException {
+        Path indexPath = indexPath(path);
+        if (!Files.isRegularFile(indexPath)) {
+            return null;
+        }
+        TimeIndex index = fingerprint(path, format, 0);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            return readBlocks(in, index) ? index : null;
+        } catch (IOException e) {
+            // Обрезанный или чужой файл индекса: индекс будет построен заново
+            return null;
+        }
+    }
+
+    /**
+     * Строит индекс, читая лог-файл целиком. Разбирается только время строк.
+     *
+     * @param path
+     *            путь к лог-файлу
+     * @param format
+     *            формат строк лога
+     *
+     * @return индекс; на диск он записывается отдельно, методом {@link #save()}
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     */
+    public static TimeIndex build(Path path, LogFormat format) throws IOException {
+        TimeIndex index = fingerprint(path, format, INITIAL_BLOCKS);
+        // Строки, дописанные во время построения, в индекс не попадают: их отсечет размер в заголовке
+        try (MappedLineReader lines = MappedLineReader.open(path, 0, index.size)) {
+            LogRecordCursor cursor = new LogRecordCursor();
+            int linesInBlock = BLOCK_LINES;
+            while (lines.nextLine()) {
+                if (linesInBlock == BLOCK_LINES) {
+                    index.addBlock(lines.lineOffset());
+                    linesInBlock = 0;
+                }
+                linesInBlock++;
+                if (format.isCombined()) {
+                    if (LogParser.parseTime(lines.buffer(), lines.lineStart(), lines.lineEnd(), cursor)) {
+                        index.addSecond(cursor.getEpochSecond());
+                    }
+                } else {
+                    LogParser.parseLine(lines.line(), format).map(LogEntry::getEpochSecond).ifPresent(index::addSecond);
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Записывает индекс рядом с лог-файлом. Файл индекса заменяется целиком, поэтому параллельный запуск никогда не
+     * прочитает его наполовину записанным.
+     *
+     * @throws IOException
+     *             при ошибке записи, например если каталог лога только для чтения
+     */
+    public void save() throws IOException {
+        Path indexPath = indexPath(path);
+        // Временный файл свой у каждого процесса; права получает обычные, как и файл индекса
+        String temporaryName = indexPath.getFileName() + "." + ProcessHandle.current().pid() + TEMPORARY_SUFFIX;
+        Path temporary = indexPath.resolveSibling(temporaryName);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(modifiedMillis);
+            out.writeLong(headHash);
+            out.writeUTF(format);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(offsets[i]);
+                out.writeLong(minSeconds[i]);
+                out.writeLong(maxSeconds[i]);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Находит диапазон байтов, в котором лежат все записи интервала.
+     *
+     * <p>
+     * Блоки просматриваются подряд: в неупорядоченном файле подходящий блок может оказаться где угодно, а блоков в
+     * тысячу раз меньше, чем строк.
+     *
+     * @param from
+     *            начало интервала или {@code null}
+     * @param to
+     *            конец интервала или {@code null}
+     *
+     * @return диапазон от первого до последнего блока, пересекающегося с интервалом; пустой, если таких блоков нет
+     */
+    public ByteRange findRange(ZonedDateTime from, ZonedDateTime to) {
+        long fromSecond = from == null ? Long.MIN_VALUE : from.toEpochSecond();
+        long toSecond = to == null ? Long.MAX_VALUE : to.toEpochSecond();
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < count; i++) {
+            if (minSeconds[i] <= toSecond && maxSeconds[i] >= fromSecond) {
+                first = first < 0 ? i : first;
+                last = i;
+            }
+        }
+        if (first < 0) {
+            return new ByteRange(0, 0);
+        }
+        return new ByteRange(offsets[first], last + 1 < count ? offsets[last + 1] : size);
+    }
+
+    /**
+     * Число блоков индекса.
+     */
+    public int getBlockCount() {
+        return count;
+    }
+
+    /**
+     * Читает файл индекса в пустой индекс с отпечатком лог-файла.
+     *
+     * @return {@code false}, если индекс построен по другому состоянию файла или его блоки не согласованы
+     */
+    private static boolean readBlocks(DataInputStream in, TimeIndex index) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != index.size
+                || in.readLong() != index.modifiedMillis || in.readLong() != index.headHash
+                || !in.readUTF().equals(index.format)) {
+            return false;
+        }
+        int blocks = in.readInt();
+        long previous = -1;
+        for (int i = 0; i < blocks; i++) {
+            long offset = in.readLong();
+            if (offset <= previous || offset >= index.size) {
+                return false;
+            }
+            index.addBlock(offset);
+            index.minSeconds[i] = in.readLong();
+            index.maxSeconds[i] = in.readLong();
+            previous = offset;
+        }
+        return true;
+    }
+
+    private void addBlock(long offset) {
+        if (count == offsets.length) {
+            int capacity = Math.max(count * 2, 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            minSeconds = Arrays.copyOf(minSeconds, capacity);
+            maxSeconds = Arrays.copyOf(maxSeconds, capacity);
+        }
+        offsets[count] = offset;
+        // Блок без единой разобранной строки не пересекается ни с одним интервалом
+        minSeconds[count] = Long.MAX_VALUE;
+        maxSeconds[count] = Long.MIN_VALUE;
+        count++;
+    }
+
+    private void addSecond(long epochSecond) {
+        minSeconds[count - 1] = Math.min(minSeconds[count - 1], epochSecond);
+        maxSeconds[count - 1] = Math.max(maxSeconds[count - 1], epochSecond);
+    }
+
+    /**
+     * Пустой индекс с отпечатком текущего состояния лог-файла.
+     */
+    private static TimeIndex fingerprint(Path path, LogFormat format, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = ByteBuffer.allocate((int) Math.min(size, HEAD_BYTES));
+            int read = 0;
+            while (head.hasRemaining() && read >= 0) {
+                read = channel.read(head, head.position());
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(head.flip());
+            return new TimeIndex(path, format.getFormat(), size, Files.getLastModifiedTime(path).toMillis(),
+                    crc.getValue(), capacity);
+        }
+    }
+}
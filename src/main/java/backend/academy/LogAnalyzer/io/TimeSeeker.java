@@ -0,0 +1,179 @@
+package backend.academy.LogAnalyzer.io;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogParser;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+/**
+ * Поиск диапазона байтов упорядоченного по времени лог-файла, в котором лежат записи интервала {@code --from} /
+ * {@code --to}.
+ *
+ * <p>
+ * Границы ищутся двоичным поиском по смещениям: в середине текущего отрезка читается небольшой блок, поиск
+ * выравнивается на начало следующей строки и берет время первой строки, которая разбирается. Так на файл любого размера
+ * уходят десятки чтений по несколько килобайт, после чего анализатор читает только найденный диапазон. Строки в логе
+ * могут немного нарушать порядок (запись завершившегося запроса идет после начавшихся позже), поэтому обе границы
+ * расширяются на допуск; лишние строки на краях отсекает обычный фильтр по времени. Если в пробе не нашлось ни одной
+ * разборчивой строки, поиск сдается и возвращает весь файл.
+ */
+public final class TimeSeeker {
+    private static final int PROBE_SIZE = 16 * 1024;
+    // Сколько байтов после точки пробы можно просмотреть в поисках строки с временем
+    private static final int MAX_PROBE_BYTES = 1024 * 1024;
+
+    private TimeSeeker() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    /**
+     * Находит диапазон байтов файла с записями интервала.
+     *
+     * @param path
+     *            путь к файлу, строки которого упорядочены по времени
+     * @param format
+     *            формат строк лога
+     * @param from
+     *            начало интервала или {@code null}
+     * @param to
+     *            конец интервала или {@code null}
+     * @param tolerance
+     *            на сколько строки файла могут нарушать порядок времени
+     *
+     * @return диапазон байтов, выровненный по строкам
+     *
+     * @throws IOException
+     *             при ошибке чтения
+     */
+    public static ByteRange findRange(Path path, LogFormat format, ZonedDateTime from, ZonedDateTime to,
+            Duration tolerance) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long toleranceSeconds = tolerance.toSeconds();
+            try {
+                long start = from == null ? 0
+                        : firstLineAtOrAfter(channel, format, from.toEpochSecond() - toleranceSeconds, 0, size);
+                // Первая строка, которая строго позже конца интервала с допуском
+                long end = to == null ? size
+                        : firstLineAtOrAfter(channel, format, to.toEpochSecond() + toleranceSeconds + 1, start, size);
+                return new ByteRange(start, Math.max(start, end));
+            } catch (UnreadableProbeException e) {
+                return new ByteRange(0, size);
+            }
+        }
+    }
+
+    /**
+     * Двоичный поиск начала первой строки, время которой не меньше {@code targetSecond}.
+     *
+     * <p>
+     * Инвариант: строки, начинающиеся раньше {@code low}, старше цели, а первая разборчивая строка после {@code high}
+     * не старше цели.
+     */
+    private static long firstLineAtOrAfter(FileChannel channel, LogFormat format, long targetSecond, long from,
+            long size) throws IOException {
+        long low = from;
+        long high = size;
+        while (high - low > PROBE_SIZE) {
+            long middle = low + (high - low) / 2;
+            Probe probe = probe(channel, format, middle, size);
+            if (probe == null || probe.lineStart >= high) {
+                high = middle;
+            } else if (probe.epochSecond < targetSecond) {
+                low = probe.lineEnd;
+            } else {
+                high = middle;
+            }
+        }
+        // Остаток отрезка меньше блока пробы: строки проверяются подряд
+        long pos = MappedLineReader.lineStartAfter(channel, low, size);
+        while (pos < high) {
+            Probe probe = probe(channel, format, pos, size);
+            if (probe == null || probe.epochSecond >= targetSecond) {
+                return probe == null ? size : probe.lineStart;
+            }
+            pos = probe.lineEnd;
+        }
+        return MappedLineReader.lineStartAfter(channel, high, size);
+    }
+
+    /**
+     * Время первой разборчивой строки, начинающейся не раньше {@code offset}.
+     *
+     * @return проба или {@code null}, если после смещения строк больше нет
+     *
+     * @throws UnreadableProbeException
+     *             если за {@link #MAX_PROBE_BYTES} байтов не нашлось ни одной разборчивой строки
+     */
+    private static Probe probe(FileChannel channel, LogFormat format, long offset, long size) throws IOException {
+        long lineStart = MappedLineReader.lineStartAfter(channel, offset, size);
+        ByteBuffer block = ByteBuffer.allocate(PROBE_SIZE);
+        while (lineStart < size) {
+            if (lineStart - offset > MAX_PROBE_BYTES) {
+                throw new UnreadableProbeException();
+            }
+            block.clear();
+            int read = channel.read(block, lineStart);
+            int length = lineLength(block, Math.max(read, 0));
+            if (length < 0 && lineStart + read < size) {
+                // Строка длиннее блока: время из нее не достать, переходим к следующей
+                lineStart = MappedLineReader.lineStartAfter(channel, lineStart + read, size);
+                continue;
+            }
+            int contentLength = length < 0 ? read : length;
+            long lineEnd = length < 0 ? size : lineStart + length + 1;
+            Optional<LogEntry> entry = parse(block, contentLength, format);
+            if (entry.isPresent()) {
+                return new Probe(lineStart, lineEnd, entry.get().getEpochSecond());
+            }
+            lineStart = lineEnd;
+        }
+        return null;
+    }
+
+    // Длина первой строки блока без перевода строки или -1, если перевода строки в блоке нет
+    private static int lineLength(ByteBuffer block, int read) {
+        for (int i = 0; i < read; i++) {
+            if (block.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Optional<LogEntry> parse(ByteBuffer block, int length, LogFormat format) {
+        int end = length > 0 && block.get(length - 1) == '\r' ? length - 1 : length;
+        String line = new String(block.array(), 0, end, StandardCharsets.UTF_8);
+        return line.isBlank() ? Optional.empty() : LogParser.parseLine(line, format);
+    }
+
+    /**
+     * Строка, найденная пробой: ее границы в файле и время.
+     */
+    private static final class Probe {
+        private final long lineStart;
+        private final long lineEnd;
+        private final long epochSecond;
+
+        Probe(long lineStart, long lineEnd, long epochSecond) {
+            this.lineStart = lineStart;
+            this.lineEnd = lineEnd;
+            this.epochSecond = epochSecond;
+        }
+    }
+
+    /**
+     * Файл не похож на лог в заданном формате: двоичный поиск невозможен.
+     */
+    private static final class UnreadableProbeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -69,7 +69,7 @@ public class AsciidocReportFormatter extends BaseReportFormatter {
      * @return Formatted status code row
      */
     @Override
-    protected String generateStatusRow(int statusCode, String statusName, Integer count) {
+    protected String generateStatusRow(int statusCode, String statusName, Long count) {
         return getTableRow(String.valueOf(statusCode), statusName, count != null ? count.toString() : "0");
     }
 
@@ -1,41 +1,109 @@
 package backend.academy.LogAnalyzer.report;
 
+import backend.academy.LogAnalyzer.core.GroupBy;
+import backend.academy.LogAnalyzer.core.GroupDimension;
 import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.core.TimeSeries;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import static backend.academy.LogAnalyzer.report.ReportConstants.BYTE_UNIT;
 import static backend.academy.LogAnalyzer.report.ReportConstants.FLOAT_FORMAT;
 import static backend.academy.LogAnalyzer.report.ReportConstants.Labels;
+import static backend.academy.LogAnalyzer.report.ReportConstants.MILLIS_UNIT;
 import static backend.academy.LogAnalyzer.report.ReportConstants.StatusCodes;
 
 public abstract class BaseReportFormatter implements ReportFormatter {
+    private static final double MEDIAN = 0.5;
+    private static final double PERCENTILE_90 = 0.9;
+    private static final double PERCENTILE_99 = 0.99;
+    private static final String HOUR_FORMAT = "%02d:00";
+    private static final int SECONDS_PER_MINUTE = 60;
+    private static final int SECONDS_PER_HOUR = 3600;
+    private static final DateTimeFormatter BUCKET_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String BYTES = "Bytes";
+
+    private static final int DEFAULT_TOP_IP_ADDRESSES = 10;
+
     protected StringBuilder report;
+    // Число строк в разделах ресурсов и IP-адресов; 0 — все ресурсы и десять адресов
+    private int topLimit;
 
     protected BaseReportFormatter() {
         this.report = new StringBuilder();
     }
 
+    @Override
+    public void setTopLimit(int topLimit) {
+        if (topLimit < 0) {
+            throw new IllegalArgumentException("Лимит строк не может быть отрицательным: " + topLimit);
+        }
+        this.topLimit = topLimit;
+    }
+
     @Override
     public void appendGeneralInformation(LogStatistics stats) {
         // Используем формат даты ISO8601 для всех дат
         DateTimeFormatter isoFormatter = DateTimeFormatter.ISO_LOCAL_DATE;
 
-        report.append(getSectionHeader("General Information")).append(getTableHeader("Metric", "Value"))
+        report.append(getSectionHeader("General Information")).append(getTableHeader(Labels.METRIC, Labels.VALUE))
                 .append(getTableRow("File(s)", "`" + stats.getFileName() + "`"))
                 .append(getTableRow("Start Date", stats.getStartDate().format(isoFormatter)))
                 .append(getTableRow("End Date", stats.getEndDate().format(isoFormatter)))
-                .append(getTableRow("Total Requests", String.valueOf(stats.getTotalRequests())))
+                .append(getTableRow("Total Requests", String.valueOf(stats.getTotalRequestsAsLong())))
                 .append(getTableRow("Average Response Size",
                         String.format(FLOAT_FORMAT, stats.getAverageResponseSize()) + BYTE_UNIT))
                 .append(getTableRow("95th Percentile Response Size", stats.get95PercentileSize() + BYTE_UNIT));
+
+        if (stats.getHeavyHitterCapacity() > 0) {
+            report.append(getTableRow("Top Resources and IPs",
+                    "approximate, " + stats.getHeavyHitterCapacity() + " counters each"));
+        }
+
+        // Остальные перцентили выводятся, только если в логе были ненулевые размеры ответов
+        if (stats.getMaxResponseSize() > 0) {
+            report.append(getTableRow("Median Response Size", stats.getResponseSizePercentile(MEDIAN) + BYTE_UNIT))
+                    .append(getTableRow("90th Percentile Response Size",
+                            stats.getResponseSizePercentile(PERCENTILE_90) + BYTE_UNIT))
+                    .append(getTableRow("99th Percentile Response Size",
+                            stats.getResponseSizePercentile(PERCENTILE_99) + BYTE_UNIT))
+                    .append(getTableRow("Max Response Size", stats.getMaxResponseSize() + BYTE_UNIT));
+        }
+
+        // Время обработки есть только в форматах log_format с $request_time или $upstream_response_time
+        if (stats.getRequestTimeCount() > 0) {
+            report.append(getTableRow("Average Request Time",
+                    String.format(FLOAT_FORMAT, stats.getAverageRequestTimeMillis()) + MILLIS_UNIT));
+        }
+        if (stats.getUpstreamTimeCount() > 0) {
+            report.append(getTableRow("Average Upstream Response Time",
+                    String.format(FLOAT_FORMAT, stats.getAverageUpstreamTimeMillis()) + MILLIS_UNIT));
+        }
+    }
+
+    @Override
+    public void appendInputFiles(LogStatistics stats) {
+        Map<String, Long> totals = stats.getFileTotals();
+        if (totals.size() <= 1) {
+            return;
+        }
+        report.append(getSectionHeader("Input Files")).append(getTableHeader("File", Labels.REQUEST_COUNT));
+        totals.forEach((file, total) -> report.append(getTableRow("`" + file + "`", String.valueOf(total))));
     }
 
     @Override
     public void appendRequestedResources(LogStatistics stats) {
         report.append(getSectionHeader("Requested Resources")).append(getTableHeader("Resource", Labels.COUNT));
 
-        for (Map.Entry<String, Integer> entry : stats.getResourceCounts().entrySet()) {
-            report.append(getTableRow(entry.getKey(), String.valueOf(entry.getValue())));
+        Map<String, Long> errors = stats.getResourceCountErrors();
+        Map<String, Long> resources = stats.getTopResources(topLimit > 0 ? topLimit : Integer.MAX_VALUE);
+        for (Map.Entry<String, Long> entry : resources.entrySet()) {
+            report.append(getTableRow(entry.getKey(), formatCount(entry.getValue(), errors.get(entry.getKey()))));
         }
     }
 
@@ -43,33 +111,112 @@ public abstract class BaseReportFormatter implements ReportFormatter {
     public void appendResponseCodes(LogStatistics stats) {
         report.append(getSectionHeader("Response Codes")).append(getTableHeader("Code", "Name", Labels.COUNT));
 
-        appendStatusCode(stats, StatusCodes.OK, "OK");
-        appendStatusCode(stats, StatusCodes.NOT_FOUND, "Not Found");
-        appendStatusCode(stats, StatusCodes.SERVER_ERROR, "Internal Server Error");
-        appendStatusCode(stats, StatusCodes.FORBIDDEN, "Forbidden");
-        appendStatusCode(stats, StatusCodes.NOT_MODIFIED, "Not Modified");
-        appendStatusCode(stats, StatusCodes.PARTIAL_CONTENT, "Partial Content");
-        appendStatusCode(stats, StatusCodes.RANGE_NOT_SATISFIABLE, "Range Not Satisfiable");
+        Map<Integer, Long> counts = stats.getStatusCountsAsLong();
+        appendStatusCode(counts, StatusCodes.OK, "OK");
+        appendStatusCode(counts, StatusCodes.NOT_FOUND, "Not Found");
+        appendStatusCode(counts, StatusCodes.SERVER_ERROR, "Internal Server Error");
+        appendStatusCode(counts, StatusCodes.FORBIDDEN, "Forbidden");
+        appendStatusCode(counts, StatusCodes.NOT_MODIFIED, "Not Modified");
+        appendStatusCode(counts, StatusCodes.PARTIAL_CONTENT, "Partial Content");
+        appendStatusCode(counts, StatusCodes.RANGE_NOT_SATISFIABLE, "Range Not Satisfiable");
     }
 
-    private void appendStatusCode(LogStatistics stats, int code, String name) {
-        report.append(generateStatusRow(code, name, stats.getStatusCounts().get(code)));
+    private void appendStatusCode(Map<Integer, Long> counts, int code, String name) {
+        report.append(generateStatusRow(code, name, counts.get(code)));
     }
 
     @Override
     public void appendIpAddressStatistics(LogStatistics stats) {
         report.append(getSectionHeader("Top IP Addresses")).append(getTableHeader("IP Address", Labels.REQUEST_COUNT));
 
-        stats.getTopIpAddresses().forEach((ip, count) -> report.append(getTableRow(ip, String.valueOf(count))));
+        Map<String, Long> errors = stats.getTopIpAddressErrors();
+        stats.getTopIpAddressesAsLong(topLimit > 0 ? topLimit : DEFAULT_TOP_IP_ADDRESSES)
+                .forEach((ip, count) -> report.append(getTableRow(ip, formatCount(count, errors.get(ip)))));
+    }
+
+    // В приближенном режиме счетчик может быть завышен; показывается, на сколько
+    private static String formatCount(long count, Long error) {
+        return error == null || error == 0 ? String.valueOf(count) : count + " (overcount <= " + error + ")";
     }
 
     @Override
     public void appendHourlyDistribution(LogStatistics stats) {
         report.append(getSectionHeader("Hourly Request Distribution"))
-                .append(getTableHeader("Hour", Labels.REQUEST_COUNT));
+                .append(getTableHeader(Labels.HOUR, Labels.REQUEST_COUNT));
+
+        stats.getHourlyDistributionAsLong().forEach(
+                (hour, count) -> report.append(getTableRow(String.format(HOUR_FORMAT, hour), String.valueOf(count))));
+    }
+
+    @Override
+    public void appendTimeSeries(LogStatistics stats) {
+        TimeSeries series = stats.getTimeSeries();
+        if (series == null) {
+            return;
+        }
+        report.append(getSectionHeader("Time Series (" + formatWidth(series.getBucketSeconds()) + " buckets)"))
+                .append(getTableHeader("Time", Labels.REQUEST_COUNT, "Errors (4xx/5xx)", BYTES));
+
+        // Время корзин выводится в часовом поясе первой записи
+        ZoneId zone = stats.getStartDate() != null ? stats.getStartDate().getZone() : ZoneOffset.UTC;
+        for (int i = 0; i < series.size(); i++) {
+            String start = BUCKET_FORMATTER.format(Instant.ofEpochSecond(series.getBucketStart(i)).atZone(zone));
+            report.append(getTableRow(start, String.valueOf(series.getRequests(i)), String.valueOf(series.getErrors(i)),
+                    series.getBytes(i) + BYTE_UNIT));
+        }
+        if (series.getDroppedCount() > 0) {
+            report.append(getTableRow("Outside range", String.valueOf(series.getDroppedCount()), "", ""));
+        }
+    }
 
-        stats.getHourlyDistribution().forEach(
-                (hour, count) -> report.append(getTableRow(String.format("%02d:00", hour), String.valueOf(count))));
+    private static String formatWidth(int seconds) {
+        if (seconds % SECONDS_PER_HOUR == 0) {
+            return seconds / SECONDS_PER_HOUR + "h";
+        }
+        return seconds % SECONDS_PER_MINUTE == 0 ? seconds / SECONDS_PER_MINUTE + "m" : seconds + "s";
+    }
+
+    @Override
+    public void appendGroupBy(LogStatistics stats) {
+        GroupBy groupBy = stats.getGroupBy();
+        if (groupBy == null) {
+            return;
+        }
+        List<String> columns = new ArrayList<>();
+        groupBy.getDimensions().stream().map(GroupDimension::getName).forEach(columns::add);
+        columns.addAll(List.of(Labels.REQUEST_COUNT, BYTES, "p50 Size (b)", "p95 Size (b)", "p99 Size (b)"));
+        String title = "Group By " + String.join(", ", columns.subList(0, groupBy.getDimensions().size()));
+        report.append(getSectionHeader(title)).append(getTableHeader(columns.toArray(new String[0])));
+
+        List<GroupBy.Row> rows = groupBy.getRows();
+        for (GroupBy.Row row : topLimit > 0 && rows.size() > topLimit ? rows.subList(0, topLimit) : rows) {
+            List<String> cells = new ArrayList<>(row.getValues());
+            cells.add(String.valueOf(row.getCount()));
+            cells.add(String.valueOf(row.getBytes()));
+            cells.add(String.valueOf(row.getMedianSize()));
+            cells.add(String.valueOf(row.getPercentile95Size()));
+            cells.add(String.valueOf(row.getPercentile99Size()));
+            report.append(getTableRow(cells.toArray(new String[0])));
+        }
+    }
+
+    @Override
+    public void appendUniqueCounts(LogStatistics stats) {
+        report.append(getSectionHeader("Unique Counts (Estimated)")).append(getTableHeader(Labels.METRIC, Labels.VALUE))
+                .append(getTableRow("Unique Client IPs", String.valueOf(stats.getUniqueIpCount())))
+                .append(getTableRow("Unique Resources", String.valueOf(stats.getUniqueResourceCount())))
+                .append(getTableRow("Unique User Agents", String.valueOf(stats.getUniqueUserAgentCount())));
+
+        report.append(getSectionHeader("Hourly Unique Counts (Estimated)"))
+                .append(getTableHeader(Labels.HOUR, "Client IPs", "Resources", "User Agents"));
+
+        Map<Integer, Long> resources = stats.getHourlyUniqueResources();
+        Map<Integer, Long> userAgents = stats.getHourlyUniqueUserAgents();
+        stats.getHourlyUniqueIps()
+                .forEach((hour,
+                        ips) -> report.append(getTableRow(String.format(HOUR_FORMAT, hour), String.valueOf(ips),
+                                String.valueOf(resources.getOrDefault(hour, 0L)),
+                                String.valueOf(userAgents.getOrDefault(hour, 0L)))));
     }
 
     protected abstract String getSectionHeader(String title);
@@ -78,7 +225,7 @@ public abstract class BaseReportFormatter implements ReportFormatter {
 
     protected abstract String getTableRow(String... columns);
 
-    protected abstract String generateStatusRow(int statusCode, String statusName, Integer count);
+    protected abstract String generateStatusRow(int statusCode, String statusName, Long count);
 
     @Override
     public String getReport() {
@@ -14,6 +14,9 @@ public final class ReportConstants {
     // Единица измерения для байтов
     public static final String BYTE_UNIT = " b|";
 
+    // Единица измерения для времени обработки запросов
+    public static final String MILLIS_UNIT = " ms";
+
     public static final class StatusCodes {
         private StatusCodes() {
 
@@ -36,6 +39,9 @@ public final class ReportConstants {
 
         public static final String REQUEST_COUNT = "Request Count";
         public static final String COUNT = "Count";
+        public static final String METRIC = "Metric";
+        public static final String VALUE = "Value";
+        public static final String HOUR = "Hour";
         public static final String NEW_LINE = "\n";
         public static final String DOUBLE_NEW_LINE = "\n\n";
     }
@@ -4,8 +4,14 @@ import backend.academy.LogAnalyzer.core.LogStatistics;
 
 public interface ReportFormatter {
 
+    // Ограничивает число строк в разделах ресурсов и IP-адресов; 0 — без ограничения для ресурсов.
+    void setTopLimit(int topLimit);
+
     void appendGeneralInformation(LogStatistics stats);
 
+    // Добавляет к отчету число записей по каждому входному файлу, если файлов несколько.
+    void appendInputFiles(LogStatistics stats);
+
     void appendRequestedResources(LogStatistics stats);
 
     void appendResponseCodes(LogStatistics stats);
@@ -16,6 +22,15 @@ public interface ReportFormatter {
     // Добавляет к отчету раздел почасового распределения.
     void appendHourlyDistribution(LogStatistics stats);
 
+    // Добавляет к отчету временной ряд запросов, если он был включен.
+    void appendTimeSeries(LogStatistics stats);
+
+    // Добавляет к отчету таблицу группировки по измерениям, если она была включена.
+    void appendGroupBy(LogStatistics stats);
+
+    // Добавляет к отчету разделы с оценками числа уникальных клиентов, ресурсов и агентов.
+    void appendUniqueCounts(LogStatistics stats);
+
     // Возвращает полный отформатированный отчет
     String getReport();
 }
@@ -17,7 +17,21 @@ public final class ReportGenerator {
      * @return Formatted report as string
      */
     public static String generateMarkdownReport(LogStatistics stats) {
-        return generateReport(new MarkdownReportFormatter(), stats);
+        return generateMarkdownReport(stats, 0);
+    }
+
+    /**
+     * Генерирует отчет в формате Markdown с ограничением числа строк в разделах ресурсов и IP-адресов.
+     *
+     * @param stats
+     *            Log statistics которая будет включена в отчет
+     * @param topLimit
+     *            число самых частых ресурсов и IP-адресов в отчете; 0 — все ресурсы и десять адресов
+     *
+     * @return Formatted report as string
+     */
+    public static String generateMarkdownReport(LogStatistics stats, int topLimit) {
+        return generateReport(new MarkdownReportFormatter(), stats, topLimit);
     }
 
     /**
@@ -29,7 +43,21 @@ public final class ReportGenerator {
      * @return Formatted report as string
      */
     public static String generateAsciidocReport(LogStatistics stats) {
-        return generateReport(new AsciidocReportFormatter(), stats);
+        return generateAsciidocReport(stats, 0);
+    }
+
+    /**
+     * Генерирует отчет в формате AsciiDoc с ограничением числа строк в разделах ресурсов и IP-адресов.
+     *
+     * @param stats
+     *            Log statistics которая будет включена в отчет
+     * @param topLimit
+     *            число самых частых ресурсов и IP-адресов в отчете; 0 — все ресурсы и десять адресов
+     *
+     * @return Formatted report as string
+     */
+    public static String generateAsciidocReport(LogStatistics stats, int topLimit) {
+        return generateReport(new AsciidocReportFormatter(), stats, topLimit);
     }
 
     /**
@@ -39,15 +67,22 @@ public final class ReportGenerator {
      *            Report formatter который используется
      * @param stats
      *            Log statistics которая будет включена в отчет
+     * @param topLimit
+     *            число самых частых ресурсов и IP-адресов в отчете
      *
      * @return Formatted report as string
      */
-    private static String generateReport(ReportFormatter formatter, LogStatistics stats) {
+    private static String generateReport(ReportFormatter formatter, LogStatistics stats, int topLimit) {
+        formatter.setTopLimit(topLimit);
         formatter.appendGeneralInformation(stats);
+        formatter.appendInputFiles(stats);
         formatter.appendRequestedResources(stats);
         formatter.appendResponseCodes(stats);
         formatter.appendIpAddressStatistics(stats);
         formatter.appendHourlyDistribution(stats);
+        formatter.appendTimeSeries(stats);
+        formatter.appendGroupBy(stats);
+        formatter.appendUniqueCounts(stats);
 
         return formatter.getReport();
     }
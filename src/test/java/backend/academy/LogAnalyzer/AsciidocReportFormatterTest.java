@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.when;
 
 class AsciidocReportFormatterTest {
@@ -37,29 +38,29 @@ class AsciidocReportFormatterTest {
         when(mockStats.getFileName()).thenReturn("test.log");
         when(mockStats.getStartDate()).thenReturn(startDate);
         when(mockStats.getEndDate()).thenReturn(endDate);
-        when(mockStats.getTotalRequests()).thenReturn(100);
+        when(mockStats.getTotalRequestsAsLong()).thenReturn(100L);
         when(mockStats.getAverageResponseSize()).thenReturn(1024.0);
         when(mockStats.get95PercentileSize()).thenReturn(2048);
 
-        Map<String, Integer> resourceCounts = new HashMap<>();
-        resourceCounts.put("/index.html", 50);
-        resourceCounts.put("/about.html", 30);
-        when(mockStats.getResourceCounts()).thenReturn(resourceCounts);
-
-        Map<Integer, Integer> statusCounts = new HashMap<>();
-        statusCounts.put(200, 80);
-        statusCounts.put(404, 20);
-        when(mockStats.getStatusCounts()).thenReturn(statusCounts);
-
-        Map<String, Integer> ipCounts = new LinkedHashMap<>();
-        ipCounts.put("192.168.1.1", 40);
-        ipCounts.put("192.168.1.2", 30);
-        when(mockStats.getTopIpAddresses()).thenReturn(ipCounts);
-
-        Map<Integer, Integer> hourlyStats = new LinkedHashMap<>();
-        hourlyStats.put(0, 10);
-        hourlyStats.put(1, 15);
-        when(mockStats.getHourlyDistribution()).thenReturn(hourlyStats);
+        Map<String, Long> resourceCounts = new HashMap<>();
+        resourceCounts.put("/index.html", 50L);
+        resourceCounts.put("/about.html", 30L);
+        when(mockStats.getTopResources(anyInt())).thenReturn(resourceCounts);
+
+        Map<Integer, Long> statusCounts = new HashMap<>();
+        statusCounts.put(200, 80L);
+        statusCounts.put(404, 20L);
+        when(mockStats.getStatusCountsAsLong()).thenReturn(statusCounts);
+
+        Map<String, Long> ipCounts = new LinkedHashMap<>();
+        ipCounts.put("192.168.1.1", 40L);
+        ipCounts.put("192.168.1.2", 30L);
+        when(mockStats.getTopIpAddressesAsLong(anyInt())).thenReturn(ipCounts);
+
+        Map<Integer, Long> hourlyStats = new LinkedHashMap<>();
+        hourlyStats.put(0, 10L);
+        hourlyStats.put(1, 15L);
+        when(mockStats.getHourlyDistributionAsLong()).thenReturn(hourlyStats);
     }
 
     @Test
@@ -0,0 +1,65 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.io.ByteLineReader;
+import backend.academy.LogAnalyzer.io.LogReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ByteLineReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSplitAsciiLinesLikeBufferedReader() throws IOException {
+        String text = "first\nsecond\r\nthird\r\rfifth\n\nlast without newline";
+
+        assertEquals(text.lines().toList(), readAll(text.getBytes(StandardCharsets.US_ASCII), 4));
+        assertEquals(text.lines().toList(), readAll(text.getBytes(StandardCharsets.US_ASCII), 1024));
+    }
+
+    @Test
+    void shouldDecodeMultiByteCharactersAcrossBufferBoundaries() throws IOException {
+        String text = "ascii\nагент Кириллица ✓\n日本語 agent\n";
+
+        assertEquals(text.lines().toList(), readAll(text.getBytes(StandardCharsets.UTF_8), 3));
+    }
+
+    @Test
+    void shouldReplaceInvalidBytesInsteadOfFailing() throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.writeBytes("bot \"".getBytes(StandardCharsets.US_ASCII));
+        data.write(0xC3);
+        data.write(0x28);
+        data.write(0xFF);
+        data.writeBytes("\"\nnext\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(List.of("bot \"\uFFFD(\uFFFD\"", "next"), readAll(data.toByteArray(), 8));
+    }
+
+    @Test
+    void shouldReadDirtyFileThroughLogReader() throws IOException {
+        Path logFile = tempDir.resolve("dirty.log");
+        Files.write(logFile, new byte[] { 'a', (byte) 0xFE, '\n', 'b', '\n' });
+
+        try (Stream<String> lines = LogReader.readLogs(logFile.toString())) {
+            assertEquals(List.of("a\uFFFD", "b"), lines.toList());
+        }
+    }
+
+    private static List<String> readAll(byte[] data, int capacity) throws IOException {
+        try (ByteLineReader reader = new ByteLineReader(Channels.newChannel(new ByteArrayInputStream(data)),
+                capacity)) {
+            return reader.lines().toList();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.io.CharLineReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CharLineReaderTest {
+
+    @Test
+    void shouldSplitLinesLikeBufferedReader() throws IOException {
+        String text = "first\nsecond\r\nthird\r\rfifth\n\nlast without newline";
+
+        assertEquals(text.lines().toList(), readAll(text, 4));
+        assertEquals(text.lines().toList(), readAll(text, 1024));
+    }
+
+    @Test
+    void shouldGrowBufferForLongLines() throws IOException {
+        String longLine = "x".repeat(10_000);
+
+        assertEquals(List.of("a", longLine, "b"), readAll("a\n" + longLine + "\r\nb\n", 16));
+    }
+
+    private static List<String> readAll(String text, int capacity) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (CharLineReader reader = new CharLineReader(new StringReader(text), capacity)) {
+            while (reader.nextLine()) {
+                lines.add(new String(reader.buffer(), reader.lineStart(), reader.lineEnd() - reader.lineStart()));
+            }
+        }
+        return lines;
+    }
+}
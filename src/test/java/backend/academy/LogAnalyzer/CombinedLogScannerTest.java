@@ -0,0 +1,103 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogParser;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CombinedLogScannerTest {
+
+    @Test
+    void shouldParseCombinedLineWithOldDateFormat() {
+        String line = "93.180.71.3 - - [17/May/2015:08:05:32 +0000] \"GET /downloads/product_1 HTTP/1.1\" 304 0 "
+                + "\"-\" \"Debian APT-HTTP/1.3 (0.8.16~exp12ubuntu10.21)\"";
+
+        LogEntry entry = LogParser.parseLine(line).orElseThrow();
+
+        assertEquals("93.180.71.3", entry.getRemoteAddr());
+        assertEquals("-", entry.getRemoteUser());
+        assertEquals(ZonedDateTime.of(2015, 5, 17, 8, 5, 32, 0, ZoneOffset.UTC).toInstant(),
+                entry.getTimeLocal().toInstant());
+        assertEquals("GET /downloads/product_1 HTTP/1.1", entry.getRequest());
+        assertEquals(304, entry.getStatus());
+        assertEquals(0L, entry.getBodyBytesSent());
+        assertEquals("-", entry.getHttpReferer());
+        assertEquals("Debian APT-HTTP/1.3 (0.8.16~exp12ubuntu10.21)", entry.getHttpUserAgent());
+    }
+
+    @Test
+    void shouldParseEmptyRefererAndAgent() {
+        String line = "10.0.0.1 - admin [2015-05-17T08:05:32Z] \"POST /api HTTP/1.1\" 201 532 \"\" \"\"";
+
+        LogEntry entry = LogParser.parseLine(line).orElseThrow();
+
+        assertEquals("admin", entry.getRemoteUser());
+        assertEquals(201, entry.getStatus());
+        assertEquals(532L, entry.getBodyBytesSent());
+        assertEquals("", entry.getHttpReferer());
+        assertEquals("", entry.getHttpUserAgent());
+    }
+
+    @Test
+    void shouldKeepQuotesInsideUserAgent() {
+        String line = "10.0.0.1 - - [2015-05-17T08:05:32Z] \"GET / HTTP/1.1\" 200 1 \"http://a/\" \"Bot \"x\" 1.0\"";
+
+        LogEntry entry = LogParser.parseLine(line).orElseThrow();
+
+        assertEquals("http://a/", entry.getHttpReferer());
+        assertEquals("Bot \"x\" 1.0", entry.getHttpUserAgent());
+    }
+
+    @Test
+    void shouldFallBackToPatternForQuoteInsideRequest() {
+        String line = "10.0.0.1 - - [2015-05-17T08:05:32Z] \"GET /a\"b HTTP/1.1\" 200 10 \"-\" \"curl\"";
+
+        LogEntry entry = LogParser.parseLine(line).orElseThrow();
+
+        assertEquals("GET /a\"b HTTP/1.1", entry.getRequest());
+        assertEquals(200, entry.getStatus());
+        assertEquals(10L, entry.getBodyBytesSent());
+    }
+
+    @Test
+    void shouldRejectMalformedLines() {
+        assertFalse(LogParser.parseLine("").isPresent());
+        assertFalse(LogParser.parseLine("2023-10-14 12:34:56 INFO User logged in").isPresent());
+        assertFalse(LogParser.parseLine("10.0.0.1 - - [2015-05-17T08:05:32Z] \"GET / HTTP/1.1\" 20 10 \"-\" \"curl\"")
+                .isPresent());
+        assertFalse(LogParser.parseLine("10.0.0.1 - - [2015-05-17T08:05:32Z] \"GET / HTTP/1.1\" 200 10 \"-\" \"curl")
+                .isPresent());
+        assertFalse(
+                LogParser.parseLine("10.0.0.1 - - [not a date] \"GET / HTTP/1.1\" 200 10 \"-\" \"curl\"").isPresent());
+    }
+
+    @Test
+    void shouldParseSizeLargerThanInt() {
+        String line = "10.0.0.1 - - [2015-05-17T08:05:32Z] \"GET / HTTP/1.1\" 200 9876543210 \"-\" \"curl\"";
+
+        Optional<LogEntry> entry = LogParser.parseLine(line);
+
+        assertTrue(entry.isPresent());
+        assertEquals(9_876_543_210L, entry.get().getBodyBytesSent());
+    }
+
+    @Test
+    void shouldMaterializeDeferredFieldsOnDemand() {
+        String line = "10.0.0.1 - alice [17/May/2015:08:05:32 +0000] \"GET /a HTTP/1.1\" 200 10 \"http://ref\" \"agent\"";
+
+        LogEntry entry = LogParser.parseLine(line).orElseThrow();
+        entry.setHttpReferer("overridden");
+
+        assertEquals("overridden", entry.getHttpReferer());
+        assertEquals("agent", entry.getHttpUserAgent());
+        assertEquals("alice", entry.getRemoteUser());
+        assertEquals("GET /a HTTP/1.1", entry.getRequest());
+        assertEquals("10.0.0.1", entry.getRemoteAddr());
+        assertEquals("agent", entry.getHttpUserAgent());
+    }
+}
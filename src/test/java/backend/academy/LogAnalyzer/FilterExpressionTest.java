@@ -0,0 +1,131 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.FilterExpression;
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogField;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogRecordCursor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterExpressionTest {
+    private static final LogEntry SERVER_ERROR = entry("10.0.0.1", "GET /api/users HTTP/1.1", 503, 1200, "Mozilla/5.0");
+    private static final LogEntry BOT_REQUEST = entry("10.0.0.2", "HEAD /robots.txt HTTP/1.1", 500, 0, "Googlebot/2.1");
+    private static final LogEntry SUCCESS = entry("10.0.0.3", "POST /api/data HTTP/1.1", 200, 5000, "curl/8.0");
+
+    @Test
+    void shouldEvaluateCombinedExpression() {
+        FilterExpression filter = FilterExpression
+                .compile("status >= 500 and method in (GET,HEAD) and not agent ~ 'bot'");
+
+        assertTrue(filter.test(SERVER_ERROR));
+        assertFalse(filter.test(BOT_REQUEST));
+        assertFalse(filter.test(SUCCESS));
+        assertEquals(EnumSet.of(LogField.STATUS, LogField.REQUEST, LogField.HTTP_USER_AGENT),
+                filter.getRequiredFields());
+    }
+
+    @Test
+    void shouldSupportPrecedenceParenthesesAndOperators() {
+        assertTrue(FilterExpression.compile("status = 200 or status = 503 and bytes > 1000").test(SUCCESS));
+        assertFalse(FilterExpression.compile("(status = 200 or status = 503) and bytes > 1000").test(BOT_REQUEST));
+        assertTrue(FilterExpression.compile("resource ~ '^/api/' and method != post").test(SERVER_ERROR));
+        assertFalse(FilterExpression.compile("resource ~ '^/api/' and method != post").test(SUCCESS));
+        assertTrue(FilterExpression.compile("ip in (\"10.0.0.2\", 10.0.0.3) and !status in (200)").test(BOT_REQUEST));
+        assertTrue(FilterExpression.compile("agent !~ bot and bytes<=5000").test(SUCCESS));
+    }
+
+    @Test
+    void shouldNotMatchMissingFields() {
+        FilterExpression filter = FilterExpression.compile("host != example.com");
+
+        assertFalse(filter.test(SUCCESS));
+        assertTrue(FilterExpression.compile("not host = example.com").test(SUCCESS));
+    }
+
+    @Test
+    void shouldMatchCursorFieldsLikeEntries() {
+        String line = "10.0.0.1 - - [17/May/2015:08:05:32 +0000] \"GET /api/users HTTP/1.1\" 503 1200 \"-\" "
+                + "\"Mozilla/5.0\"";
+        LogRecordCursor cursor = new LogRecordCursor();
+        assertTrue(LogParser.parseLine(line.toCharArray(), 0, line.length(), cursor));
+
+        for (String expression : List.of("method = get", "resource = /api/users", "hour = 8", "agent ~ 'Moz.*5'",
+                "status in (500, 503)")) {
+            assertTrue(FilterExpression.compile(expression).test(cursor), expression);
+        }
+    }
+
+    @Test
+    void shouldMatchLegacyFieldFilter() {
+        assertTrue(FilterExpression.forField("METHOD", "head").test(BOT_REQUEST));
+        assertTrue(FilterExpression.forField("agent", "bot").test(BOT_REQUEST));
+        assertFalse(FilterExpression.forField("status", "abc").test(BOT_REQUEST));
+        assertTrue(FilterExpression.forField("unknown", "x").test(BOT_REQUEST));
+    }
+
+    @Test
+    void shouldMatchAddressesAgainstNetworks() {
+        FilterExpression filter = FilterExpression.compile(
+                "ip within (10.0.0.0/31, 192.168.0.0/16, 2001:db8::/32, " + "::ffff:172.16.0.0/108, 255.255.255.255)");
+
+        assertTrue(filter.test(SERVER_ERROR));
+        assertFalse(filter.test(BOT_REQUEST));
+        for (String ip : List.of("192.168.77.1", "2001:db8::1", "2001:0DB8:ffff:0:0:0:0:1", "172.31.255.254",
+                "255.255.255.255")) {
+            assertTrue(filter.test(entry(ip, "GET / HTTP/1.1", 200, 0, "-")), ip);
+        }
+        for (String ip : List.of("192.169.0.1", "2001:db9::1", "172.32.0.1", "::1", "10.0.0", "1:2:3", "-")) {
+            assertFalse(filter.test(entry(ip, "GET / HTTP/1.1", 200, 0, "-")), ip);
+        }
+        assertTrue(FilterExpression.compile("ip within (0.0.0.0/0)").test(SUCCESS));
+        assertTrue(FilterExpression.forField("ip", "10.0.0.0/30").test(SUCCESS));
+    }
+
+    @Test
+    void shouldFindAnyOfManySubstrings(@TempDir Path tempDir) throws Exception {
+        List<String> signatures = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            signatures.add("crawler-" + i);
+        }
+        signatures.add("# комментарий");
+        signatures.add("Googlebot");
+        Path file = tempDir.resolve("bots.txt");
+        Files.write(file, signatures);
+
+        FilterExpression filter = FilterExpression.compile("agent contains @'" + file + "'");
+        assertTrue(filter.test(BOT_REQUEST));
+        assertFalse(filter.test(SERVER_ERROR));
+        assertTrue(filter.test(entry("10.0.0.9", "GET / HTTP/1.1", 200, 0, "x crawler-599 y")));
+        assertFalse(filter.test(entry("10.0.0.9", "GET / HTTP/1.1", 200, 0, "crawler-x")));
+        assertFalse(filter.test(entry("10.0.0.9", "GET / HTTP/1.1", 200, 0, "комментарий")));
+
+        assertTrue(FilterExpression.compile("method contains (os, ea)").test(BOT_REQUEST));
+        assertTrue(FilterExpression.compile("not resource contains (users, data)").test(BOT_REQUEST));
+        assertTrue(FilterExpression.compile("agent contains ('')").test(SUCCESS));
+    }
+
+    @Test
+    void shouldRejectInvalidExpressions() {
+        for (String expression : List.of("status >=", "unknown = 1", "status ~ 5", "agent < x", "status = abc",
+                "(status = 200", "agent ~ '['", "status = 200 extra", "agent within (10.0.0.0/8)",
+                "ip within (10.0.0.0/33)", "ip within (10.0.0.300)", "ip within (1::2::3)", "status contains (5)",
+                "agent contains @/nonexistent/bots.txt")) {
+            assertThrows(IllegalArgumentException.class, () -> FilterExpression.compile(expression), expression);
+        }
+    }
+
+    private static LogEntry entry(String ip, String request, int status, int bytes, String agent) {
+        return new LogEntry(ip, "-", ZonedDateTime.parse("2015-05-17T08:05:32Z"), request, status, bytes, "-", agent);
+    }
+}
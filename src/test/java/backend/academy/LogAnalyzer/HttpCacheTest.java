@@ -0,0 +1,175 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.io.HttpCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HttpCacheTest {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    // Сколько последних байтов кэшированного тела кэш запрашивает повторно
+    private static final int OVERLAP = 4096;
+
+    private HttpServer server;
+    // Содержимое файлов сервера; ETag — номер версии файла
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Integer> versions = new ConcurrentHashMap<>();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void shouldRevalidateAndFetchOnlyAppendedTail() throws Exception {
+        HttpCache cache = new HttpCache(tempDir.resolve("cache"), 1 << 20, CLIENT);
+        publish("/access.log", log(0, 2_000));
+        long size = files.get("/access.log").length;
+
+        Path body = fetchAndRelease(cache, "/access.log");
+        assertArrayEquals(files.get("/access.log"), Files.readAllBytes(body));
+        assertEquals(List.of("GET  "), requests);
+
+        // Повторный запуск: один ответ 304 без тела
+        requests.clear();
+        bytesSent.set(0);
+        assertEquals(body, cache.fetch(uri("/access.log")));
+        assertEquals(List.of("GET bytes=" + (size - OVERLAP) + "- \"1\" 304"), requests);
+        assertEquals(0, bytesSent.get());
+
+        // Дописанный лог: загружаются перекрытие и новый хвост
+        publish("/access.log", log(0, 2_500));
+        requests.clear();
+        bytesSent.set(0);
+        cache.fetch(uri("/access.log"));
+        assertArrayEquals(files.get("/access.log"), Files.readAllBytes(body));
+        assertEquals(1, requests.size());
+        assertEquals(files.get("/access.log").length - size + OVERLAP, bytesSent.get());
+
+        // Переписанный (ротированный) лог той же длины загружается заново
+        publish("/access.log", log(10_000, 2_500));
+        requests.clear();
+        cache.fetch(uri("/access.log"));
+        assertArrayEquals(files.get("/access.log"), Files.readAllBytes(body));
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).startsWith("GET  "), requests.toString());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntries() throws Exception {
+        publish("/a.log", log(0, 500));
+        publish("/b.log", log(0, 500));
+        publish("/c.log", log(0, 500));
+        long size = files.get("/a.log").length;
+        HttpCache cache = new HttpCache(tempDir.resolve("cache"), size * 2, CLIENT);
+
+        Path a = fetchAndRelease(cache, "/a.log");
+        Path b = fetchAndRelease(cache, "/b.log");
+        Thread.sleep(20);
+        // Обращение к a делает свежей ее, и c вытесняет b
+        fetchAndRelease(cache, "/a.log");
+        Thread.sleep(20);
+        Path c = fetchAndRelease(cache, "/c.log");
+
+        assertTrue(Files.exists(a));
+        assertFalse(Files.exists(b));
+        assertTrue(Files.exists(c));
+        try (var entries = Files.list(tempDir.resolve("cache"))) {
+            assertEquals(4, entries.count());
+        }
+
+        // Занятая запись не вытесняется, даже если она старше всех, пока ее не освободят
+        Path pinned = cache.fetch(uri("/b.log"));
+        Thread.sleep(20);
+        fetchAndRelease(cache, "/a.log");
+        Thread.sleep(20);
+        fetchAndRelease(cache, "/c.log");
+        assertTrue(Files.exists(pinned));
+        cache.release(uri("/b.log"));
+        fetchAndRelease(cache, "/a.log");
+        assertFalse(Files.exists(pinned));
+    }
+
+    private Path fetchAndRelease(HttpCache cache, String path) throws IOException {
+        Path body = cache.fetch(uri(path));
+        cache.release(uri(path));
+        return body;
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        byte[] body = files.get(path);
+        String entityTag = "\"" + versions.get(path) + "\"";
+        exchange.getResponseHeaders().set("ETag", entityTag);
+        if (entityTag.equals(ifNoneMatch)) {
+            requests.add("GET " + range + " " + ifNoneMatch + " 304");
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        requests.add("GET " + (range == null ? "" : range) + " " + (ifNoneMatch == null ? "" : ifNoneMatch));
+        int start = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+        if (range != null) {
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+        }
+        exchange.sendResponseHeaders(range == null ? 200 : 206, body.length - start);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body, start, body.length - start);
+        }
+        bytesSent.addAndGet(body.length - start);
+    }
+
+    private void publish(String path, String text) {
+        files.put(path, text.getBytes(StandardCharsets.UTF_8));
+        versions.merge(path, 1, Integer::sum);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static String log(int first, int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = first; i < first + lines; i++) {
+            text.append(String.format(
+                    "10.0.%d.%d - - [17/May/2015:08:%02d:%02d +0000] \"GET /r/%d HTTP/1.1\" 200 %d " + "\"-\" \"a\"\n",
+                    i % 13, i % 17, i / 60 % 60, i % 60, i % 41, i % 1000));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.FilterExpression;
+import backend.academy.LogAnalyzer.core.LineFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogRecordCursor;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.io.LogFileAnalyzer;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineFilterTest {
+    private static final ZonedDateTime FROM = ZonedDateTime.parse("2015-05-17T08:00:00Z");
+    private static final ZonedDateTime TO = ZonedDateTime.parse("2015-05-17T08:59:59Z");
+
+    private static final List<String> LINES = List.of(
+            "10.0.0.1 - - [17/May/2015:08:05:32 +0000] \"GET /api HTTP/1.1\" 503 1200 \"-\" \"Mozilla/5.0\"",
+            "10.0.0.2 - - [17/May/2015:10:05:32 +0200] \"HEAD /a HTTP/1.1\" 500 10 \"-\" \"curl/8.0\"",
+            "10.0.0.3 - - [17/May/2015:09:00:00 +0000] \"GET /late HTTP/1.1\" 500 10 \"-\" \"curl/8.0\"",
+            "10.0.0.4 - - [17/May/2015:08:10:00 +0000] \"POST /b HTTP/1.1\" 500 10 \"-\" \"curl/8.0\"",
+            "10.0.0.5 - - [17/May/2015:08:10:00 +0000] \"GET /c HTTP/1.1\" 200 10 \"-\" \"curl/8.0\"",
+            "10.0.0.6 - - [17/May/2015:08:10:00 +0000] \"GET /\"q\" HTTP/1.1\" 502 10 \"-\" \"curl/8.0\"",
+            "garbage line");
+
+    @Test
+    void shouldRejectLinesBeforeParsing() {
+        LineFilter filter = LineFilter.of(FROM, TO,
+                FilterExpression.compile("status >= 500 and method in (GET, HEAD) and agent !~ curl"));
+        LogRecordCursor cursor = new LogRecordCursor();
+
+        assertTrue(testLine(filter, LINES.get(0), cursor));
+        // 10:05 +0200 — это 08:05 UTC: время сравнивается в секундах эпохи
+        assertTrue(testLine(filter, LINES.get(1), cursor));
+        assertFalse(testLine(filter, LINES.get(2), cursor));
+        assertFalse(testLine(filter, LINES.get(3), cursor));
+        assertFalse(testLine(filter, LINES.get(4), cursor));
+        // Кавычка внутри запроса и мусор разбираются медленным путем, по началу строки о них ничего не известно
+        assertTrue(testLine(filter, LINES.get(5), cursor));
+        assertTrue(testLine(filter, LINES.get(6), cursor));
+    }
+
+    @Test
+    void shouldAgreeWithFullCheck() {
+        LogRecordCursor cursor = new LogRecordCursor();
+        // Кавычка с пробелом внутри запроса: конец запроса виден только по статусу после него
+        List<String> lines = new ArrayList<>(LINES);
+        lines.add("1.2.3.4 - - [17/May/2015:08:05:32 +0000] \"GET /a\" b HTTP/1.1\" 200 5 \"-\" \"ua\"");
+        for (String expression : List.of("ip = 10.0.0.5", "hour = 8 or agent ~ curl", "resource ~ '^/[ab]'",
+                "status != 500 and referer = '-'", "not (method = get)", "request ~ 'HTTP'")) {
+            LineFilter filter = LineFilter.of(FROM, null, FilterExpression.compile(expression));
+            for (String line : lines) {
+                boolean accepted = testLine(filter, line, cursor);
+                boolean matches = LogParser.parseLine(line.toCharArray(), 0, line.length(), cursor)
+                        && filter.test(cursor);
+                assertTrue(accepted || !matches, expression + ": " + line);
+            }
+        }
+    }
+
+    @Test
+    void shouldProduceSameStatisticsAsPlainPredicate(@TempDir Path tempDir) throws Exception {
+        Path logFile = tempDir.resolve("access.log");
+        Files.write(logFile, LINES);
+        LineFilter filter = LineFilter.of(FROM, TO, FilterExpression.forField("method", "GET"),
+                FilterExpression.compile("status >= 500"));
+        LogFormat format = LogFormat.compile(LogFormat.COMBINED);
+
+        LogStatistics prefiltered = LogFileAnalyzer.analyze(logFile.toString(), format, filter, 1);
+        LogStatistics plain = LogFileAnalyzer.analyze(logFile.toString(), format, filter::test, 1);
+
+        assertEquals(2, prefiltered.getTotalRequests());
+        assertEquals(ReportGenerator.generateMarkdownReport(plain),
+                ReportGenerator.generateMarkdownReport(prefiltered));
+    }
+
+    private static boolean testLine(LineFilter filter, String line, LogRecordCursor cursor) {
+        return filter.testLine(line.toCharArray(), 0, line.length(), cursor);
+    }
+}
@@ -0,0 +1,103 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.io.LogFileAnalyzer;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFileAnalyzerTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldProduceSameReportInParallelMode() throws Exception {
+        Path logFile = tempDir.resolve("access.log");
+        StringBuilder text = new StringBuilder();
+        String[] methods = { "GET", "POST", "PUT" };
+        int[] statuses = { 200, 404, 500, 304, 599 };
+        for (int i = 0; i < 5_000; i++) {
+            text.append(String.format(
+                    "10.0.%d.%d - - [%02d/May/2015:%02d:%02d:%02d +0200] \"%s /r/%d HTTP/1.1\" %d %d "
+                            + "\"-\" \"agent-%d\"\n",
+                    i % 13, i % 17, 17 + i / 2_000, i % 24, i % 60, i % 59, methods[i % 3], i % 41, statuses[i % 5],
+                    (i * 37) % 5_000, i % 3));
+        }
+        text.append("garbage line\n");
+        Files.writeString(logFile, text.toString());
+        LogFormat format = LogFormat.compile(LogFormat.COMBINED);
+
+        LogStatistics sequential = LogFileAnalyzer.analyze(logFile.toString(), format,
+                entry -> LogFilter.filterByField(entry, "method", "GET"), 1);
+        String expected = ReportGenerator.generateMarkdownReport(sequential);
+
+        for (int threads : new int[] { 2, 3, 8 }) {
+            LogStatistics parallel = LogFileAnalyzer.analyze(logFile.toString(), format,
+                    entry -> LogFilter.filterByField(entry, "method", "GET"), threads);
+            assertEquals(expected, ReportGenerator.generateMarkdownReport(parallel), "threads=" + threads);
+            assertEquals(sequential.getMethodCounts(), parallel.getMethodCounts());
+        }
+    }
+
+    @Test
+    void shouldMergeGzipAndPlainFiles() throws Exception {
+        StringBuilder[] parts = { new StringBuilder(), new StringBuilder(), new StringBuilder() };
+        for (int i = 0; i < 3_000; i++) {
+            parts[i % 3].append(String.format(
+                    "10.0.%d.%d - - [17/May/2015:%02d:%02d:00 +0000] \"GET /r/%d HTTP/1.1\" %d %d \"-\" \"a\"\n",
+                    i % 13, i % 17, i % 24, i % 60, i % 41, i % 7 == 0 ? 500 : 200, i));
+        }
+        Path whole = tempDir.resolve("access.log");
+        Files.writeString(whole, parts[0].toString() + parts[1] + parts[2]);
+        Path plain = tempDir.resolve("access.log.0");
+        Files.writeString(plain, parts[0]);
+        Path rotated = tempDir.resolve("access.log.1.gz");
+        Files.write(rotated, gzip(parts[1].toString()));
+        // Сжатый файл без расширения .gz из двух членов gzip, как после дописывания через gzip >>
+        Path unnamed = tempDir.resolve("access.log.2");
+        String third = parts[2].toString();
+        int middle = third.indexOf('\n', third.length() / 2) + 1;
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        members.writeBytes(gzip(third.substring(0, middle)));
+        members.writeBytes(gzip(third.substring(middle)));
+        Files.write(unnamed, members.toByteArray());
+        LogFormat format = LogFormat.compile(LogFormat.COMBINED);
+
+        LogStatistics expected = LogFileAnalyzer.analyze(whole.toString(), format, entry -> true, 1);
+        for (int threads : new int[] { 1, 3 }) {
+            LogStatistics merged = LogFileAnalyzer.analyzeFiles(
+                    List.of(plain.toString(), rotated.toString(), unnamed.toString()), format, entry -> true, threads,
+                    LogStatistics::new);
+            assertEquals(String.join(", ", plain.toString(), rotated.toString(), unnamed.toString()),
+                    merged.getFileName());
+            assertEquals(Map.of(plain.toString(), 1_000L, rotated.toString(), 1_000L, unnamed.toString(), 1_000L),
+                    merged.getFileTotals());
+            merged.setFileName(expected.getFileName());
+            // Кроме разбивки по входным файлам, отчет совпадает с отчетом по одному общему файлу
+            String report = ReportGenerator.generateMarkdownReport(merged);
+            assertTrue(report.contains("| `" + rotated + "` | 1000 |"));
+            assertEquals(ReportGenerator.generateMarkdownReport(expected),
+                    report.replaceFirst("## Input Files\n\n(\\|.*\n)*", ""), "threads=" + threads);
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,127 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogField;
+import backend.academy.LogAnalyzer.core.LogFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.core.TimestampDecoder;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogFormatTest {
+
+    private static final String TIMED_FORMAT = "$remote_addr - $remote_user [$time_local] \"$request\" $status "
+            + "$body_bytes_sent \"$http_referer\" \"$http_user_agent\" rt=$request_time "
+            + "urt=\"$upstream_response_time\" $host $request_id";
+
+    private static final String TIMED_LINE = "10.0.0.1 - - [17/May/2015:08:05:32 +0000] \"GET /api HTTP/1.1\" 200 512 "
+            + "\"-\" \"curl/8.0\" rt=0.125 urt=\"0.010, 0.100 : 0.005\" example.com 7f3a9c";
+
+    @Test
+    void shouldParseExtendedFormat() {
+        LogEntry entry = LogFormat.compile(TIMED_FORMAT).parse(TIMED_LINE, new TimestampDecoder());
+
+        assertEquals("10.0.0.1", entry.getRemoteAddr());
+        assertEquals(ZonedDateTime.of(2015, 5, 17, 8, 5, 32, 0, ZoneOffset.UTC).toInstant(),
+                entry.getTimeLocal().toInstant());
+        assertEquals("GET /api HTTP/1.1", entry.getRequest());
+        assertEquals(200, entry.getStatus());
+        assertEquals(512L, entry.getBodyBytesSent());
+        assertEquals("curl/8.0", entry.getHttpUserAgent());
+        assertEquals(125L, entry.getRequestTimeMillis());
+        assertEquals(115L, entry.getUpstreamResponseTimeMillis());
+        assertEquals("example.com", entry.getHost());
+        assertEquals("7f3a9c", entry.getRequestId());
+    }
+
+    @Test
+    void shouldAcceptDirectiveAndIsoTime() {
+        LogFormat format = LogFormat.compile("log_format json escape=json '{\"ts\":\"$time_iso8601\",' "
+                + "'\"status\":${status},\"upstream\":\"$upstream_response_time\"}';");
+
+        LogEntry entry = format.parse("{\"ts\":\"2015-05-17T08:05:32+03:00\",\"status\":404,\"upstream\":\"-\"}",
+                new TimestampDecoder());
+
+        assertEquals(404, entry.getStatus());
+        assertEquals(3 * 3600, entry.getOffsetSeconds());
+        assertEquals(-1L, entry.getUpstreamResponseTimeMillis());
+        assertTrue(format.getAvailableFields().contains(LogField.TIME_LOCAL));
+    }
+
+    @Test
+    void shouldSkipFieldsThatAreNotRequired() {
+        LogFormat format = LogFormat.compile(TIMED_FORMAT, EnumSet.of(LogField.STATUS, LogField.HOST));
+
+        LogEntry entry = format.parse(TIMED_LINE, new TimestampDecoder());
+
+        assertEquals(200, entry.getStatus());
+        assertEquals("example.com", entry.getHost());
+        assertNull(entry.getRemoteAddr());
+        assertNull(entry.getRequest());
+        assertEquals(-1L, entry.getRequestTimeMillis());
+    }
+
+    @Test
+    void shouldRejectMismatchedLines() {
+        LogFormat format = LogFormat.compile(TIMED_FORMAT);
+        TimestampDecoder decoder = new TimestampDecoder();
+
+        assertNull(format.parse("garbage", decoder));
+        assertNull(format.parse(TIMED_LINE.replace(" 200 ", " 2x0 "), decoder));
+        assertNull(format.parse(TIMED_LINE.replace("rt=", "xx="), decoder));
+    }
+
+    @Test
+    void shouldUseCombinedScannerForDefaultFormat() {
+        String line = "93.180.71.3 - - [17/May/2015:08:05:32 +0000] \"GET /downloads/product_1 HTTP/1.1\" 304 0 "
+                + "\"-\" \"Debian APT-HTTP/1.3 (0.8.16~exp12ubuntu10.21)\"";
+        LogFormat format = LogFormat.compile(LogFormat.COMBINED);
+
+        assertTrue(format.isCombined());
+        assertEquals(LogParser.parseLine(line).orElseThrow().getRequest(),
+                LogParser.parseLine(line, format).orElseThrow().getRequest());
+        assertEquals(format.parse(line, new TimestampDecoder()).getHttpUserAgent(),
+                LogParser.parseLine(line).orElseThrow().getHttpUserAgent());
+    }
+
+    @Test
+    void shouldRejectAmbiguousFormats() {
+        assertThrows(IllegalArgumentException.class, () -> LogFormat.compile("$remote_addr$status"));
+        assertThrows(IllegalArgumentException.class, () -> LogFormat.compile("no variables here"));
+    }
+
+    @Test
+    void shouldRejectFormatWithoutTime() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> LogFormat.compile("$remote_addr \"$request\" $status $body_bytes_sent"));
+        assertTrue(error.getMessage().contains("$time_local"), error.getMessage());
+        LogFormat.compile("$remote_addr [$time_iso8601] \"$request\" $status");
+    }
+
+    @Test
+    void shouldParseOnlyFieldsUsedByStatisticsAndFilter() {
+        Set<LogField> required = EnumSet.copyOf(LogStatistics.REQUIRED_FIELDS);
+        required.addAll(LogFilter.requiredFields("host"));
+        LogFormat format = LogFormat.compile(TIMED_FORMAT, required);
+
+        LogEntry entry = format.parse(TIMED_LINE, new TimestampDecoder());
+
+        assertEquals("GET /api HTTP/1.1", entry.getRequest());
+        assertEquals(125L, entry.getRequestTimeMillis());
+        assertEquals("example.com", entry.getHost());
+        assertEquals("curl/8.0", entry.getHttpUserAgent());
+        assertNull(entry.getHttpReferer());
+        assertNull(entry.getRequestId());
+        assertTrue(LogFilter.requiredFields("agent").contains(LogField.HTTP_USER_AGENT));
+        assertTrue(LogFilter.requiredFields(null).isEmpty());
+    }
+}
@@ -1,10 +1,12 @@
 package backend.academy.LogAnalyzer;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import backend.academy.LogAnalyzer.io.LogReader;
 import org.junit.jupiter.api.Test;
@@ -74,4 +76,41 @@ class LogReaderTest {
         // Then
         assertTrue(lines.isEmpty());
     }
+
+    @Test
+    void shouldDecompressGzipDetectedByMagicBytes() throws IOException {
+        // Given
+        Path logFile = tempDir.resolve("access.log.1");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(logFile))) {
+            out.write("127.0.0.1 first\n127.0.0.2 second\n".getBytes());
+        }
+
+        // When
+        List<String> local = LogReader.readLogs(logFile.toString()).toList();
+        List<String> url = LogReader.readLogs(logFile.toUri().toURL().toString()).toList();
+
+        // Then
+        assertTrue(LogReader.isGzip(logFile));
+        assertEquals(List.of("127.0.0.1 first", "127.0.0.2 second"), local);
+        assertEquals(local, url);
+    }
+
+    @Test
+    void shouldExpandFileNamePatterns() throws IOException {
+        // Given
+        for (String name : List.of("access.log", "access.log.2.gz", "access.log.1", "access.log.idx", "error.log")) {
+            Files.writeString(tempDir.resolve(name), "");
+        }
+        String dir = tempDir.toString();
+
+        // When
+        List<String> files = LogReader.expandPaths(
+                List.of(dir + "/access.log*", dir + "/error.log", dir + "/access.log", "http://host/access.log"));
+
+        // Then
+        assertEquals(List.of(dir + "/access.log", dir + "/access.log.1", dir + "/access.log.2.gz", dir + "/error.log",
+                "http://host/access.log"), files);
+        assertThrows(IOException.class, () -> LogReader.expandPaths(List.of(dir + "/missing*.log")));
+        assertThrows(IllegalArgumentException.class, () -> LogReader.expandPaths(List.of(dir + "/*/access.log")));
+    }
 }
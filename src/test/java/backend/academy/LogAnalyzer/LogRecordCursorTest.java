@@ -0,0 +1,144 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.LogFilter;
+import backend.academy.LogAnalyzer.core.LogParser;
+import backend.academy.LogAnalyzer.core.LogRecordCursor;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import java.lang.management.ManagementFactory;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRecordCursorTest {
+
+    private static final String COMBINED_LINE = "93.180.71.3 - - [17/May/2015:08:05:32 +0000] "
+            + "\"GET /downloads/product_1 HTTP/1.1\" 304 0 \"-\" \"Debian APT-HTTP/1.3 (0.8.16~exp12ubuntu10.21)\"";
+
+    // Кавычка внутри запроса: быстрый путь отказывается, строку разбирает регулярное выражение
+    private static final String REGEX_ONLY_LINE = "10.0.0.1 - - [17/May/2015:08:05:32 +0000] "
+            + "\"GET /a\"b HTTP/1.1\" 200 10 \"-\" \"agent\"";
+
+    @Test
+    void shouldMatchParseLineResult() {
+        LogRecordCursor cursor = new LogRecordCursor();
+        char[] buffer = ("xx" + COMBINED_LINE + "yy").toCharArray();
+
+        assertTrue(LogParser.parseLine(buffer, 2, 2 + COMBINED_LINE.length(), cursor));
+
+        assertEntriesEqual(LogParser.parseLine(COMBINED_LINE).orElseThrow(), cursor.toLogEntry());
+        assertEquals("93.180.71.3", cursor.getRemoteAddr().toString());
+        assertEquals(304, cursor.getStatus());
+    }
+
+    @Test
+    void shouldFallBackToPatternForUnusualLines() {
+        LogRecordCursor cursor = new LogRecordCursor();
+        char[] buffer = REGEX_ONLY_LINE.toCharArray();
+
+        assertTrue(LogParser.parseLine(buffer, 0, buffer.length, cursor));
+
+        assertEntriesEqual(LogParser.parseLine(REGEX_ONLY_LINE).orElseThrow(), cursor.toLogEntry());
+        assertFalse(LogParser.parseLine("garbage".toCharArray(), 0, "garbage".length(), cursor));
+    }
+
+    @Test
+    void shouldFeedFiltersAndStatisticsLikeLogEntry() {
+        List<String> lines = sampleLines();
+        LogStatistics fromEntries = new LogStatistics();
+        LogStatistics fromCursor = new LogStatistics();
+        LogRecordCursor cursor = new LogRecordCursor();
+
+        for (String line : lines) {
+            LogEntry entry = LogParser.parseLine(line).orElseThrow();
+            char[] buffer = line.toCharArray();
+            assertTrue(LogParser.parseLine(buffer, 0, buffer.length, cursor));
+            assertEquals(LogFilter.filterByField(entry, "method", "get"),
+                    LogFilter.filterByField(cursor, "method", "get"));
+            assertEquals(LogFilter.filterByField(entry, "status", "404"),
+                    LogFilter.filterByField(cursor, "status", "404"));
+            assertEquals(LogFilter.filterByField(entry, "agent", "Firefox"),
+                    LogFilter.filterByField(cursor, "agent", "Firefox"));
+            fromEntries.updateStatistics(entry);
+            fromCursor.updateStatistics(cursor);
+        }
+
+        assertEquals(fromEntries.getTotalRequests(), fromCursor.getTotalRequests());
+        assertEquals(fromEntries.getResourceCounts(), fromCursor.getResourceCounts());
+        assertEquals(fromEntries.getMethodCounts(), fromCursor.getMethodCounts());
+        assertEquals(fromEntries.getStatusCounts(), fromCursor.getStatusCounts());
+        assertEquals(fromEntries.getTopIpAddresses(), fromCursor.getTopIpAddresses());
+        assertEquals(fromEntries.getHourlyDistribution(), fromCursor.getHourlyDistribution());
+        assertEquals(fromEntries.get95PercentileSize(), fromCursor.get95PercentileSize());
+        assertEquals(fromEntries.getStartDate(), fromCursor.getStartDate());
+        assertEquals(fromEntries.getEndDate(), fromCursor.getEndDate());
+    }
+
+    @Test
+    void shouldNotAllocateInSteadyStateLoop() {
+        StringBuilder text = new StringBuilder();
+        List<int[]> bounds = new ArrayList<>();
+        for (String line : sampleLines()) {
+            bounds.add(new int[] { text.length(), text.length() + line.length() });
+            text.append(line).append('\n');
+        }
+        char[] buffer = text.toString().toCharArray();
+        int[][] lines = bounds.toArray(new int[0][]);
+        LogRecordCursor cursor = new LogRecordCursor();
+        LogStatistics stats = new LogStatistics();
+        ZonedDateTime from = ZonedDateTime.parse("2015-05-17T00:00:00Z");
+
+        // Прогрев: счетчики статистики запоминают все ключи, JIT компилирует цикл
+        runLoop(buffer, lines, cursor, stats, from, 2_000);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int iterations = 2_000;
+        runLoop(buffer, lines, cursor, stats, from, iterations);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        long parsedLines = (long) iterations * lines.length;
+        assertTrue(allocated < parsedLines / 100, "allocated " + allocated + " bytes for " + parsedLines + " lines");
+    }
+
+    private static void runLoop(char[] buffer, int[][] lines, LogRecordCursor cursor, LogStatistics stats,
+            ZonedDateTime from, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (int[] line : lines) {
+                if (LogParser.parseLine(buffer, line[0], line[1], cursor) && LogFilter.filterByTime(cursor, from, null)
+                        && LogFilter.filterByField(cursor, "method", "GET")) {
+                    stats.updateStatistics(cursor);
+                }
+            }
+        }
+    }
+
+    private static List<String> sampleLines() {
+        List<String> lines = new ArrayList<>();
+        String[] methods = { "GET", "POST", "HEAD" };
+        String[] agents = { "Mozilla/5.0 Firefox/120.0", "curl/8.0", "Debian APT-HTTP/1.3" };
+        int[] statuses = { 200, 304, 404, 500 };
+        for (int i = 0; i < 48; i++) {
+            lines.add(String.format(
+                    "10.0.%d.%d - - [17/May/2015:%02d:%02d:%02d +0300] \"%s /files/%d HTTP/1.1\" %d %d "
+                            + "\"-\" \"%s\"",
+                    i % 3, i % 7, 8 + i / 20, i % 60, (i * 7) % 60, methods[i % 3], i % 5, statuses[i % 4],
+                    100 * (i % 6), agents[i % 3]));
+        }
+        return lines;
+    }
+
+    private static void assertEntriesEqual(LogEntry expected, LogEntry actual) {
+        assertEquals(expected.getRemoteAddr(), actual.getRemoteAddr());
+        assertEquals(expected.getRemoteUser(), actual.getRemoteUser());
+        assertEquals(expected.getTimeLocal(), actual.getTimeLocal());
+        assertEquals(expected.getRequest(), actual.getRequest());
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expected.getBodyBytesSent(), actual.getBodyBytesSent());
+        assertEquals(expected.getHttpReferer(), actual.getHttpReferer());
+        assertEquals(expected.getHttpUserAgent(), actual.getHttpUserAgent());
+    }
+}
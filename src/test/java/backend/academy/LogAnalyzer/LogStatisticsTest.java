@@ -1,14 +1,27 @@
 package backend.academy.LogAnalyzer;
 
+import backend.academy.LogAnalyzer.core.GroupBy;
+import backend.academy.LogAnalyzer.core.GroupDimension;
 import backend.academy.LogAnalyzer.core.LogEntry;
 import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.core.TimeSeries;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class LogStatisticsTest {
@@ -69,6 +82,272 @@ class LogStatisticsTest {
         assertEquals(1, ipCounts.get("127.0.0.3"));
     }
 
+    @Test
+    void shouldMergePartialStatistics() {
+        // Given
+        LogStatistics first = new LogStatistics("test.log", entries.subList(0, 2));
+        LogStatistics second = new LogStatistics("other.log", entries.subList(2, 4));
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertEquals("test.log", first.getFileName());
+        assertEquals(stats.getTotalRequests(), first.getTotalRequests());
+        assertEquals(stats.getResourceCounts(), first.getResourceCounts());
+        assertEquals(stats.getStatusCounts(), first.getStatusCounts());
+        assertEquals(stats.getTopIpAddresses(), first.getTopIpAddresses());
+        assertEquals(stats.getAverageResponseSize(), first.getAverageResponseSize(), 0.001);
+        assertEquals(stats.get95PercentileSize(), first.get95PercentileSize());
+        assertEquals(stats.getStartDate(), first.getStartDate());
+        assertEquals(stats.getEndDate(), first.getEndDate());
+    }
+
+    @Test
+    void shouldKeepSketchPercentilesWithinDocumentedError() {
+        // Given
+        LogStatistics sketch = new LogStatistics("test.log");
+        LogStatistics exact = new LogStatistics("test.log");
+        exact.setExactPercentiles(true);
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            LogEntry entry = createLogEntry("127.0.0.1", "/", 200, (int) Math.exp(random.nextDouble() * 14));
+            sketch.updateStatistics(entry);
+            exact.updateStatistics(entry);
+        }
+
+        // Then
+        for (double quantile : new double[] { 0.5, 0.9, 0.95, 0.99, 1.0 }) {
+            long expected = exact.getResponseSizePercentile(quantile);
+            long actual = sketch.getResponseSizePercentile(quantile);
+            assertTrue(actual <= expected && expected - actual <= expected / 128, quantile + ": " + actual);
+        }
+        assertEquals(exact.getMaxResponseSize(), sketch.getMaxResponseSize());
+        assertEquals(exact.getAverageResponseSize(), sketch.getAverageResponseSize(), 0.001);
+    }
+
+    @Test
+    void shouldMergeExactStatisticsIntoSketch() {
+        // Given
+        LogStatistics exact = new LogStatistics("test.log", entries.subList(0, 2));
+        LogStatistics other = new LogStatistics();
+        other.setExactPercentiles(true);
+        entries.subList(2, 4).forEach(other::updateStatistics);
+
+        // When
+        exact.merge(other);
+
+        // Then
+        assertEquals(stats.get95PercentileSize(), exact.get95PercentileSize());
+        assertEquals(2000, exact.getMaxResponseSize());
+        assertEquals(1000, exact.getResponseSizePercentile(0.5));
+        assertThrows(IllegalStateException.class, () -> exact.setExactPercentiles(true));
+    }
+
+    @Test
+    void shouldTrackHeavyHittersWithinErrorBounds() {
+        // Given: десять частых адресов на фоне 20 000 уникальных
+        Map<String, Integer> expected = new HashMap<>();
+        List<LogEntry> traffic = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 40_000; i++) {
+            String ip = i % 2 == 0 ? "10.0.0." + random.nextInt(10) : "192.168." + i / 256 + "." + i % 256;
+            expected.merge(ip, 1, Integer::sum);
+            traffic.add(createLogEntry(ip, "/" + ip, 200, 100));
+        }
+        LogStatistics first = new LogStatistics("test.log");
+        LogStatistics second = new LogStatistics("test.log");
+        first.setHeavyHitterCapacity(100);
+        second.setHeavyHitterCapacity(100);
+        traffic.subList(0, 25_000).forEach(first::updateStatistics);
+        traffic.subList(25_000, 40_000).forEach(second::updateStatistics);
+
+        // When
+        first.merge(second);
+
+        // Then
+        Map<String, Integer> top = first.getTopIpAddresses();
+        Map<String, Long> errors = first.getTopIpAddressErrors();
+        assertEquals(10, top.size());
+        for (Map.Entry<String, Integer> entry : top.entrySet()) {
+            assertTrue(entry.getKey().startsWith("10.0.0."), entry.getKey());
+            int actual = expected.get(entry.getKey());
+            assertTrue(entry.getValue() >= actual && entry.getValue() - errors.get(entry.getKey()) <= actual);
+            assertTrue(errors.get(entry.getKey()) <= 40_000 / 100);
+        }
+        assertEquals(100, first.getResourceCounts().size());
+    }
+
+    @Test
+    void shouldEstimateDistinctCountsAcrossPartitions() {
+        // Given: 50 000 адресов, половина из которых встречается в обеих частях
+        LogStatistics first = new LogStatistics("test.log");
+        LogStatistics second = new LogStatistics("test.log");
+        for (int i = 0; i < 50_000; i++) {
+            LogEntry entry = createLogEntry("10." + i / 65_536 + "." + i / 256 % 256 + "." + i % 256,
+                    "/page/" + i % 700, 200, 100);
+            (i < 30_000 ? first : second).updateStatistics(entry);
+            if (i % 2 == 0) {
+                first.updateStatistics(entry);
+            }
+        }
+
+        // When
+        first.merge(second);
+
+        // Then
+        assertEquals(50_000, first.getUniqueIpCount(), 50_000 * 0.05);
+        assertEquals(700, first.getUniqueResourceCount(), 700 * 0.05);
+        assertEquals(1, first.getUniqueUserAgentCount());
+        assertEquals(1, first.getHourlyUniqueIps().size());
+        assertEquals(50_000, first.getHourlyUniqueIps().values().iterator().next(), 50_000 * 0.1);
+        assertEquals(3, stats.getUniqueIpCount());
+    }
+
+    @Test
+    void shouldServeCachedViewsAfterFreeze() {
+        // Given
+        LogStatistics many = new LogStatistics("test.log");
+        for (int i = 0; i < 5_000; i++) {
+            many.updateStatistics(
+                    createLogEntry("10.0." + i % 97 + ".1", "/page/" + i % 1_000 % (i % 13 + 1), 200, 100));
+        }
+        List<Map.Entry<String, Long>> fullRanking = new ArrayList<>(many.getResourceCountsAsLong().entrySet());
+
+        // When
+        many.freeze();
+
+        // Then
+        assertEquals(new ArrayList<>(many.getTopResources(5).entrySet()), fullRanking.subList(0, 5));
+        assertEquals(fullRanking.size(), many.getTopResources(100_000).size());
+        assertSame(many.getStatusCounts(), many.getStatusCounts());
+        assertEquals(List.copyOf(many.getTopIpAddressesAsLong().keySet()),
+                List.copyOf(many.getTopIpAddressesAsLong(20).keySet()).subList(0, 10));
+        assertThrows(UnsupportedOperationException.class, () -> many.getStatusCounts().clear());
+        assertThrows(IllegalStateException.class, () -> many.updateStatistics(entries.get(0)));
+        assertThrows(IllegalStateException.class, () -> many.merge(stats));
+    }
+
+    @Test
+    void shouldBucketRequestsIntoTimeSeries() {
+        // Given: записи в обратном порядке с пропуском в несколько минут, разбитые на две части
+        ZonedDateTime start = ZonedDateTime.parse("2015-05-17T08:00:05Z");
+        LogStatistics first = new LogStatistics("test.log");
+        LogStatistics second = new LogStatistics("test.log");
+        first.setTimeBucketSeconds(60);
+        second.setTimeBucketSeconds(60);
+        first.updateStatistics(timedEntry(start.plusMinutes(5), 500, 300));
+        first.updateStatistics(timedEntry(start.plusSeconds(30), 200, 100));
+        second.updateStatistics(timedEntry(start, 404, 200));
+        second.updateStatistics(timedEntry(start.minusHours(1), 200, 50));
+
+        // When
+        TimeSeries series = first.merge(second).freeze().getTimeSeries();
+
+        // Then
+        assertEquals(66, series.size());
+        assertEquals(start.minusHours(1).withSecond(0).toEpochSecond(), series.getBucketStart(0));
+        assertEquals(2, series.getRequests(60));
+        assertEquals(1, series.getErrors(60));
+        assertEquals(300, series.getBytes(60));
+        assertEquals(0, series.getRequests(61));
+        assertEquals(1, series.getErrors(65));
+        assertEquals(0, series.getDroppedCount());
+    }
+
+    @Test
+    void shouldAggregateByDimensionCombinations() {
+        // Given: одна часть записей собрана отдельно, а ее словари нумеруют значения в другом порядке
+        List<GroupDimension> dimensions = GroupDimension.parseList("status,resource");
+        LogStatistics first = new LogStatistics("test.log");
+        LogStatistics second = new LogStatistics("test.log");
+        first.setGroupBy(dimensions);
+        second.setGroupBy(dimensions);
+        first.updateStatistics(entries.get(0));
+        first.updateStatistics(entries.get(2));
+        second.updateStatistics(entries.get(3));
+        second.updateStatistics(entries.get(1));
+
+        // When
+        List<GroupBy.Row> rows = first.merge(second).freeze().getGroupBy().getRows();
+
+        // Then: группы по убыванию числа запросов, при равенстве — по значениям
+        assertEquals(3, rows.size());
+        assertEquals(List.of("200", "/api/users"), rows.get(0).getValues());
+        assertEquals(2, rows.get(0).getCount());
+        assertEquals(3000, rows.get(0).getBytes());
+        assertEquals(1000, rows.get(0).getMedianSize());
+        assertEquals(2000, rows.get(0).getPercentile99Size());
+        assertEquals(List.of("404", "/api/data"), rows.get(1).getValues());
+        assertEquals(List.of("500", "/api/admin"), rows.get(2).getValues());
+        assertEquals(1500, rows.get(2).getBytes());
+    }
+
+    @Test
+    void shouldRejectInvalidGroupByDimensions() {
+        assertThrows(IllegalArgumentException.class, () -> GroupDimension.parseList("status,unknown"));
+        assertThrows(IllegalStateException.class,
+                () -> new LogStatistics("test.log", entries).setGroupBy(List.of(GroupDimension.IP)));
+        LogStatistics empty = new LogStatistics();
+        assertThrows(IllegalArgumentException.class,
+                () -> empty.setGroupBy(List.of(GroupDimension.HOUR, GroupDimension.HOUR)));
+    }
+
+    @Test
+    void shouldRestoreSnapshotWithSameReportAndMerge() throws IOException {
+        // Given: две части с разными режимами подсчета, временным рядом и группировкой
+        ZonedDateTime start = ZonedDateTime.parse("2015-05-17T08:00:05+03:00");
+        LogStatistics first = new LogStatistics("first.log");
+        LogStatistics second = new LogStatistics("second.log");
+        for (LogStatistics part : List.of(first, second)) {
+            part.setTimeBucketSeconds(60);
+            part.setGroupBy(GroupDimension.parseList("status,method,agent"));
+        }
+        first.setHeavyHitterCapacity(2);
+        second.setExactPercentiles(true);
+        entries.forEach(first::updateStatistics);
+        second.updateStatistics(timedEntry(start, 503, 70_000));
+        second.updateStatistics(timedEntry(start.plusMinutes(3), 200, 12));
+        first.addFileTotal("first.log", first.getTotalRequestsAsLong());
+        second.addFileTotal("second.log", 2);
+
+        // When
+        LogStatistics restoredFirst = roundTrip(first);
+        LogStatistics restoredSecond = roundTrip(second);
+
+        // Then: снимок дает тот же отчет, а объединение снимков — то же, что объединение исходных статистик
+        assertEquals(ReportGenerator.generateMarkdownReport(first),
+                ReportGenerator.generateMarkdownReport(restoredFirst));
+        assertEquals(ReportGenerator.generateMarkdownReport(second),
+                ReportGenerator.generateMarkdownReport(restoredSecond));
+        assertEquals(ReportGenerator.generateMarkdownReport(first.merge(second)),
+                ReportGenerator.generateMarkdownReport(restoredFirst.merge(restoredSecond)));
+        assertEquals(List.of("first.log", "second.log"), List.copyOf(restoredFirst.getFileTotals().keySet()));
+        assertTrue(ReportGenerator.generateMarkdownReport(restoredFirst).contains("| `second.log` | 2 |"));
+    }
+
+    @Test
+    void shouldRejectDamagedSnapshots() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats.writeSnapshot(out);
+        byte[] snapshot = out.toByteArray();
+
+        assertThrows(IOException.class, () -> LogStatistics
+                .readSnapshot(new ByteArrayInputStream(Arrays.copyOf(snapshot, snapshot.length / 2))));
+        snapshot[0] = 'X';
+        assertThrows(IOException.class, () -> LogStatistics.readSnapshot(new ByteArrayInputStream(snapshot)));
+    }
+
+    private static LogStatistics roundTrip(LogStatistics original) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        original.writeSnapshot(out);
+        return LogStatistics.readSnapshot(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static LogEntry timedEntry(ZonedDateTime time, int status, int bytes) {
+        return new LogEntry("127.0.0.1", "-", time, "GET / HTTP/1.1", status, bytes, "-", "curl/8.0");
+    }
+
     private LogEntry createLogEntry(String ip, String request, int status, int bytes) {
         ZonedDateTime time = ZonedDateTime.now();
         return new LogEntry(ip, // remoteAddr
@@ -0,0 +1,91 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.io.LineSource;
+import backend.academy.LogAnalyzer.io.MappedLineReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedLineReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldCoverFileExactlyOnceForAnyNumberOfChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("line-").append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        text.append("тail без перевода строки");
+        Path file = write(text.toString());
+        List<String> expected = text.toString().lines().toList();
+
+        for (int parts : new int[] { 1, 2, 3, 7, 64, 10_000 }) {
+            List<String> actual = new ArrayList<>();
+            List<MappedLineReader> chunks = MappedLineReader.split(file, parts);
+            assertTrue(chunks.size() <= parts);
+            for (MappedLineReader chunk : chunks) {
+                actual.addAll(readAll(chunk));
+            }
+            assertEquals(expected, actual, "parts=" + parts);
+        }
+    }
+
+    @Test
+    void shouldSlideWindowAndGrowItForLongLines() throws IOException {
+        String longLine = "x".repeat(1_000);
+        String text = "a\r\n" + longLine + "\nb\rc\n";
+        Path file = write(text);
+
+        List<String> lines = readAll(new MappedLineReader(file, 0, Files.size(file), 16));
+
+        assertEquals(List.of("a", longLine, "b", "c"), lines);
+    }
+
+    @Test
+    void shouldRejectLineLongerThanTwoGigabytes() throws IOException {
+        Path file = tempDir.resolve("huge.log");
+        // Разреженный файл из нулевых байтов без перевода строки: место на диске не занимается
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(Integer.MAX_VALUE + 1L);
+        }
+
+        try (MappedLineReader reader = new MappedLineReader(file, 0, Files.size(file), Integer.MAX_VALUE)) {
+            IOException error = assertThrows(IOException.class, reader::nextLine);
+            assertTrue(error.getMessage().contains("2 ГБ"), error.getMessage());
+        }
+    }
+
+    @Test
+    void shouldHandleEmptyFile() throws IOException {
+        Path file = write("");
+
+        assertTrue(MappedLineReader.split(file, 4).isEmpty());
+        assertTrue(readAll(MappedLineReader.open(file)).isEmpty());
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = tempDir.resolve("access.log");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> readAll(LineSource source) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (source) {
+            while (source.nextLine()) {
+                lines.add(source.line());
+            }
+        }
+        return lines;
+    }
+}
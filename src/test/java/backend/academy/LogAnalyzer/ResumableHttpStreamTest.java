@@ -0,0 +1,172 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.io.LogFileAnalyzer;
+import backend.academy.LogAnalyzer.io.ResumableHttpStream;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResumableHttpStreamTest {
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private HttpServer server;
+    private byte[] body;
+    // Сколько ответов оборвать на трети тела и сколько из них перед этим подвесить
+    private final AtomicInteger drops = new AtomicInteger();
+    private final AtomicInteger stalls = new AtomicInteger();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean rangesSupported = true;
+    private volatile String entityTag = "\"v1\"";
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3_000; i++) {
+            text.append(String.format(
+                    "10.0.%d.%d - - [17/May/2015:%02d:%02d:00 +0000] \"GET /r/%d HTTP/1.1\" %d %d \"-\" \"a\"\n",
+                    i % 13, i % 17, i % 24, i % 60, i % 41, i % 7 == 0 ? 500 : 200, i));
+        }
+        body = text.toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/access.log", this::serve);
+        server.createContext("/missing.log", exchange -> {
+            ranges.add("404");
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        released.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void shouldResumeAnalysisWithRangeRequestAfterDisconnect() throws Exception {
+        drops.set(1);
+        Path local = tempDir.resolve("access.log");
+        Files.write(local, body);
+        LogFormat format = LogFormat.compile(LogFormat.COMBINED);
+
+        LogStatistics remote = LogFileAnalyzer.analyze(url("/access.log"), format, entry -> true, 1);
+        LogStatistics expected = LogFileAnalyzer.analyze(local.toString(), format, entry -> true, 1);
+
+        assertEquals(List.of("", "bytes=" + body.length / 3 + "-|\"v1\""), ranges);
+        remote.setFileName(expected.getFileName());
+        assertEquals(ReportGenerator.generateMarkdownReport(expected), ReportGenerator.generateMarkdownReport(remote));
+    }
+
+    @Test
+    void shouldSkipConsumedBytesWhenServerIgnoresRangesOrStalls() throws Exception {
+        drops.set(2);
+        stalls.set(1);
+        rangesSupported = false;
+
+        byte[] read = readAll(open(Duration.ofMillis(300)));
+
+        assertArrayEquals(body, read);
+        assertEquals(3, ranges.size());
+    }
+
+    @Test
+    void shouldFailWhenFileChangesOrRetriesRunOut() throws Exception {
+        drops.set(1);
+        try (InputStream in = open(TIMEOUT)) {
+            entityTag = "\"v2\"";
+            IOException error = assertThrows(IOException.class, () -> readAll(in));
+            assertTrue(error.getMessage().contains("изменился"), error.getMessage());
+        }
+
+        entityTag = "\"v1\"";
+        drops.set(10);
+        ranges.clear();
+        assertThrows(IOException.class, () -> readAll(open(TIMEOUT)));
+        // Первый запрос и три повтора подряд без новых байтов
+        assertEquals(4, ranges.size());
+
+        // Ответ 4xx не повторяется
+        ranges.clear();
+        assertThrows(IOException.class, () -> new ResumableHttpStream(CLIENT, URI.create(url("/missing.log")),
+                Duration.ofMillis(1), 3, TIMEOUT));
+        assertEquals(List.of("404"), ranges);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        ranges.add(range == null ? "" : range + "|" + ifRange);
+        int start = 0;
+        boolean partial = range != null && rangesSupported && entityTag.equals(ifRange);
+        if (partial) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+        }
+        exchange.getResponseHeaders().set("ETag", entityTag);
+        exchange.sendResponseHeaders(partial ? 206 : 200, body.length - start);
+        OutputStream out = exchange.getResponseBody();
+        if (drops.getAndDecrement() > 0) {
+            out.write(body, start, Math.max(body.length / 3 - start, 0));
+            out.flush();
+            if (stalls.getAndDecrement() > 0) {
+                try {
+                    released.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // Исключение из обработчика: сервер закрывает соединение, не дописав объявленную длину
+            throw new IOException("Обрыв соединения");
+        }
+        out.write(body, start, body.length - start);
+        out.close();
+    }
+
+    private ResumableHttpStream open(Duration readTimeout) throws IOException {
+        return new ResumableHttpStream(CLIENT, URI.create(url("/access.log")), Duration.ofMillis(1), 3, readTimeout);
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.FilterExpression;
+import backend.academy.LogAnalyzer.core.LineFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.io.ByteRange;
+import backend.academy.LogAnalyzer.io.LogFileAnalyzer;
+import backend.academy.LogAnalyzer.io.TimeIndex;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeIndexTest {
+    private static final LogFormat FORMAT = LogFormat.compile(LogFormat.COMBINED);
+    private static final ZonedDateTime START = ZonedDateTime.parse("2015-05-17T00:00:00Z");
+    private static final DateTimeFormatter NGINX_TIME = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z",
+            Locale.ENGLISH);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReadOnlyBlocksOfTheInterval() throws Exception {
+        Path logFile = tempDir.resolve("access.log");
+        Files.writeString(logFile, log(50_000));
+        ZonedDateTime from = START.plusSeconds(30_000);
+        ZonedDateTime to = START.plusSeconds(31_999);
+
+        TimeIndex built = TimeIndex.build(logFile, FORMAT);
+        built.save();
+        TimeIndex loaded = TimeIndex.load(logFile, FORMAT);
+
+        assertNotNull(loaded);
+        assertEquals(built.getBlockCount(), loaded.getBlockCount());
+        ByteRange range = loaded.findRange(from, to);
+        assertEquals(built.findRange(from, to).getStart(), range.getStart());
+        assertEquals(built.findRange(from, to).getEnd(), range.getEnd());
+        // Опоздавшие на час строки расширяют диапазон до своих блоков
+        assertTrue(range.getEnd() - range.getStart() < Files.size(logFile) / 5);
+        assertEquals(0, loaded.findRange(START.plusDays(2), null).getEnd());
+
+        LineFilter filter = LineFilter.of(from, to, FilterExpression.compile("status = 500"));
+        LogStatistics indexed = LogFileAnalyzer.analyze(logFile, range.getStart(), range.getEnd(), FORMAT, filter, 2,
+                LogStatistics::new);
+        LogStatistics full = LogFileAnalyzer.analyze(logFile.toString(), FORMAT, filter, 1);
+        assertEquals(400, full.getTotalRequests());
+        assertEquals(ReportGenerator.generateMarkdownReport(full), ReportGenerator.generateMarkdownReport(indexed));
+    }
+
+    @Test
+    void shouldRejectStaleIndex() throws Exception {
+        Path logFile = tempDir.resolve("access.log");
+        String text = log(5_000);
+        Files.writeString(logFile, text);
+        TimeIndex.build(logFile, FORMAT).save();
+        FileTime modified = Files.getLastModifiedTime(logFile);
+        assertNotNull(TimeIndex.load(logFile, FORMAT));
+
+        // Другой формат строк
+        assertNull(TimeIndex.load(logFile, LogFormat.compile("$remote_addr [$time_local] \"$request\" $status")));
+
+        // Файл переписан с тем же размером и временем изменения: расходится контрольная сумма начала
+        Files.writeString(logFile, text.replaceFirst("10\\.0\\.0\\.0", "10.0.0.9"));
+        Files.setLastModifiedTime(logFile, modified);
+        assertNull(TimeIndex.load(logFile, FORMAT));
+
+        // Дописанные строки меняют размер
+        Files.writeString(logFile, text);
+        Files.setLastModifiedTime(logFile, modified);
+        assertNotNull(TimeIndex.load(logFile, FORMAT));
+        Files.writeString(logFile, "garbage line\n", StandardOpenOption.APPEND);
+        assertNull(TimeIndex.load(logFile, FORMAT));
+
+        // Обрезанный файл индекса
+        TimeIndex.build(logFile, FORMAT).save();
+        Path indexFile = TimeIndex.indexPath(logFile);
+        byte[] index = Files.readAllBytes(indexFile);
+        Files.write(indexFile, Arrays.copyOf(index, index.length - 3));
+        assertNull(TimeIndex.load(logFile, FORMAT));
+        Files.writeString(indexFile, "not an index", StandardCharsets.UTF_8);
+        assertNull(TimeIndex.load(logFile, FORMAT));
+    }
+
+    /**
+     * Строка на секунду, но каждая сотая записана на час позже своего места: порядок файла нарушен.
+     */
+    private static String log(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int second = i % 100 == 0 ? Math.max(i - 3600, 0) : i;
+            text.append(String.format("10.0.%d.%d - - [%s] \"GET /r/%d HTTP/1.1\" %d %d \"-\" \"agent\"\n", i % 13,
+                    i % 17, START.plusSeconds(second).format(NGINX_TIME), i % 41, i % 5 == 0 ? 500 : 200, i));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.FilterExpression;
+import backend.academy.LogAnalyzer.core.LineFilter;
+import backend.academy.LogAnalyzer.core.LogFormat;
+import backend.academy.LogAnalyzer.core.LogStatistics;
+import backend.academy.LogAnalyzer.io.ByteRange;
+import backend.academy.LogAnalyzer.io.LogFileAnalyzer;
+import backend.academy.LogAnalyzer.io.TimeSeeker;
+import backend.academy.LogAnalyzer.report.ReportGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeekerTest {
+    private static final LogFormat FORMAT = LogFormat.compile(LogFormat.COMBINED);
+    private static final ZonedDateTime START = ZonedDateTime.parse("2015-05-17T00:00:00Z");
+    private static final DateTimeFormatter NGINX_TIME = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z",
+            Locale.ENGLISH);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReadOnlyTheIntervalOfOrderedFile() throws Exception {
+        Path logFile = tempDir.resolve("access.log");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) {
+            // Строка на секунду; каждая седьмая записана на 20 секунд позже своего места
+            int second = i % 7 == 0 ? Math.max(i - 20, 0) : i;
+            text.append(String.format("10.0.%d.%d - - [%s] \"GET /r/%d HTTP/1.1\" %d %d \"-\" \"agent\"\n", i % 13,
+                    i % 17, START.plusSeconds(second).format(NGINX_TIME), i % 41, i % 5 == 0 ? 500 : 200, i));
+            if (i % 1000 == 0) {
+                text.append("garbage line\n");
+            }
+        }
+        Files.writeString(logFile, text.toString());
+        ZonedDateTime from = START.plusSeconds(10_000);
+        ZonedDateTime to = START.plusSeconds(10_599);
+
+        ByteRange range = TimeSeeker.findRange(logFile, FORMAT, from, to, Duration.ofSeconds(30));
+        assertTrue(range.getStart() > 0 && range.getEnd() < Files.size(logFile));
+        assertTrue(range.getEnd() - range.getStart() < Files.size(logFile) / 50);
+
+        LineFilter filter = LineFilter.of(from, to, FilterExpression.compile("status = 500"));
+        LogStatistics seek = LogFileAnalyzer.analyze(logFile, range.getStart(), range.getEnd(), FORMAT, filter, 2,
+                LogStatistics::new);
+        LogStatistics full = LogFileAnalyzer.analyze(logFile.toString(), FORMAT, filter, 1);
+        assertEquals(120, full.getTotalRequests());
+        assertEquals(ReportGenerator.generateMarkdownReport(full), ReportGenerator.generateMarkdownReport(seek));
+    }
+
+    @Test
+    void shouldHandleIntervalsOutsideTheFile() throws Exception {
+        Path logFile = tempDir.resolve("small.log");
+        Files.write(logFile, List.of("10.0.0.1 - - [17/May/2015:08:00:00 +0000] \"GET / HTTP/1.1\" 200 1 \"-\" \"a\"",
+                "10.0.0.1 - - [17/May/2015:09:00:00 +0000] \"GET / HTTP/1.1\" 200 1 \"-\" \"a\""));
+        long size = Files.size(logFile);
+
+        ByteRange before = TimeSeeker.findRange(logFile, FORMAT, null, START, Duration.ZERO);
+        ByteRange after = TimeSeeker.findRange(logFile, FORMAT, START.plusDays(1), null, Duration.ZERO);
+        ByteRange second = TimeSeeker.findRange(logFile, FORMAT, START.plusHours(9), null, Duration.ZERO);
+
+        assertEquals(0, before.getEnd());
+        assertEquals(size, after.getStart());
+        assertEquals(size / 2, second.getStart());
+        assertEquals(size, second.getEnd());
+    }
+
+    @Test
+    void shouldFallBackToWholeFileWhenTimestampsAreUnreadable() throws Exception {
+        // Строки длиннее блока пробы: время из них не достать, и поиск сдается
+        Path logFile = tempDir.resolve("long-lines.log");
+        Files.write(logFile, Collections.nCopies(150, "x".repeat(20_000)));
+
+        ByteRange range = TimeSeeker.findRange(logFile, FORMAT, START, START.plusHours(1), Duration.ZERO);
+
+        assertEquals(0, range.getStart());
+        assertEquals(Files.size(logFile), range.getEnd());
+    }
+}
@@ -0,0 +1,93 @@
+package backend.academy.LogAnalyzer;
+
+import backend.academy.LogAnalyzer.core.LogEntry;
+import backend.academy.LogAnalyzer.core.TimestampDecoder;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimestampDecoderTest {
+
+    private static final DateTimeFormatter OLD_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z",
+            Locale.ENGLISH);
+
+    @Test
+    void shouldMatchFormatterForNginxLayout() {
+        List<String> samples = List.of("17/May/2015:08:05:32 +0000", "17/May/2015:08:05:32 +0000",
+                "17/May/2015:08:05:33 +0000", "01/Jan/2000:00:00:00 -0530", "29/Feb/2016:23:59:59 +1400",
+                "31/Dec/1999:12:00:00 +0300");
+        TimestampDecoder decoder = new TimestampDecoder();
+
+        for (String sample : samples) {
+            assertTrue(decoder.decode(sample, 0, sample.length()), sample);
+            assertDecoded(ZonedDateTime.parse(sample, OLD_DATE_FORMATTER), decoder);
+        }
+    }
+
+    @Test
+    void shouldMatchFormatterForIsoLayouts() {
+        List<String> samples = List.of("2015-05-17T08:05:32Z", "2015-05-17T08:05:32+03:00", "2015-05-17T08:05:32.250Z",
+                "2015-05-17T08:05:32+01:00[Europe/Paris]", "2015-05-17T10:05:32-02:00");
+        TimestampDecoder decoder = new TimestampDecoder();
+
+        for (String sample : samples) {
+            assertTrue(decoder.decode(sample, 0, sample.length()), sample);
+            assertDecoded(ZonedDateTime.parse(sample, DateTimeFormatter.ISO_DATE_TIME), decoder);
+        }
+    }
+
+    @Test
+    void shouldSwitchLayoutWithinOneSource() {
+        TimestampDecoder decoder = new TimestampDecoder();
+        String line = "[17/May/2015:08:05:32 +0000] [2015-05-17T08:05:32Z]";
+
+        assertTrue(decoder.decode(line, 1, 27));
+        long nginxSecond = decoder.getEpochSecond();
+        assertTrue(decoder.decode(line, 30, 50));
+
+        assertEquals(nginxSecond, decoder.getEpochSecond());
+    }
+
+    @Test
+    void shouldResolveNonExistentDayLikeFormatter() {
+        String sample = "31/Feb/2015:08:05:32 +0000";
+        TimestampDecoder decoder = new TimestampDecoder();
+
+        assertTrue(decoder.decode(sample, 0, sample.length()));
+        assertDecoded(ZonedDateTime.parse(sample, OLD_DATE_FORMATTER), decoder);
+    }
+
+    @Test
+    void shouldRejectUnknownFormats() {
+        TimestampDecoder decoder = new TimestampDecoder();
+
+        for (String sample : List.of("not a date", "17/Foo/2015:08:05:32 +0000", "2015-05-17T25:05:32Z", "")) {
+            assertFalse(decoder.decode(sample, 0, sample.length()), sample);
+        }
+    }
+
+    @Test
+    void shouldBuildZonedDateTimeOnRequest() {
+        String sample = "17/May/2015:08:05:32 +0300";
+        TimestampDecoder decoder = new TimestampDecoder();
+        LogEntry entry = new LogEntry();
+
+        assertTrue(decoder.decode(sample, 0, sample.length()));
+        decoder.applyTo(entry);
+
+        assertEquals(ZonedDateTime.parse(sample, OLD_DATE_FORMATTER), entry.getTimeLocal());
+        assertEquals(10_800, entry.getOffsetSeconds());
+    }
+
+    private static void assertDecoded(ZonedDateTime expected, TimestampDecoder decoder) {
+        assertEquals(expected.toEpochSecond(), decoder.getEpochSecond());
+        assertEquals(expected.getNano(), decoder.getNano());
+        assertEquals(expected.getOffset().getTotalSeconds(), decoder.getOffsetSeconds());
+        assertEquals(expected.getZone(), decoder.getZone());
+    }
+}